@@ -1,14 +1,29 @@
 package com.bankcore.account.api;
 
+import com.bankcore.account.service.AccountBatchService;
 import com.bankcore.account.service.AccountService;
 import com.bankcore.common.dto.AccountDTO;
+import com.bankcore.common.dto.AccountOperationCommand;
+import com.bankcore.common.dto.AccountOperationResult;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -18,14 +33,22 @@ import java.util.List;
 @RequestMapping("/accounts")
 @Validated
 public class AccountController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
 
     private final AccountService service;
+    private final AccountBatchService batchService;
+    private final ObjectWriter exportWriter;
 
     /**
      * 构造注入账户服务。
      */
-    public AccountController(AccountService service) {
+    public AccountController(AccountService service, AccountBatchService batchService, ObjectMapper objectMapper) {
         this.service = service;
+        this.batchService = batchService;
+        this.exportWriter = objectMapper.writerFor(AccountDTO.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     /**
@@ -39,14 +62,40 @@ public class AccountController {
     }
 
     /**
-     * 查询账户列表，可按客户维度过滤。
+     * 查询账户列表，可按客户维度过滤；不指定客户时按账户号键集分页，
+     * 满页时在 X-Next-Cursor 响应头返回下一页的 after 参数。
      */
     @GetMapping
-    public ResponseEntity<List<AccountDTO>> list(@RequestParam(value = "customerId", required = false) String customerId) {
+    public ResponseEntity<List<AccountDTO>> list(@RequestParam(value = "customerId", required = false) String customerId,
+                                                 @RequestParam(value = "after", required = false) String after,
+                                                 @RequestParam(value = "limit", required = false) @Min(1) Integer limit) {
         if (customerId != null && customerId.trim().length() > 0) {
             return ResponseEntity.ok(service.listByCustomer(customerId));
         }
-        return ResponseEntity.ok(service.list());
+        List<AccountDTO> page = service.list(after, limit);
+        if (page.size() < service.pageSize(limit)) {
+            return ResponseEntity.ok(page);
+        }
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, page.get(page.size() - 1).getAccountId())
+                .body(page);
+    }
+
+    /**
+     * 以 NDJSON 流式导出账户（每行一个账户），按账户号升序，可通过 after 从断点继续。
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "after", required = false) String after) {
+        StreamingResponseBody body = out -> {
+            OutputStream buffered = new BufferedOutputStream(out);
+            try {
+                service.export(after, account -> writeLine(buffered, account));
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            buffered.flush();
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
 
     /**
@@ -57,6 +106,27 @@ public class AccountController {
         return ResponseEntity.ok(service.get(accountId));
     }
 
+    /**
+     * 按账户号批量查询账户，供批量支付等调用方一次取回多个账户。
+     */
+    @PostMapping("/lookup")
+    public ResponseEntity<List<AccountDTO>> lookup(@RequestBody List<String> accountIds) {
+        return ResponseEntity.ok(service.getAll(accountIds));
+    }
+
+    /**
+     * 查询账户余额，指定 asOf 时返回该时点的余额。
+     */
+    @GetMapping("/{accountId}/balance")
+    public ResponseEntity<AccountDTO> balance(@PathVariable String accountId,
+                                              @RequestParam(value = "asOf", required = false)
+                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
+        if (asOf == null) {
+            return ResponseEntity.ok(service.get(accountId));
+        }
+        return ResponseEntity.ok(service.balanceAsOf(accountId, asOf));
+    }
+
     /**
      * 收款入账。
      */
@@ -107,6 +177,14 @@ public class AccountController {
         return ResponseEntity.ok(service.unfreeze(accountId, amount, requestId));
     }
 
+    /**
+     * 批量记账：一次请求提交多笔冻结/清算/入账/解冻等操作，在单个事务内执行并逐笔返回结果。
+     */
+    @PostMapping("/operations:batch")
+    public ResponseEntity<List<AccountOperationResult>> batch(@RequestBody List<AccountOperationCommand> commands) {
+        return ResponseEntity.ok(batchService.execute(commands));
+    }
+
     /**
      * 关闭账户：需三余额均为 0。
      */
@@ -114,4 +192,13 @@ public class AccountController {
     public ResponseEntity<AccountDTO> close(@PathVariable String accountId) {
         return ResponseEntity.ok(service.close(accountId));
     }
+
+    private void writeLine(OutputStream out, AccountDTO account) {
+        try {
+            exportWriter.writeValue(out, account);
+            out.write('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
 }
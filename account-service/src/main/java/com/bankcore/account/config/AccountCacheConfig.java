@@ -0,0 +1,29 @@
+package com.bankcore.account.config;
+
+import com.bankcore.account.service.AccountSnapshotCache;
+import java.nio.charset.StandardCharsets;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 订阅账户缓存失效频道，使多实例部署下各节点的近端缓存保持一致。
+ */
+@Configuration
+public class AccountCacheConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "account.cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer accountCacheListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       AccountSnapshotCache snapshotCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) ->
+                        snapshotCache.onRemoteInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(snapshotCache.channel()));
+        return container;
+    }
+}
@@ -10,16 +10,22 @@ public class Account {
     private String customerId;
     /** 账户币种 */
     private String currency;
-    /** 当前可用余额 */
-    private BigDecimal availableBalance;
-    /** 当前总余额（含冻结部分） */
-    private BigDecimal totalBalance;
-    /** 已冻结余额 */
-    private BigDecimal frozenBalance;
+    /** 余额的小数位，由币种决定 */
+    private int scale = MinorUnits.DEFAULT_SCALE;
+    /** 当前可用余额（最小货币单位） */
+    private long availableMinor;
+    /** 当前总余额（含冻结部分，最小货币单位） */
+    private long totalMinor;
+    /** 已冻结余额（最小货币单位） */
+    private long frozenMinor;
     /** 账户状态 */
     private String status;
     /** 开户时间 */
     private LocalDateTime openedAt;
+    /** 行版本号，每次更新 accounts 行加一，用于识别并发写入 */
+    private long version;
+    /** 追加式流水模式下最后一条流水的序号，原地更新模式下为 null（不落 accounts 表） */
+    private Long ledgerSeq;
 
     public Account() {
     }
@@ -28,49 +34,87 @@ public class Account {
         this.accountId = accountId;
         this.customerId = customerId;
         this.currency = currency;
-        this.totalBalance = openingBalance;
-        this.availableBalance = openingBalance;
-        this.frozenBalance = BigDecimal.ZERO;
+        this.scale = MinorUnits.scaleOf(currency);
+        this.totalMinor = MinorUnits.toMinor(openingBalance, scale);
+        this.availableMinor = totalMinor;
+        this.frozenMinor = 0L;
         this.status = "ACTIVE";
         this.openedAt = LocalDateTime.now();
     }
 
-    public synchronized void credit(BigDecimal amount) {
+    /**
+     * 金额换算为本账户币种的最小单位。
+     */
+    public long toMinor(BigDecimal amount) {
+        return MinorUnits.toMinor(amount, scale);
+    }
+
+    public void credit(BigDecimal amount) {
+        credit(toMinor(amount));
+    }
+
+    public void credit(long amount) {
         ensureOperable();
-        totalBalance = totalBalance.add(amount);
-        availableBalance = availableBalance.add(amount);
+        long total = MinorUnits.add(totalMinor, amount);
+        availableMinor = MinorUnits.add(availableMinor, amount);
+        totalMinor = total;
     }
 
-    public synchronized void prepareDebit(BigDecimal amount) {
+    public void prepareDebit(BigDecimal amount) {
+        prepareDebit(toMinor(amount));
+    }
+
+    public void prepareDebit(long amount) {
         ensureDebitAllowed();
-        if (availableBalance.compareTo(amount) < 0) {
+        if (availableMinor < amount) {
             throw new IllegalArgumentException("Insufficient available balance to freeze");
         }
-        availableBalance = availableBalance.subtract(amount);
-        frozenBalance = frozenBalance.add(amount);
+        long frozen = MinorUnits.add(frozenMinor, amount);
+        availableMinor = MinorUnits.subtract(availableMinor, amount);
+        frozenMinor = frozen;
+    }
+
+    public void settleDebit(BigDecimal amount) {
+        settleDebit(toMinor(amount));
     }
 
-    public synchronized void settleDebit(BigDecimal amount) {
+    public void settleDebit(long amount) {
         ensureDebitAllowed();
-        if (frozenBalance.compareTo(amount) < 0) {
+        if (frozenMinor < amount) {
             throw new IllegalArgumentException("Insufficient frozen balance to settle");
         }
-        totalBalance = totalBalance.subtract(amount);
-        frozenBalance = frozenBalance.subtract(amount);
+        long total = MinorUnits.subtract(totalMinor, amount);
+        frozenMinor = MinorUnits.subtract(frozenMinor, amount);
+        totalMinor = total;
     }
 
-    public synchronized void releaseFrozen(BigDecimal amount) {
+    public void releaseFrozen(BigDecimal amount) {
+        releaseFrozen(toMinor(amount));
+    }
+
+    public void releaseFrozen(long amount) {
         ensureOperable();
-        if (frozenBalance.compareTo(amount) < 0) {
+        if (frozenMinor < amount) {
             throw new IllegalArgumentException("Insufficient frozen balance to release");
         }
-        frozenBalance = frozenBalance.subtract(amount);
-        availableBalance = availableBalance.add(amount);
+        long available = MinorUnits.add(availableMinor, amount);
+        frozenMinor = MinorUnits.subtract(frozenMinor, amount);
+        availableMinor = available;
     }
 
-    public synchronized void close() {
-        if (totalBalance.compareTo(BigDecimal.ZERO) != 0 || availableBalance.compareTo(BigDecimal.ZERO) != 0 || frozenBalance
-                .compareTo(BigDecimal.ZERO) != 0) {
+    /**
+     * 为下一条流水分配序号；原地更新模式下不分配，返回 null。
+     */
+    public Long nextLedgerSeq() {
+        if (ledgerSeq == null) {
+            return null;
+        }
+        ledgerSeq = ledgerSeq + 1;
+        return ledgerSeq;
+    }
+
+    public void close() {
+        if (totalMinor != 0L || availableMinor != 0L || frozenMinor != 0L) {
             throw new IllegalStateException("Account must be fully settled before closing");
         }
         status = "CLOSED";
@@ -111,30 +155,54 @@ public class Account {
 
     public void setCurrency(String currency) {
         this.currency = currency;
+        int newScale = MinorUnits.scaleOf(currency);
+        if (newScale != scale) {
+            totalMinor = MinorUnits.rescale(totalMinor, scale, newScale);
+            availableMinor = MinorUnits.rescale(availableMinor, scale, newScale);
+            frozenMinor = MinorUnits.rescale(frozenMinor, scale, newScale);
+            scale = newScale;
+        }
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public long getAvailableMinor() {
+        return availableMinor;
+    }
+
+    public long getTotalMinor() {
+        return totalMinor;
+    }
+
+    public long getFrozenMinor() {
+        return frozenMinor;
     }
 
     public BigDecimal getAvailableBalance() {
-        return availableBalance;
+        return MinorUnits.toDecimal(availableMinor, scale);
     }
 
     public void setAvailableBalance(BigDecimal availableBalance) {
-        this.availableBalance = availableBalance;
+        this.availableMinor = MinorUnits.toMinor(availableBalance, scale);
     }
 
     public BigDecimal getTotalBalance() {
-        return totalBalance;
+        return MinorUnits.toDecimal(totalMinor, scale);
     }
 
     public void setTotalBalance(BigDecimal totalBalance) {
-        this.totalBalance = totalBalance;
+        this.totalMinor = MinorUnits.toMinor(totalBalance, scale);
     }
 
     public BigDecimal getFrozenBalance() {
-        return frozenBalance;
+        return MinorUnits.toDecimal(frozenMinor, scale);
     }
 
     public void setFrozenBalance(BigDecimal frozenBalance) {
-        this.frozenBalance = frozenBalance;
+        // frozen_balance 列可空，历史数据中的空值按 0 处理
+        this.frozenMinor = frozenBalance == null ? 0L : MinorUnits.toMinor(frozenBalance, scale);
     }
 
     public String getStatus() {
@@ -152,4 +220,20 @@ public class Account {
     public void setOpenedAt(LocalDateTime openedAt) {
         this.openedAt = openedAt;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public Long getLedgerSeq() {
+        return ledgerSeq;
+    }
+
+    public void setLedgerSeq(Long ledgerSeq) {
+        this.ledgerSeq = ledgerSeq;
+    }
 }
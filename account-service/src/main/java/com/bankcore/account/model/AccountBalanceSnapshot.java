@@ -0,0 +1,83 @@
+package com.bankcore.account.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 账户余额快照：追加式流水模式下按流水序号定期落地的三余额，作为余额推导与时点查询的起点。
+ */
+public class AccountBalanceSnapshot {
+    /** 账户ID */
+    private String accountId;
+    /** 快照对应的流水序号，开户快照为 0 */
+    private long entrySeq;
+    /** 快照时总余额 */
+    private BigDecimal totalBalance;
+    /** 快照时可用余额 */
+    private BigDecimal availableBalance;
+    /** 快照时冻结余额 */
+    private BigDecimal frozenBalance;
+    /** 快照对应的业务时间（该序号流水的记账时间） */
+    private LocalDateTime snapshotAt;
+
+    public AccountBalanceSnapshot() {
+    }
+
+    public AccountBalanceSnapshot(String accountId, long entrySeq, BigDecimal totalBalance, BigDecimal availableBalance,
+                                  BigDecimal frozenBalance, LocalDateTime snapshotAt) {
+        this.accountId = accountId;
+        this.entrySeq = entrySeq;
+        this.totalBalance = totalBalance;
+        this.availableBalance = availableBalance;
+        this.frozenBalance = frozenBalance;
+        this.snapshotAt = snapshotAt;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(String accountId) {
+        this.accountId = accountId;
+    }
+
+    public long getEntrySeq() {
+        return entrySeq;
+    }
+
+    public void setEntrySeq(long entrySeq) {
+        this.entrySeq = entrySeq;
+    }
+
+    public BigDecimal getTotalBalance() {
+        return totalBalance;
+    }
+
+    public void setTotalBalance(BigDecimal totalBalance) {
+        this.totalBalance = totalBalance;
+    }
+
+    public BigDecimal getAvailableBalance() {
+        return availableBalance;
+    }
+
+    public void setAvailableBalance(BigDecimal availableBalance) {
+        this.availableBalance = availableBalance;
+    }
+
+    public BigDecimal getFrozenBalance() {
+        return frozenBalance;
+    }
+
+    public void setFrozenBalance(BigDecimal frozenBalance) {
+        this.frozenBalance = frozenBalance;
+    }
+
+    public LocalDateTime getSnapshotAt() {
+        return snapshotAt;
+    }
+
+    public void setSnapshotAt(LocalDateTime snapshotAt) {
+        this.snapshotAt = snapshotAt;
+    }
+}
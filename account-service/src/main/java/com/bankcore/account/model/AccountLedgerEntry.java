@@ -13,32 +13,40 @@ public class AccountLedgerEntry {
     private String requestId;
     /** 关联账户ID */
     private String accountId;
+    /** 账户内流水序号，仅追加式流水模式下分配 */
+    private Long entrySeq;
     /** 操作类型（如冻结、扣款、解冻等） */
     private String operation;
-    /** 本次操作金额 */
-    private BigDecimal amount;
-    /** 操作后账户总余额 */
-    private BigDecimal totalAfter;
-    /** 操作后账户可用余额 */
-    private BigDecimal availableAfter;
-    /** 操作后账户冻结余额 */
-    private BigDecimal frozenAfter;
+    /** 金额小数位，与账户币种一致 */
+    private int scale = MinorUnits.DEFAULT_SCALE;
+    /** 本次操作金额（最小货币单位），无金额的操作为 null */
+    private Long amountMinor;
+    /** 操作后账户总余额（最小货币单位） */
+    private long totalAfterMinor;
+    /** 操作后账户可用余额（最小货币单位） */
+    private long availableAfterMinor;
+    /** 操作后账户冻结余额（最小货币单位） */
+    private long frozenAfterMinor;
     /** 流水创建时间 */
     private LocalDateTime createdAt;
 
     public AccountLedgerEntry() {
     }
 
-    public AccountLedgerEntry(String entryId, String requestId, String accountId, String operation, BigDecimal amount,
-                              BigDecimal totalAfter, BigDecimal availableAfter, BigDecimal frozenAfter) {
+    /**
+     * 按账户当前余额生成流水快照，直接复制最小单位数值，不产生中间 BigDecimal。
+     */
+    public AccountLedgerEntry(String entryId, String requestId, String operation, BigDecimal amount, Account account) {
         this.entryId = entryId;
         this.requestId = requestId;
-        this.accountId = accountId;
+        this.accountId = account.getAccountId();
+        this.entrySeq = account.nextLedgerSeq();
         this.operation = operation;
-        this.amount = amount;
-        this.totalAfter = totalAfter;
-        this.availableAfter = availableAfter;
-        this.frozenAfter = frozenAfter;
+        this.scale = account.getScale();
+        this.amountMinor = amount == null ? null : account.toMinor(amount);
+        this.totalAfterMinor = account.getTotalMinor();
+        this.availableAfterMinor = account.getAvailableMinor();
+        this.frozenAfterMinor = account.getFrozenMinor();
         this.createdAt = LocalDateTime.now();
     }
 
@@ -66,6 +74,14 @@ public class AccountLedgerEntry {
         this.accountId = accountId;
     }
 
+    public Long getEntrySeq() {
+        return entrySeq;
+    }
+
+    public void setEntrySeq(Long entrySeq) {
+        this.entrySeq = entrySeq;
+    }
+
     public String getOperation() {
         return operation;
     }
@@ -74,36 +90,56 @@ public class AccountLedgerEntry {
         this.operation = operation;
     }
 
+    public int getScale() {
+        return scale;
+    }
+
+    public Long getAmountMinor() {
+        return amountMinor;
+    }
+
+    public long getTotalAfterMinor() {
+        return totalAfterMinor;
+    }
+
+    public long getAvailableAfterMinor() {
+        return availableAfterMinor;
+    }
+
+    public long getFrozenAfterMinor() {
+        return frozenAfterMinor;
+    }
+
     public BigDecimal getAmount() {
-        return amount;
+        return amountMinor == null ? null : MinorUnits.toDecimal(amountMinor, scale);
     }
 
     public void setAmount(BigDecimal amount) {
-        this.amount = amount;
+        this.amountMinor = amount == null ? null : MinorUnits.toMinor(amount, scale);
     }
 
     public BigDecimal getTotalAfter() {
-        return totalAfter;
+        return MinorUnits.toDecimal(totalAfterMinor, scale);
     }
 
     public void setTotalAfter(BigDecimal totalAfter) {
-        this.totalAfter = totalAfter;
+        this.totalAfterMinor = MinorUnits.toMinor(totalAfter, scale);
     }
 
     public BigDecimal getAvailableAfter() {
-        return availableAfter;
+        return MinorUnits.toDecimal(availableAfterMinor, scale);
     }
 
     public void setAvailableAfter(BigDecimal availableAfter) {
-        this.availableAfter = availableAfter;
+        this.availableAfterMinor = MinorUnits.toMinor(availableAfter, scale);
     }
 
     public BigDecimal getFrozenAfter() {
-        return frozenAfter;
+        return MinorUnits.toDecimal(frozenAfterMinor, scale);
     }
 
     public void setFrozenAfter(BigDecimal frozenAfter) {
-        this.frozenAfter = frozenAfter;
+        this.frozenAfterMinor = MinorUnits.toMinor(frozenAfter, scale);
     }
 
     public LocalDateTime getCreatedAt() {
@@ -0,0 +1,27 @@
+package com.bankcore.account.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * 重建请求ID过滤器时使用的精简流水行。
+ */
+public class LedgerRequestId {
+    private String requestId;
+    private LocalDateTime createdAt;
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,100 @@
+package com.bankcore.account.model;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * 定点金额工具：账户域内余额以币种最小单位（分、厘等）的 long 表示，小数位由币种决定，
+ * 仅在 DTO/MyBatis 边界与 BigDecimal 互转，所有加减均做溢出检测。
+ */
+public final class MinorUnits {
+    /** 未知币种或未设置币种时使用的小数位，与数据库 DECIMAL(18,2) 一致 */
+    public static final int DEFAULT_SCALE = 2;
+    /** 余额列为 DECIMAL(18,2)，小数位更多的币种（如 BHD、KWD）写库会被截断 */
+    public static final int MAX_SCALE = 2;
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+
+    private MinorUnits() {
+    }
+
+    /**
+     * 币种对应的小数位，无法识别的币种按默认两位处理；超过 {@link #MAX_SCALE} 位的币种无法无损落库，直接拒绝。
+     */
+    public static int scaleOf(String currency) {
+        if (currency == null) {
+            return DEFAULT_SCALE;
+        }
+        int digits;
+        try {
+            digits = Currency.getInstance(currency.trim().toUpperCase()).getDefaultFractionDigits();
+        } catch (IllegalArgumentException ex) {
+            return DEFAULT_SCALE;
+        }
+        if (digits > MAX_SCALE) {
+            throw new IllegalArgumentException("Currency " + currency + " uses " + digits
+                    + " decimals, balances support at most " + MAX_SCALE);
+        }
+        return digits < 0 ? DEFAULT_SCALE : digits;
+    }
+
+    /**
+     * BigDecimal 转最小单位，金额为空、小数位超出币种精度或超出 long 范围时拒绝。
+     */
+    public static long toMinor(BigDecimal amount, int scale) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount is required");
+        }
+        try {
+            return amount.movePointRight(scale).longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " exceeds precision of " + scale
+                    + " decimals or overflows");
+        }
+    }
+
+    /**
+     * 最小单位转 BigDecimal，仅在对外返回或落库时调用。
+     */
+    public static BigDecimal toDecimal(long minor, int scale) {
+        return BigDecimal.valueOf(minor, scale);
+    }
+
+    public static long add(long left, long right) {
+        try {
+            return Math.addExact(left, right);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Balance overflow");
+        }
+    }
+
+    public static long subtract(long left, long right) {
+        try {
+            return Math.subtractExact(left, right);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Balance overflow");
+        }
+    }
+
+    /**
+     * 在两种小数位之间换算，缩小精度时若有非零尾数则拒绝。
+     */
+    public static long rescale(long minor, int fromScale, int toScale) {
+        if (fromScale == toScale) {
+            return minor;
+        }
+        if (toScale > fromScale) {
+            try {
+                return Math.multiplyExact(minor, POWERS_OF_TEN[toScale - fromScale]);
+            } catch (ArithmeticException ex) {
+                throw new IllegalArgumentException("Balance overflow");
+            }
+        }
+        long factor = POWERS_OF_TEN[fromScale - toScale];
+        if (minor % factor != 0) {
+            throw new IllegalArgumentException("Balance exceeds precision of " + toScale + " decimals");
+        }
+        return minor / factor;
+    }
+}
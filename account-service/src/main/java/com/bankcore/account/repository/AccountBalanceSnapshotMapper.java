@@ -0,0 +1,14 @@
+package com.bankcore.account.repository;
+
+import com.bankcore.account.model.AccountBalanceSnapshot;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+
+@Mapper
+public interface AccountBalanceSnapshotMapper {
+    AccountBalanceSnapshot findLatestAsOf(@Param("accountId") String accountId, @Param("asOf") LocalDateTime asOf);
+
+    void insert(AccountBalanceSnapshot snapshot);
+}
@@ -0,0 +1,26 @@
+package com.bankcore.account.repository;
+
+import com.bankcore.account.model.AccountBalanceSnapshot;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class AccountBalanceSnapshotRepository {
+    private final AccountBalanceSnapshotMapper mapper;
+
+    public AccountBalanceSnapshotRepository(AccountBalanceSnapshotMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * 指定时点及之前序号最大的快照。
+     */
+    public Optional<AccountBalanceSnapshot> findLatestAsOf(String accountId, LocalDateTime asOf) {
+        return Optional.ofNullable(mapper.findLatestAsOf(accountId, asOf));
+    }
+
+    public void save(AccountBalanceSnapshot snapshot) {
+        mapper.insert(snapshot);
+    }
+}
@@ -1,12 +1,34 @@
 package com.bankcore.account.repository;
 
 import com.bankcore.account.model.AccountLedgerEntry;
+import com.bankcore.account.model.LedgerRequestId;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface AccountLedgerMapper {
     AccountLedgerEntry findByRequestId(@Param("requestId") String requestId);
 
+    AccountLedgerEntry findLatestSequenced(@Param("accountId") String accountId);
+
+    List<AccountLedgerEntry> findLatestSequencedByAccounts(@Param("accountIds") Collection<String> accountIds);
+
+    List<String> findAccountsWithUnsnapshottedEntries();
+
+    AccountLedgerEntry findLatestAsOf(@Param("accountId") String accountId, @Param("asOf") LocalDateTime asOf);
+
+    List<String> findExistingRequestIds(@Param("requestIds") Collection<String> requestIds);
+
+    List<String> lockExistingRequestIds(@Param("requestIds") Collection<String> requestIds);
+
+    void scanRequestIdsSince(@Param("since") LocalDateTime since, ResultHandler<LedgerRequestId> handler);
+
     void insert(AccountLedgerEntry entry);
+
+    void insertBatch(@Param("entries") List<AccountLedgerEntry> entries);
 }
@@ -1,22 +1,111 @@
 package com.bankcore.account.repository;
 
 import com.bankcore.account.model.AccountLedgerEntry;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class AccountLedgerRepository {
     private final AccountLedgerMapper mapper;
+    private final RequestIdBloomFilter requestIdFilter;
 
-    public AccountLedgerRepository(AccountLedgerMapper mapper) {
+    public AccountLedgerRepository(AccountLedgerMapper mapper, RequestIdBloomFilter requestIdFilter) {
         this.mapper = mapper;
+        this.requestIdFilter = requestIdFilter;
     }
 
+    /**
+     * 按请求ID查流水，布隆过滤器判定一定不存在时不访问数据库；
+     * 过滤器只覆盖本节点可见的写入，调用方需以唯一键冲突作为最终判重依据。
+     */
     public Optional<AccountLedgerEntry> findByRequestId(String requestId) {
+        if (!requestIdFilter.mightContain(requestId)) {
+            return Optional.empty();
+        }
+        return findPersistedByRequestId(requestId);
+    }
+
+    /**
+     * 直接查库的请求ID查询，用于唯一键冲突后的确认。
+     */
+    public Optional<AccountLedgerEntry> findPersistedByRequestId(String requestId) {
         return Optional.ofNullable(mapper.findByRequestId(requestId));
     }
 
+    /**
+     * 追加式流水模式下账户序号最大的流水，即当前余额所在的流水。
+     */
+    public Optional<AccountLedgerEntry> findLatestSequenced(String accountId) {
+        return Optional.ofNullable(mapper.findLatestSequenced(accountId));
+    }
+
+    /**
+     * 一次查询返回多个账户各自序号最大的流水，没有序号流水的账户不在结果中。
+     */
+    public Map<String, AccountLedgerEntry> findLatestSequenced(Collection<String> accountIds) {
+        Map<String, AccountLedgerEntry> latest = new HashMap<>();
+        if (!accountIds.isEmpty()) {
+            for (AccountLedgerEntry entry : mapper.findLatestSequencedByAccounts(accountIds)) {
+                latest.put(entry.getAccountId(), entry);
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 最新序号流水晚于最新余额快照的账户，即 accounts 行可能尚未回写最新余额的账户。
+     */
+    public List<String> findAccountsWithUnsnapshottedEntries() {
+        return mapper.findAccountsWithUnsnapshottedEntries();
+    }
+
+    /**
+     * 指定时点及之前的最后一条流水。
+     */
+    public Optional<AccountLedgerEntry> findLatestAsOf(String accountId, LocalDateTime asOf) {
+        return Optional.ofNullable(mapper.findLatestAsOf(accountId, asOf));
+    }
+
+    /**
+     * 一次查询返回给定请求ID中已入账的部分。
+     */
+    public Set<String> findExistingRequestIds(Collection<String> requestIds) {
+        if (requestIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(mapper.findExistingRequestIds(requestIds));
+    }
+
+    /**
+     * 以当前读查询已提交的请求ID，不受所在事务快照影响，用于事务内唯一键冲突后的确认。
+     */
+    public Set<String> findCommittedRequestIds(Collection<String> requestIds) {
+        if (requestIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(mapper.lockExistingRequestIds(requestIds));
+    }
+
     public void save(AccountLedgerEntry entry) {
         mapper.insert(entry);
+        requestIdFilter.put(entry.getRequestId());
+    }
+
+    /**
+     * 多行 INSERT 批量写入流水。
+     */
+    public void saveAll(List<AccountLedgerEntry> entries) {
+        if (!entries.isEmpty()) {
+            mapper.insertBatch(entries);
+            entries.forEach(entry -> requestIdFilter.put(entry.getRequestId()));
+        }
     }
 }
@@ -3,18 +3,35 @@ package com.bankcore.account.repository;
 import com.bankcore.account.model.Account;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Mapper
 public interface AccountMapper {
     Account findById(@Param("accountId") String accountId);
 
-    List<Account> findAll();
+    List<Account> findPage(@Param("after") String after, @Param("limit") int limit);
+
+    void scanAfter(@Param("after") String after, ResultHandler<Account> handler);
 
     List<Account> findByCustomer(@Param("customerId") String customerId);
 
+    List<Account> findByIds(@Param("accountIds") List<String> accountIds);
+
     void insert(Account account);
 
-    void update(Account account);
+    int update(Account account);
+
+    void foldBalance(@Param("accountId") String accountId,
+                     @Param("totalBalance") BigDecimal totalBalance,
+                     @Param("availableBalance") BigDecimal availableBalance,
+                     @Param("frozenBalance") BigDecimal frozenBalance);
+
+    int applyConditionalDelta(@Param("accountId") String accountId,
+                              @Param("totalDelta") BigDecimal totalDelta,
+                              @Param("availableDelta") BigDecimal availableDelta,
+                              @Param("frozenDelta") BigDecimal frozenDelta,
+                              @Param("debit") boolean debit);
 }
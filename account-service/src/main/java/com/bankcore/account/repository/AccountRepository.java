@@ -3,8 +3,11 @@ package com.bankcore.account.repository;
 import com.bankcore.account.model.Account;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Repository
 public class AccountRepository {
@@ -18,19 +21,55 @@ public class AccountRepository {
         return Optional.ofNullable(mapper.findById(accountId));
     }
 
-    public List<Account> findAll() {
-        return mapper.findAll();
+    /**
+     * 按账户号做键集分页，after 为上一页最后一个账户号，首页传 null。
+     */
+    public List<Account> findPage(String after, int limit) {
+        return mapper.findPage(after, limit);
+    }
+
+    /**
+     * 以游标方式逐行扫描 after 之后的账户，每行回调一次，不在内存中累积结果集。
+     */
+    public void scanAfter(String after, Consumer<Account> consumer) {
+        mapper.scanAfter(after, context -> consumer.accept(context.getResultObject()));
     }
 
     public List<Account> findByCustomer(String customerId) {
         return mapper.findByCustomer(customerId);
     }
 
+    public List<Account> findByIds(List<String> accountIds) {
+        return accountIds.isEmpty() ? new ArrayList<>() : mapper.findByIds(accountIds);
+    }
+
     public void save(Account account) {
         mapper.insert(account);
     }
 
-    public void update(Account account) {
-        mapper.update(account);
+    /**
+     * 按读取时的版本号更新账户行，成功后版本号加一；行已被其他写入方修改时返回 false。
+     */
+    public boolean update(Account account) {
+        if (mapper.update(account) == 0) {
+            return false;
+        }
+        account.setVersion(account.getVersion() + 1);
+        return true;
+    }
+
+    /**
+     * 将快照余额回写到账户行，已关闭的账户不再回写。
+     */
+    public void foldBalance(String accountId, BigDecimal totalBalance, BigDecimal availableBalance, BigDecimal frozenBalance) {
+        mapper.foldBalance(accountId, totalBalance, availableBalance, frozenBalance);
+    }
+
+    /**
+     * 单条带条件的余额增减语句，余额不足或状态不允许时返回 false。
+     */
+    public boolean applyConditionalDelta(String accountId, BigDecimal totalDelta, BigDecimal availableDelta,
+                                         BigDecimal frozenDelta, boolean debit) {
+        return mapper.applyConditionalDelta(accountId, totalDelta, availableDelta, frozenDelta, debit) > 0;
     }
 }
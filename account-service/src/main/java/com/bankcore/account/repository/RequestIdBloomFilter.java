@@ -0,0 +1,211 @@
+package com.bankcore.account.repository;
+
+import com.bankcore.account.model.LedgerRequestId;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 流水请求ID布隆过滤器：按自然日分区，每个分区由容量倍增、误判率减半的子过滤器组成（可扩展布隆过滤器），
+ * 保留最近 N 天。启动时沿 idx_created_request 覆盖索引从 account_ledger 异步重建，重建完成前一律判定为“可能存在”以回落到数据库；
+ * 其他节点写入的请求ID本节点不可见，最终由 uk_account_request 唯一键兜底。
+ */
+@Component
+public class RequestIdBloomFilter {
+    private static final Logger log = LoggerFactory.getLogger(RequestIdBloomFilter.class);
+    private static final double LN2 = Math.log(2);
+
+    private final AccountLedgerMapper mapper;
+    private final boolean enabled;
+    private final long expectedDaily;
+    private final double falsePositiveRate;
+    private final int retentionDays;
+    private final Map<LocalDate, Partition> partitions = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public RequestIdBloomFilter(AccountLedgerMapper mapper,
+                                @Value("${account.ledger.bloom.enabled:true}") boolean enabled,
+                                @Value("${account.ledger.bloom.expected-daily:1000000}") long expectedDaily,
+                                @Value("${account.ledger.bloom.fpp:0.001}") double falsePositiveRate,
+                                @Value("${account.ledger.bloom.retention-days:7}") int retentionDays) {
+        this.mapper = mapper;
+        this.enabled = enabled;
+        this.expectedDaily = Math.max(1024L, expectedDaily);
+        this.falsePositiveRate = falsePositiveRate;
+        this.retentionDays = Math.max(1, retentionDays);
+    }
+
+    @PostConstruct
+    public void rebuildAsync() {
+        if (!enabled) {
+            return;
+        }
+        Thread loader = new Thread(this::rebuild, "ledger-bloom-rebuild");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * 请求ID是否可能已入账；返回 false 时一定未在本过滤器覆盖的时间窗内写入过。
+     */
+    public boolean mightContain(String requestId) {
+        if (!enabled || !ready) {
+            return true;
+        }
+        long hash1 = hash(requestId);
+        long hash2 = secondHash(hash1);
+        for (Partition partition : partitions.values()) {
+            if (partition.mightContain(hash1, hash2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void put(String requestId) {
+        put(requestId, LocalDate.now());
+    }
+
+    /**
+     * 每日滚动：丢弃超出保留期的分区。
+     */
+    @Scheduled(cron = "${account.ledger.bloom.rotate-cron:0 0 0 * * ?}")
+    public void rotate() {
+        LocalDate oldest = LocalDate.now().minusDays(retentionDays - 1L);
+        partitions.keySet().removeIf(day -> day.isBefore(oldest));
+    }
+
+    private void put(String requestId, LocalDate day) {
+        if (!enabled || requestId == null) {
+            return;
+        }
+        long hash1 = hash(requestId);
+        partitions.computeIfAbsent(day, d -> new Partition(expectedDaily, falsePositiveRate)).put(hash1, secondHash(hash1));
+    }
+
+    private void rebuild() {
+        LocalDate oldest = LocalDate.now().minusDays(retentionDays - 1L);
+        AtomicLong loaded = new AtomicLong();
+        try {
+            mapper.scanRequestIdsSince(oldest.atStartOfDay(), context -> {
+                LedgerRequestId row = context.getResultObject();
+                LocalDateTime createdAt = row.getCreatedAt();
+                put(row.getRequestId(), createdAt == null ? LocalDate.now() : createdAt.toLocalDate());
+                loaded.incrementAndGet();
+            });
+            ready = true;
+            log.info("ledger request id bloom filter rebuilt with {} ids since {}", loaded.get(), oldest);
+        } catch (Exception ex) {
+            log.warn("ledger request id bloom filter rebuild failed, falling back to database lookups", ex);
+        }
+    }
+
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * 双重哈希的步长取奇数：位数组长度是 64 的倍数，偶数步长会让 k 个探测位只落在同奇偶的一半位上，还可能重合。
+     */
+    private static long secondHash(long hash1) {
+        return mix(hash1) | 1L;
+    }
+
+    private static long mix(long value) {
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 单日分区：当前子过滤器写满后追加一个容量翻倍、误判率减半的子过滤器，总体误判率有上界。
+     */
+    private static final class Partition {
+        private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+        private Partition(long capacity, double falsePositiveRate) {
+            segments.add(new Segment(capacity, falsePositiveRate / 2));
+        }
+
+        private boolean mightContain(long hash1, long hash2) {
+            for (Segment segment : segments) {
+                if (segment.mightContain(hash1, hash2)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void put(long hash1, long hash2) {
+            Segment current = segments.get(segments.size() - 1);
+            if (current.isFull()) {
+                synchronized (this) {
+                    current = segments.get(segments.size() - 1);
+                    if (current.isFull()) {
+                        current = new Segment(current.capacity * 2, current.falsePositiveRate / 2);
+                        segments.add(current);
+                    }
+                }
+            }
+            current.put(hash1, hash2);
+        }
+    }
+
+    private static final class Segment {
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final long bitCount;
+        private final int hashCount;
+        private final AtomicLongArray words;
+        private final AtomicLong inserted = new AtomicLong();
+
+        private Segment(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (LN2 * LN2));
+            this.words = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE, (bits + 63) >>> 6));
+            this.bitCount = (long) words.length() << 6;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * LN2));
+        }
+
+        private boolean isFull() {
+            return inserted.get() >= capacity;
+        }
+
+        private boolean mightContain(long hash1, long hash2) {
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void put(long hash1, long hash2) {
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                long mask = 1L << bit;
+                words.getAndAccumulate((int) (bit >>> 6), mask, (current, update) -> current | update);
+            }
+            inserted.incrementAndGet();
+        }
+    }
+}
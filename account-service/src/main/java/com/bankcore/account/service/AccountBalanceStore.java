@@ -0,0 +1,185 @@
+package com.bankcore.account.service;
+
+import com.bankcore.account.model.Account;
+import com.bankcore.account.model.AccountBalanceSnapshot;
+import com.bankcore.account.model.AccountLedgerEntry;
+import com.bankcore.account.repository.AccountBalanceSnapshotRepository;
+import com.bankcore.account.repository.AccountLedgerRepository;
+import com.bankcore.account.repository.AccountRepository;
+import com.bankcore.common.error.BusinessException;
+import com.bankcore.common.error.ErrorCode;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 账户余额存取：按 account.ledger.mode 决定余额变更是原地更新 accounts 行，还是只追加流水。
+ * 追加模式下账户当前余额取序号最大的流水（每条流水都带有操作后三余额），没有流水时取 accounts 行；
+ * 写入时不再更新 accounts 行，避免热点账户的行锁竞争，仅关户时回写状态。
+ */
+@Component
+public class AccountBalanceStore {
+    private final AccountRepository repository;
+    private final AccountLedgerRepository ledgerRepository;
+    private final AccountBalanceSnapshotRepository snapshotRepository;
+    private final AccountLedgerCompactor compactor;
+    private final LedgerMode mode;
+    private final boolean foldOnStartup;
+
+    public AccountBalanceStore(AccountRepository repository,
+                               AccountLedgerRepository ledgerRepository,
+                               AccountBalanceSnapshotRepository snapshotRepository,
+                               AccountLedgerCompactor compactor,
+                               @Value("${account.ledger.mode:IN_PLACE}") LedgerMode mode,
+                               @Value("${account.ledger.fold-on-startup:false}") boolean foldOnStartup) {
+        this.repository = repository;
+        this.ledgerRepository = ledgerRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.compactor = compactor;
+        this.mode = mode;
+        this.foldOnStartup = foldOnStartup;
+    }
+
+    public boolean appendOnly() {
+        return mode == LedgerMode.APPEND_ONLY;
+    }
+
+    /**
+     * 追加模式下用最新流水覆盖从 accounts 行读到的余额，并记录当前流水序号供后续追加使用。
+     */
+    public Account restoreLatest(Account account) {
+        if (!appendOnly()) {
+            return account;
+        }
+        Optional<AccountLedgerEntry> latest = ledgerRepository.findLatestSequenced(account.getAccountId());
+        if (latest.isPresent()) {
+            applyBalances(account, latest.get());
+            account.setLedgerSeq(latest.get().getEntrySeq());
+        } else {
+            account.setLedgerSeq(0L);
+        }
+        return account;
+    }
+
+    /**
+     * 批量版本的 {@link #restoreLatest(Account)}：一次查询取回全部账户的最新流水，供列表、导出等多账户读取使用。
+     */
+    public List<Account> restoreLatest(List<Account> accounts) {
+        if (!appendOnly() || accounts.isEmpty()) {
+            return accounts;
+        }
+        Map<String, AccountLedgerEntry> latest = ledgerRepository.findLatestSequenced(
+                accounts.stream().map(Account::getAccountId).collect(Collectors.toList()));
+        for (Account account : accounts) {
+            AccountLedgerEntry entry = latest.get(account.getAccountId());
+            if (entry != null) {
+                applyBalances(account, entry);
+                account.setLedgerSeq(entry.getEntrySeq());
+            } else {
+                account.setLedgerSeq(0L);
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * 原地更新模式启动时，把追加模式期间尚未回写的最新流水余额回写到 accounts 行，避免切换模式后从过期余额继续记账。
+     * 回写需要扫描全部流水，只在从追加模式切回后的首次启动显式开启 account.ledger.fold-on-startup。
+     */
+    @PostConstruct
+    public void foldAfterModeSwitch() {
+        if (!appendOnly() && foldOnStartup) {
+            compactor.compactUnsnapshotted();
+        }
+    }
+
+    /**
+     * 开户后调用：追加模式下写入序号为 0 的开户快照，作为时点查询的起点。
+     */
+    public void onCreated(Account account) {
+        if (appendOnly()) {
+            compactor.saveOpening(new AccountBalanceSnapshot(account.getAccountId(), 0L, account.getTotalBalance(),
+                    account.getAvailableBalance(), account.getFrozenBalance(), account.getOpenedAt()));
+        }
+    }
+
+    /**
+     * 持久化账户变更：原地模式更新 accounts 行；追加模式下余额已体现在流水中，只在关户时回写行。
+     * 行版本与读取时不一致说明锁已失效、其他写入方抢先提交，本次变更作为并发冲突回滚。
+     */
+    public void update(Account account) {
+        if (!appendOnly() || "CLOSED".equalsIgnoreCase(account.getStatus())) {
+            if (!repository.update(account)) {
+                throw new BusinessException(ErrorCode.PROCESSING, "账户已被并发修改，请稍后重试");
+            }
+        }
+    }
+
+    public void append(AccountLedgerEntry entry) {
+        ledgerRepository.save(entry);
+        trackSnapshotPoints(Collections.singletonList(entry));
+    }
+
+    public void appendAll(List<AccountLedgerEntry> entries) {
+        ledgerRepository.saveAll(entries);
+        trackSnapshotPoints(entries);
+    }
+
+    /**
+     * 查询指定时点的余额：取该时点前最后一条流水与最新快照中较晚的一个；
+     * 两者都不存在时，只有账户从未记过流水才能以 accounts 行余额作答。
+     */
+    public Account balanceAsOf(Account account, LocalDateTime asOf) {
+        String accountId = account.getAccountId();
+        if (account.getOpenedAt() != null && account.getOpenedAt().isAfter(asOf)) {
+            throw new BusinessException(ErrorCode.NOT_FOUND, "Account not opened at " + asOf);
+        }
+        Optional<AccountLedgerEntry> entry = ledgerRepository.findLatestAsOf(accountId, asOf);
+        Optional<AccountBalanceSnapshot> snapshot = snapshotRepository.findLatestAsOf(accountId, asOf);
+        if (snapshot.isPresent() && (!entry.isPresent() || snapshot.get().getSnapshotAt().isAfter(entry.get().getCreatedAt()))) {
+            account.setTotalBalance(snapshot.get().getTotalBalance());
+            account.setAvailableBalance(snapshot.get().getAvailableBalance());
+            account.setFrozenBalance(snapshot.get().getFrozenBalance());
+        } else if (entry.isPresent()) {
+            applyBalances(account, entry.get());
+        } else if (ledgerRepository.findLatestAsOf(accountId, LocalDateTime.now()).isPresent()) {
+            throw new BusinessException(ErrorCode.NOT_FOUND, "No balance history at " + asOf);
+        }
+        return account;
+    }
+
+    private void applyBalances(Account account, AccountLedgerEntry entry) {
+        account.setTotalBalance(entry.getTotalAfter());
+        account.setAvailableBalance(entry.getAvailableAfter());
+        account.setFrozenBalance(entry.getFrozenAfter());
+    }
+
+    private void trackSnapshotPoints(List<AccountLedgerEntry> entries) {
+        for (AccountLedgerEntry entry : entries) {
+            if (entry.getEntrySeq() != null && compactor.isSnapshotPoint(entry.getEntrySeq())) {
+                registerTrack(entry.getAccountId());
+            }
+        }
+    }
+
+    private void registerTrack(String accountId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            compactor.track(accountId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                compactor.track(accountId);
+            }
+        });
+    }
+}
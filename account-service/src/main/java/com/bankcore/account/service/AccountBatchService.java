@@ -0,0 +1,290 @@
+package com.bankcore.account.service;
+
+import com.bankcore.account.model.Account;
+import com.bankcore.account.model.AccountLedgerEntry;
+import com.bankcore.account.repository.AccountLedgerRepository;
+import com.bankcore.account.service.lock.AccountLock;
+import com.bankcore.common.dto.AccountOperationCommand;
+import com.bankcore.common.dto.AccountOperationResult;
+import com.bankcore.common.error.BusinessException;
+import com.bankcore.common.error.ErrorCode;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 批量记账服务：资金池归集、支付批次等批量调用方一次提交多笔账户操作，
+ * 按固定顺序一次性锁定涉及的账户，在单个事务内经由 {@link AccountOperationEngine} 中注册的策略执行，
+ * 每个账户只更新一次，流水以多行 INSERT 写入，并逐笔返回处理结果。
+ * 写库在保存点内进行，并发请求抢先写入同一请求ID时只回滚到保存点，把冲突条目标记为重复后重算其余条目。
+ */
+@Service
+public class AccountBatchService {
+    private static final Logger log = LoggerFactory.getLogger(AccountBatchService.class);
+    private static final long ACCOUNT_LOCK_TTL_SECONDS = 30L;
+
+    private final AccountBalanceStore balanceStore;
+    private final AccountLedgerRepository ledgerRepository;
+    private final AccountDomainSupport domainSupport;
+    private final AccountLockManager lockManager;
+    private final AccountOperationEngine operationEngine;
+    private final AccountSnapshotCache snapshotCache;
+    private final Validator validator;
+    private final TransactionTemplate savepointTemplate;
+    private final int maxOperations;
+
+    public AccountBatchService(AccountBalanceStore balanceStore,
+                               AccountLedgerRepository ledgerRepository,
+                               AccountDomainSupport domainSupport,
+                               AccountLockManager lockManager,
+                               AccountOperationEngine operationEngine,
+                               AccountSnapshotCache snapshotCache,
+                               Validator validator,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${account.batch.max-operations:1000}") int maxOperations) {
+        this.balanceStore = balanceStore;
+        this.ledgerRepository = ledgerRepository;
+        this.domainSupport = domainSupport;
+        this.lockManager = lockManager;
+        this.operationEngine = operationEngine;
+        this.snapshotCache = snapshotCache;
+        this.validator = validator;
+        this.savepointTemplate = new TransactionTemplate(transactionManager);
+        this.savepointTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.maxOperations = maxOperations;
+    }
+
+    /**
+     * 批量执行账户操作：非法条目与重复请求直接给出结果，不影响其余条目；
+     * 单笔业务规则失败只拒绝该笔，同账户后续操作基于未受影响的余额继续执行；
+     * 与其他请求并发写入同一请求ID的条目返回重复，其余条目照常入账。
+     */
+    @Transactional
+    public List<AccountOperationResult> execute(List<AccountOperationCommand> commands) {
+        if (commands == null || commands.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (commands.size() > maxOperations) {
+            throw new BusinessException(ErrorCode.INVALID_REQUEST, "Batch exceeds " + maxOperations + " operations");
+        }
+        AccountOperationResult[] results = new AccountOperationResult[commands.size()];
+        Map<String, List<BatchItem>> itemsByAccount = new TreeMap<>();
+        Set<String> requestIds = new HashSet<>();
+        List<BatchItem> items = new ArrayList<>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            AccountOperationCommand command = commands.get(i);
+            BatchItem item = parse(i, command, results);
+            if (item == null) {
+                continue;
+            }
+            if (!requestIds.add(item.requestId)) {
+                results[i] = duplicate(item, "Duplicate requestId within batch");
+                continue;
+            }
+            items.add(item);
+        }
+        Set<String> processed = ledgerRepository.findExistingRequestIds(requestIds);
+        for (BatchItem item : items) {
+            if (item.strategy.requiresIdempotency() && processed.contains(item.requestId)) {
+                results[item.index] = duplicate(item, "Request already processed");
+                continue;
+            }
+            itemsByAccount.computeIfAbsent(item.accountId, id -> new ArrayList<>()).add(item);
+        }
+        if (!itemsByAccount.isEmpty()) {
+            lockAccounts(itemsByAccount.keySet());
+            persistGroups(itemsByAccount, results);
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    private BatchItem parse(int index, AccountOperationCommand command, AccountOperationResult[] results) {
+        if (command == null) {
+            results[index] = new AccountOperationResult(null, null, null, AccountOperationResult.REJECTED,
+                    ErrorCode.INVALID_REQUEST.getCode(), "operation is required", null);
+            return null;
+        }
+        String requestId = (command.getRequestId() == null || command.getRequestId().trim().isEmpty())
+                ? UUID.randomUUID().toString()
+                : command.getRequestId().trim();
+        String accountId = command.getAccountId();
+        String operation = command.getOperation() == null ? null : command.getOperation().trim().toUpperCase();
+        AccountOperationType type;
+        try {
+            type = operation == null ? null : AccountOperationType.valueOf(operation);
+        } catch (IllegalArgumentException ex) {
+            type = null;
+        }
+        String error = validate(command, type);
+        if (error != null) {
+            results[index] = new AccountOperationResult(requestId, accountId, command.getOperation(), AccountOperationResult.REJECTED,
+                    ErrorCode.INVALID_REQUEST.getCode(), error, null);
+            return null;
+        }
+        return new BatchItem(index, accountId.trim(), operationEngine.strategy(type), command.getAmount(), requestId);
+    }
+
+    /**
+     * 逐条校验：先做 DTO 注解校验，再按操作类型校验金额，关户不要求金额，其余操作金额必填且为正。
+     */
+    private String validate(AccountOperationCommand command, AccountOperationType type) {
+        Set<ConstraintViolation<AccountOperationCommand>> violations = validator.validate(command);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        if (type == null) {
+            return "Unsupported operation " + command.getOperation();
+        }
+        if (type != AccountOperationType.CLOSE
+                && (command.getAmount() == null || command.getAmount().compareTo(BigDecimal.ZERO) <= 0)) {
+            return "amount must be positive";
+        }
+        return null;
+    }
+
+    /**
+     * 按统一顺序锁定全部账户，锁在事务结束后释放。
+     */
+    private void lockAccounts(Set<String> accountIds) {
+        List<AccountLock> locks = lockManager.tryLockAll(accountIds, ACCOUNT_LOCK_TTL_SECONDS);
+        if (locks == null) {
+            throw new BusinessException(ErrorCode.PROCESSING, "账户正在处理并发交易，请稍后重试");
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lockManager.unlockAll(locks);
+            }
+        });
+    }
+
+    /**
+     * 在保存点内写入余额与流水。唯一键冲突说明有并发请求抢先提交了同一请求ID：回滚到保存点，
+     * 以当前读找出已提交的请求ID标记为重复，重新加载账户后重算其余条目；找不到冲突来源时按处理中拒绝整批。
+     */
+    private void persistGroups(Map<String, List<BatchItem>> itemsByAccount, AccountOperationResult[] results) {
+        Set<String> concurrentDuplicates = new HashSet<>();
+        while (true) {
+            List<Account> changedAccounts = new ArrayList<>();
+            List<AccountLedgerEntry> entries = new ArrayList<>();
+            List<BatchItem> applied = new ArrayList<>();
+            for (Map.Entry<String, List<BatchItem>> group : itemsByAccount.entrySet()) {
+                applyAccountGroup(group.getKey(), group.getValue(), concurrentDuplicates, results, changedAccounts, entries, applied);
+            }
+            try {
+                savepointTemplate.execute(status -> {
+                    changedAccounts.forEach(balanceStore::update);
+                    balanceStore.appendAll(entries);
+                    return null;
+                });
+            } catch (DuplicateKeyException ex) {
+                Set<String> appliedIds = applied.stream().map(item -> item.requestId).collect(Collectors.toSet());
+                Set<String> committed = ledgerRepository.findCommittedRequestIds(appliedIds);
+                if (!concurrentDuplicates.addAll(committed)) {
+                    throw new BusinessException(ErrorCode.PROCESSING, "账户正在处理并发交易，请稍后重试");
+                }
+                log.info("batch hit {} request ids committed concurrently, retrying remaining items", committed.size());
+                continue;
+            }
+            for (BatchItem item : applied) {
+                operationEngine.registerAfterCommit(item.strategy, item.accountId, item.amount, item.requestId);
+            }
+            changedAccounts.forEach(account -> snapshotCache.evictOnCommit(account.getAccountId()));
+            log.info("batch applied {} ledger entries across {} accounts", entries.size(), itemsByAccount.size());
+            return;
+        }
+    }
+
+    /**
+     * 在内存中对一个账户依次应用其条目，不写库；并发重复的条目直接标记为重复。
+     */
+    private void applyAccountGroup(String accountId, List<BatchItem> group, Set<String> concurrentDuplicates,
+                                   AccountOperationResult[] results, List<Account> changedAccounts,
+                                   List<AccountLedgerEntry> entries, List<BatchItem> applied) {
+        Account account;
+        try {
+            account = domainSupport.findAccount(accountId);
+        } catch (BusinessException ex) {
+            for (BatchItem item : group) {
+                results[item.index] = rejected(item, ex.getErrorCode(), ex.getMessage());
+            }
+            return;
+        }
+        boolean changed = false;
+        for (BatchItem item : group) {
+            if (concurrentDuplicates.contains(item.requestId)) {
+                results[item.index] = duplicate(item, "Request already processed");
+                continue;
+            }
+            try {
+                item.strategy.applyOperation(account, item.amount);
+            } catch (IllegalArgumentException ex) {
+                results[item.index] = rejected(item, ErrorCode.INVALID_REQUEST, ex.getMessage());
+                continue;
+            } catch (IllegalStateException ex) {
+                results[item.index] = rejected(item, ErrorCode.BUSINESS_RULE_VIOLATION, ex.getMessage());
+                continue;
+            }
+            changed = true;
+            if (item.strategy.shouldRecordLedger()) {
+                entries.add(new AccountLedgerEntry(UUID.randomUUID().toString(), item.requestId,
+                        item.strategy.operationType().name(), item.amount, account));
+            }
+            applied.add(item);
+            results[item.index] = new AccountOperationResult(item.requestId, accountId, item.strategy.operationType().name(),
+                    AccountOperationResult.APPLIED, null, null, domainSupport.toDto(account));
+        }
+        if (changed) {
+            changedAccounts.add(account);
+        }
+    }
+
+    private AccountOperationResult duplicate(BatchItem item, String message) {
+        return new AccountOperationResult(item.requestId, item.accountId, item.strategy.operationType().name(),
+                AccountOperationResult.DUPLICATE, null, message, null);
+    }
+
+    private AccountOperationResult rejected(BatchItem item, ErrorCode errorCode, String message) {
+        return new AccountOperationResult(item.requestId, item.accountId, item.strategy.operationType().name(),
+                AccountOperationResult.REJECTED, errorCode.getCode(), message, null);
+    }
+
+    private static final class BatchItem {
+        private final int index;
+        private final String accountId;
+        private final AccountOperationStrategy strategy;
+        private final BigDecimal amount;
+        private final String requestId;
+
+        private BatchItem(int index, String accountId, AccountOperationStrategy strategy, BigDecimal amount, String requestId) {
+            this.index = index;
+            this.accountId = accountId;
+            this.strategy = strategy;
+            this.amount = amount;
+            this.requestId = requestId;
+        }
+    }
+}
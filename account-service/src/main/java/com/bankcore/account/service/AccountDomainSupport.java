@@ -8,14 +8,16 @@ import com.bankcore.common.error.ErrorCode;
 import org.springframework.stereotype.Component;
 
 /**
- * 账户领域通用支撑，封装账户查询与 DTO 转换等公共逻辑。
+ * 账户领域通用支撑，封装账户查询与 DTO 转换等公共逻辑；追加式流水模式下查询结果已叠加最新流水余额。
  */
 @Component
 public class AccountDomainSupport {
     private final AccountRepository repository;
+    private final AccountBalanceStore balanceStore;
 
-    public AccountDomainSupport(AccountRepository repository) {
+    public AccountDomainSupport(AccountRepository repository, AccountBalanceStore balanceStore) {
         this.repository = repository;
+        this.balanceStore = balanceStore;
     }
 
     public Account findAccount(String accountId) {
@@ -28,7 +30,7 @@ public class AccountDomainSupport {
         if (!includeClosed && "CLOSED".equalsIgnoreCase(account.getStatus())) {
             throw new BusinessException(ErrorCode.BUSINESS_RULE_VIOLATION, "Account is closed");
         }
-        return account;
+        return balanceStore.restoreLatest(account);
     }
 
     public AccountDTO toDto(Account account) {
@@ -0,0 +1,114 @@
+package com.bankcore.account.service;
+
+import com.bankcore.account.model.AccountBalanceSnapshot;
+import com.bankcore.account.model.AccountLedgerEntry;
+import com.bankcore.account.repository.AccountBalanceSnapshotRepository;
+import com.bankcore.account.repository.AccountLedgerRepository;
+import com.bankcore.account.repository.AccountRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 追加式流水压缩任务：账户每累计 N 条流水登记一次，后台按账户最新流水把余额回写到 accounts 行并写入余额快照。
+ * 回写只用于缩短追加模式下的恢复链路和切回原地更新模式，追加模式下的读取一律以最新流水为准。
+ */
+@Component
+public class AccountLedgerCompactor {
+    private static final Logger log = LoggerFactory.getLogger(AccountLedgerCompactor.class);
+
+    private final AccountRepository repository;
+    private final AccountLedgerRepository ledgerRepository;
+    private final AccountBalanceSnapshotRepository snapshotRepository;
+    private final long snapshotEvery;
+    private final Set<String> pendingAccounts = ConcurrentHashMap.newKeySet();
+
+    public AccountLedgerCompactor(AccountRepository repository,
+                                  AccountLedgerRepository ledgerRepository,
+                                  AccountBalanceSnapshotRepository snapshotRepository,
+                                  @Value("${account.ledger.snapshot-every:100}") long snapshotEvery) {
+        this.repository = repository;
+        this.ledgerRepository = ledgerRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.snapshotEvery = Math.max(1L, snapshotEvery);
+    }
+
+    /**
+     * 流水序号是否到达快照间隔。
+     */
+    public boolean isSnapshotPoint(long entrySeq) {
+        return entrySeq > 0 && entrySeq % snapshotEvery == 0;
+    }
+
+    /**
+     * 登记需要生成快照的账户，同一账户在下次压缩前只保留一次。
+     */
+    public void track(String accountId) {
+        pendingAccounts.add(accountId);
+    }
+
+    /**
+     * 写入账户开户快照（序号 0）。
+     */
+    public void saveOpening(AccountBalanceSnapshot snapshot) {
+        snapshotRepository.save(snapshot);
+    }
+
+    /**
+     * 切回原地更新模式时调用：最新流水尚未生成快照的账户各压缩一次，使 accounts 行回到最新余额。
+     * 压缩后快照序号与最新流水一致，再次调用不会重复回写。
+     */
+    public int compactUnsnapshotted() {
+        List<String> accountIds = ledgerRepository.findAccountsWithUnsnapshottedEntries();
+        for (String accountId : accountIds) {
+            compactAccount(accountId);
+        }
+        if (!accountIds.isEmpty()) {
+            log.info("folded latest ledger balances into {} accounts after leaving append-only mode", accountIds.size());
+        }
+        return accountIds.size();
+    }
+
+    @Scheduled(fixedDelayString = "${account.ledger.compaction-interval-ms:5000}")
+    public void compact() {
+        if (pendingAccounts.isEmpty()) {
+            return;
+        }
+        List<String> accountIds = new ArrayList<>(pendingAccounts);
+        pendingAccounts.removeAll(accountIds);
+        for (String accountId : accountIds) {
+            try {
+                compactAccount(accountId);
+            } catch (Exception ex) {
+                log.warn("ledger compaction failed accountId={}", accountId, ex);
+                pendingAccounts.add(accountId);
+            }
+        }
+    }
+
+    /**
+     * 先回写 accounts 行再写快照：快照存在即表示已回写，中途失败时下次仍会重新回写。
+     */
+    private void compactAccount(String accountId) {
+        Optional<AccountLedgerEntry> latest = ledgerRepository.findLatestSequenced(accountId);
+        if (!latest.isPresent()) {
+            return;
+        }
+        AccountLedgerEntry entry = latest.get();
+        repository.foldBalance(accountId, entry.getTotalAfter(), entry.getAvailableAfter(), entry.getFrozenAfter());
+        try {
+            snapshotRepository.save(new AccountBalanceSnapshot(accountId, entry.getEntrySeq(), entry.getTotalAfter(),
+                    entry.getAvailableAfter(), entry.getFrozenAfter(), entry.getCreatedAt()));
+        } catch (DuplicateKeyException ex) {
+            log.debug("snapshot for account {} at seq {} already exists", accountId, entry.getEntrySeq());
+        }
+    }
+}
@@ -1,41 +1,108 @@
 package com.bankcore.account.service;
 
-import java.util.concurrent.TimeUnit;
+import com.bankcore.account.service.lock.AccountLock;
+import com.bankcore.account.service.lock.RedisAccountLeaseEngine;
+import com.bankcore.account.service.lock.StripedAccountLockEngine;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
- * 账户级分布式锁管理器：基于 Redis 保证同一账户在同一时间只被一个线程修改，避免并发超扣。
+ * 账户级锁管理器：每笔写操作只取进程内分段锁，同一节点上的并发请求在本地排队，不访问 Redis；
+ * 多实例部署（account.lock.distributed=true）时持锁后再确认本节点持有账户归属租约，
+ * 只有租约需要续约或在节点间交接时才有一次 Redis 往返。默认单实例写账户，不启用租约。
+ * 等待方在有界超时内排队，超时才返回失败。锁只负责排队，防止丢失更新的最后一道防线是 accounts.version 乐观校验。
  */
 @Component
 public class AccountLockManager {
     private static final Logger log = LoggerFactory.getLogger(AccountLockManager.class);
-    private static final String ACCOUNT_LOCK_KEY = "account:lock:";
-    private final StringRedisTemplate redisTemplate;
+    private final StripedAccountLockEngine localEngine;
+    private final RedisAccountLeaseEngine leaseEngine;
+    private final long waitTimeoutMillis;
+    private final boolean distributed;
 
-    public AccountLockManager(StringRedisTemplate redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    public AccountLockManager(StripedAccountLockEngine localEngine,
+                              RedisAccountLeaseEngine leaseEngine,
+                              @Value("${account.lock.wait-timeout-ms:3000}") long waitTimeoutMillis,
+                              @Value("${account.lock.distributed:false}") boolean distributed) {
+        this.localEngine = localEngine;
+        this.leaseEngine = leaseEngine;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.distributed = distributed;
     }
 
     /**
-     * 获取账户写锁，返回 true 表示当前线程获得锁，可安全修改账户余额。
+     * 获取账户写锁，超时未获取返回 null。
      */
-    public boolean tryLock(String accountId, long ttlSeconds) {
-        Boolean locked = redisTemplate.opsForValue()
-                .setIfAbsent(ACCOUNT_LOCK_KEY + accountId, "1", ttlSeconds, TimeUnit.SECONDS);
-        return locked != null && locked.booleanValue();
+    public AccountLock tryLock(String accountId, long ttlSeconds) {
+        return tryLock(accountId, ttlSeconds, System.currentTimeMillis() + waitTimeoutMillis);
+    }
+
+    /**
+     * 按固定顺序（分段下标、账户ID）依次获取多个账户的锁，整组共用一个等待截止时间，
+     * 任一账户在截止前未获取则释放已获取的锁并返回 null，请求线程最多等待 wait-timeout-ms。
+     * 所有多账户加锁都走此方法，避免不同批次交叉加锁导致死锁。
+     */
+    public List<AccountLock> tryLockAll(Collection<String> accountIds, long ttlSeconds) {
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+        List<String> ordered = new ArrayList<>(accountIds);
+        ordered.sort(Comparator.comparingInt(localEngine::stripeIndex).thenComparing(Comparator.naturalOrder()));
+        List<AccountLock> acquired = new ArrayList<>(ordered.size());
+        for (String accountId : ordered) {
+            AccountLock lock = tryLock(accountId, ttlSeconds, deadline);
+            if (lock == null) {
+                unlockAll(acquired);
+                return null;
+            }
+            acquired.add(lock);
+        }
+        return acquired;
+    }
+
+    private AccountLock tryLock(String accountId, long ttlSeconds, long deadline) {
+        try {
+            AccountLock local = localEngine.tryLock(accountId, Math.max(0L, deadline - System.currentTimeMillis()), ttlSeconds);
+            if (local == null || !distributed) {
+                return local;
+            }
+            boolean owned = false;
+            try {
+                owned = leaseEngine.acquire(accountId, Math.max(0L, deadline - System.currentTimeMillis()));
+            } finally {
+                if (!owned) {
+                    local.unlock();
+                }
+            }
+            return owned ? local : null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.warn("interrupted while waiting for account lock accountId={}", accountId);
+            return null;
+        }
+    }
+
+    /**
+     * 按获取的逆序释放多个账户锁。
+     */
+    public void unlockAll(List<AccountLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            unlock(locks.get(i));
+        }
     }
 
     /**
      * 释放账户锁，异常时也尽量释放，避免长时间阻塞后续请求。
      */
-    public void unlock(String accountId) {
+    public void unlock(AccountLock lock) {
         try {
-            redisTemplate.delete(ACCOUNT_LOCK_KEY + accountId);
+            lock.unlock();
         } catch (Exception ex) {
-            log.warn("释放账户锁失败 accountId={}", accountId, ex);
+            log.warn("释放账户锁失败 accountId={}", lock.accountId(), ex);
         }
     }
 }
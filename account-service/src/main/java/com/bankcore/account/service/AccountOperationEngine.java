@@ -0,0 +1,212 @@
+package com.bankcore.account.service;
+
+import com.bankcore.account.model.Account;
+import com.bankcore.account.model.AccountLedgerEntry;
+import com.bankcore.account.repository.AccountLedgerRepository;
+import com.bankcore.account.service.lock.AccountLock;
+import com.bankcore.common.dto.AccountDTO;
+import com.bankcore.common.error.BusinessException;
+import com.bankcore.common.error.ErrorCode;
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 账户操作调度引擎：按 {@link AccountOperationType} 从 EnumMap 中取出对应策略，统一完成
+ * 幂等校验、加锁、余额变更、记流水以及事务提交后的后置处理。
+ * 不需要幂等的操作（如关户）跳过流水查询，不需要记流水的操作不写分录。
+ */
+@Component
+public class AccountOperationEngine {
+    private static final Logger log = LoggerFactory.getLogger(AccountOperationEngine.class);
+
+    /**
+     * 锁过期时间（秒），防止线程异常退出导致锁长时间占用。
+     */
+    private static final long ACCOUNT_LOCK_TTL_SECONDS = 30L;
+
+    private final Map<AccountOperationType, AccountOperationStrategy> strategies = new EnumMap<>(AccountOperationType.class);
+    private final AccountBalanceStore balanceStore;
+    private final AccountLedgerRepository ledgerRepository;
+    private final AccountDomainSupport domainSupport;
+    private final AccountLockManager lockManager;
+    private final ConditionalBalanceExecutor conditionalExecutor;
+    private final LedgerGroupCommitter groupCommitter;
+    private final AccountSnapshotCache snapshotCache;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate savepointTemplate;
+
+    public AccountOperationEngine(List<AccountOperationStrategy> strategies,
+                                  AccountBalanceStore balanceStore,
+                                  AccountLedgerRepository ledgerRepository,
+                                  AccountDomainSupport domainSupport,
+                                  AccountLockManager lockManager,
+                                  ConditionalBalanceExecutor conditionalExecutor,
+                                  LedgerGroupCommitter groupCommitter,
+                                  AccountSnapshotCache snapshotCache,
+                                  PlatformTransactionManager transactionManager) {
+        for (AccountOperationStrategy strategy : strategies) {
+            AccountOperationStrategy previous = this.strategies.put(strategy.operationType(), strategy);
+            if (previous != null) {
+                throw new IllegalStateException("Duplicate strategy for " + strategy.operationType());
+            }
+        }
+        this.balanceStore = balanceStore;
+        this.ledgerRepository = ledgerRepository;
+        this.domainSupport = domainSupport;
+        this.lockManager = lockManager;
+        this.conditionalExecutor = conditionalExecutor;
+        this.groupCommitter = groupCommitter;
+        this.snapshotCache = snapshotCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.savepointTemplate = new TransactionTemplate(transactionManager);
+        this.savepointTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+    }
+
+    /**
+     * 返回操作类型对应的策略，未注册时视为非法请求。
+     */
+    public AccountOperationStrategy strategy(AccountOperationType type) {
+        AccountOperationStrategy strategy = strategies.get(type);
+        if (strategy == null) {
+            throw new BusinessException(ErrorCode.INVALID_REQUEST, "Unsupported account operation " + type);
+        }
+        return strategy;
+    }
+
+    /**
+     * 不在调用方事务内执行账户操作：启用组提交的操作直接排队等待所在批次落库，等待期间调用线程不持有数据库连接，
+     * 组提交线程的事务不会因连接池被等待方占满而饿死；其余操作在新事务中按 {@link #execute} 执行。
+     */
+    public AccountDTO executeOutsideTransaction(AccountOperationType type, String accountId, BigDecimal amount, String requestId) {
+        AccountOperationStrategy strategy = strategy(type);
+        if (strategy.requiresIdempotency() && groupCommitter.supports(type, accountId)) {
+            String normalizedRequestId = normalizeRequestId(requestId);
+            AccountDTO result = groupCommitter.submit(strategy, accountId, amount, normalizedRequestId);
+            strategy.afterCommit(accountId, amount, normalizedRequestId);
+            return result;
+        }
+        return transactionTemplate.execute(status -> execute(type, accountId, amount, requestId));
+    }
+
+    /**
+     * 执行账户操作：需要幂等的操作优先交给条件更新模式，其余先查流水去重再加锁读改写；
+     * 请求ID查询前置布隆过滤器，漏判的重复请求在保存点内由唯一键拦截并回滚本次变更。
+     */
+    public AccountDTO execute(AccountOperationType type, String accountId, BigDecimal amount, String requestId) {
+        AccountOperationStrategy strategy = strategy(type);
+        snapshotCache.evictOnCommit(accountId);
+        AccountDTO result;
+        String normalizedRequestId = requestId;
+        if (strategy.requiresIdempotency()) {
+            normalizedRequestId = normalizeRequestId(requestId);
+            result = executeIdempotent(strategy, accountId, amount, normalizedRequestId);
+        } else {
+            result = executeWithLock(accountId, account -> applyAndPersist(strategy, account, amount, null));
+        }
+        registerAfterCommit(strategy, accountId, amount, normalizedRequestId);
+        return result;
+    }
+
+    /**
+     * 事务提交后执行策略的后置处理；当前无事务时立即执行。
+     */
+    public void registerAfterCommit(AccountOperationStrategy strategy, String accountId, BigDecimal amount, String requestId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            strategy.afterCommit(accountId, amount, requestId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                strategy.afterCommit(accountId, amount, requestId);
+            }
+        });
+    }
+
+    private AccountDTO executeIdempotent(AccountOperationStrategy strategy, String accountId, BigDecimal amount, String requestId) {
+        AccountOperationType type = strategy.operationType();
+        if (conditionalExecutor.supports(type)) {
+            return conditionalExecutor.execute(strategy, accountId, amount, requestId);
+        }
+        Optional<AccountLedgerEntry> existing = ledgerRepository.findByRequestId(requestId);
+        if (existing.isPresent()) {
+            log.info("ledger request {} for account {} already processed, skipping duplicate {}", requestId, accountId, type);
+            return domainSupport.toDto(domainSupport.findAccount(accountId));
+        }
+        try {
+            return savepointTemplate.execute(status ->
+                    executeWithLock(accountId, account -> applyAndPersist(strategy, account, amount, requestId)));
+        } catch (DuplicateKeyException ex) {
+            if (!ledgerRepository.findPersistedByRequestId(requestId).isPresent()) {
+                throw new BusinessException(ErrorCode.PROCESSING, "账户正在处理并发交易，请稍后重试");
+            }
+            log.info("ledger request {} for account {} hit unique key, skipping duplicate {}", requestId, accountId, type);
+            return domainSupport.toDto(domainSupport.findAccount(accountId));
+        }
+    }
+
+    private AccountDTO applyAndPersist(AccountOperationStrategy strategy, Account account, BigDecimal amount, String requestId) {
+        strategy.applyOperation(account, amount);
+        balanceStore.update(account);
+        if (strategy.shouldRecordLedger()) {
+            balanceStore.append(new AccountLedgerEntry(UUID.randomUUID().toString(), requestId,
+                    strategy.operationType().name(), amount, account));
+        }
+        return domainSupport.toDto(account);
+    }
+
+    /**
+     * 通用账户加锁执行模板：先获取账户锁（进程内分段锁，多实例部署时另需持有账户归属租约），
+     * 确保同一账户的修改串行，再执行业务逻辑。存在事务时锁在事务结束后才释放，避免提交前被其他请求读到旧余额。
+     */
+    private <T> T executeWithLock(String accountId, AccountOperation<T> operation) {
+        AccountLock lock = lockManager.tryLock(accountId, ACCOUNT_LOCK_TTL_SECONDS);
+        if (lock == null) {
+            throw new BusinessException(ErrorCode.PROCESSING, "账户正在处理并发交易，请稍后重试");
+        }
+        boolean releaseOnCompletion = TransactionSynchronizationManager.isSynchronizationActive();
+        if (releaseOnCompletion) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lockManager.unlock(lock);
+                }
+            });
+        }
+        try {
+            Account account = domainSupport.findAccount(accountId);
+            return operation.apply(account);
+        } finally {
+            if (!releaseOnCompletion) {
+                lockManager.unlock(lock);
+            }
+        }
+    }
+
+    private String normalizeRequestId(String requestId) {
+        return (requestId == null || requestId.trim().isEmpty())
+                ? UUID.randomUUID().toString()
+                : requestId.trim();
+    }
+
+    /**
+     * 账户操作模板接口，便于在加锁后传入不同的业务逻辑。
+     */
+    @FunctionalInterface
+    private interface AccountOperation<T> {
+        T apply(Account account);
+    }
+}
@@ -1,46 +1,58 @@
 package com.bankcore.account.service;
 
 import com.bankcore.account.model.Account;
-import com.bankcore.account.model.AccountLedgerEntry;
-import com.bankcore.account.repository.AccountLedgerRepository;
 import com.bankcore.account.repository.AccountRepository;
 import com.bankcore.common.dto.AccountDTO;
 import com.bankcore.common.error.BusinessException;
 import com.bankcore.common.error.ErrorCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
  * 账户核心服务，负责账户开户、收付款记账、冻结与解冻、关闭等全生命周期操作。
- * 所有方法均带事务控制，确保余额字段(total/available/frozen)的一致性。
+ * 所有写方法均带事务控制，确保余额字段(total/available/frozen)的一致性（入账与清算的事务由操作引擎开启）；
+ * 余额类操作统一交由 {@link AccountOperationEngine} 按操作类型调度到对应策略。
  */
 @Service
 public class AccountService {
     private static final Logger log = LoggerFactory.getLogger(AccountService.class);
+    private static final int EXPORT_RESTORE_CHUNK = 500;
     private final AccountRepository repository;
-    private final AccountLedgerRepository ledgerRepository;
-    private final AccountLockManager lockManager;
-
-    /**
-     * 锁过期时间（秒），防止线程异常退出导致锁长时间占用。
-     */
-    private static final long ACCOUNT_LOCK_TTL_SECONDS = 30L;
+    private final AccountDomainSupport domainSupport;
+    private final AccountOperationEngine operationEngine;
+    private final AccountSnapshotCache snapshotCache;
+    private final AccountBalanceStore balanceStore;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
     /**
      * 构造函数注入仓储接口，便于单元测试与替换实现。
      */
-    public AccountService(AccountRepository repository, AccountLedgerRepository ledgerRepository, AccountLockManager lockManager) {
+    public AccountService(AccountRepository repository, AccountDomainSupport domainSupport, AccountOperationEngine operationEngine,
+                          AccountSnapshotCache snapshotCache,
+                          AccountBalanceStore balanceStore,
+                          @Value("${account.list.default-limit:200}") int defaultPageSize,
+                          @Value("${account.list.max-limit:1000}") int maxPageSize) {
         this.repository = repository;
-        this.ledgerRepository = ledgerRepository;
-        this.lockManager = lockManager;
+        this.domainSupport = domainSupport;
+        this.operationEngine = operationEngine;
+        this.snapshotCache = snapshotCache;
+        this.balanceStore = balanceStore;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     /**
@@ -51,21 +63,17 @@ public class AccountService {
         String accountId = UUID.randomUUID().toString();
         Account account = new Account(accountId, customerId, currency, openingBalance);
         repository.save(account);
+        balanceStore.onCreated(account);
         log.info("created account {} for customer {} with currency {}", accountId, customerId, currency);
-        return toDto(account);
+        return domainSupport.toDto(account);
     }
 
     /**
-     * 收款入账：增加总余额与可用余额。
+     * 收款入账：增加总余额与可用余额。不开外层事务，组提交时等待批次期间不占用数据库连接。
      */
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public AccountDTO credit(String accountId, BigDecimal amount, String requestId) {
-        return idempotentOperation(requestId, accountId, "CREDIT", amount, account -> {
-            account.credit(amount);
-            repository.update(account);
-            log.info("credited account {} amount {}", accountId, amount);
-            return toDto(account);
-        });
+        return operationEngine.executeOutsideTransaction(AccountOperationType.CREDIT, accountId, amount, requestId);
     }
 
     /**
@@ -73,25 +81,15 @@ public class AccountService {
      */
     @Transactional
     public AccountDTO freezeAmount(String accountId, BigDecimal amount, String requestId) {
-        return idempotentOperation(requestId, accountId, "FREEZE", amount, account -> {
-            account.prepareDebit(amount);
-            repository.update(account);
-            log.info("frozen amount {} on account {}", amount, accountId);
-            return toDto(account);
-        });
+        return operationEngine.execute(AccountOperationType.FREEZE, accountId, amount, requestId);
     }
 
     /**
-     * 清算成功：减少总余额与冻结金额，完成出账。
+     * 清算成功：减少总余额与冻结金额，完成出账。不开外层事务，组提交时等待批次期间不占用数据库连接。
      */
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public AccountDTO settle(String accountId, BigDecimal amount, String requestId) {
-        return idempotentOperation(requestId, accountId, "SETTLE", amount, account -> {
-            account.settleDebit(amount);
-            repository.update(account);
-            log.info("settled debit amount {} on account {}", amount, accountId);
-            return toDto(account);
-        });
+        return operationEngine.executeOutsideTransaction(AccountOperationType.SETTLE, accountId, amount, requestId);
     }
 
     /**
@@ -99,12 +97,7 @@ public class AccountService {
      */
     @Transactional
     public AccountDTO unfreeze(String accountId, BigDecimal amount, String requestId) {
-        return idempotentOperation(requestId, accountId, "UNFREEZE", amount, account -> {
-            account.releaseFrozen(amount);
-            repository.update(account);
-            log.info("unfroze amount {} on account {}", amount, accountId);
-            return toDto(account);
-        });
+        return operationEngine.execute(AccountOperationType.UNFREEZE, accountId, amount, requestId);
     }
 
     /**
@@ -112,117 +105,85 @@ public class AccountService {
      */
     @Transactional
     public AccountDTO close(String accountId) {
-        return executeWithLock(accountId, account -> {
-            account.close();
-            repository.update(account);
-            log.info("closed account {}", accountId);
-            return toDto(account);
-        });
+        return operationEngine.execute(AccountOperationType.CLOSE, accountId, null, null);
     }
 
     /**
-     * 按账户号查询账户。
+     * 按账户号查询账户，优先命中近端缓存。
      */
     public AccountDTO get(String accountId) {
-        return toDto(findAccount(accountId, true));
+        return snapshotCache.get(accountId, id -> domainSupport.toDto(domainSupport.findAccount(id, true)));
     }
 
     /**
-     * 查询所有账户列表。
-     */
-    public List<AccountDTO> list() {
-        return repository.findAll().stream().map(this::toDto).collect(Collectors.toList());
-    }
-
-    /**
-     * 查询指定客户下的所有账户。
+     * 按账户号批量查询账户，不存在的账户号直接忽略；单次数量不超过最大页大小。
      */
-    public List<AccountDTO> listByCustomer(String customerId) {
-        return repository.findByCustomer(customerId).stream().map(this::toDto).collect(Collectors.toList());
+    public List<AccountDTO> getAll(List<String> accountIds) {
+        if (accountIds == null || accountIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> distinct = accountIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        if (distinct.size() > maxPageSize) {
+            throw new BusinessException(ErrorCode.INVALID_REQUEST, "Lookup exceeds " + maxPageSize + " accounts");
+        }
+        return toDtos(repository.findByIds(distinct));
     }
 
     /**
-     * 获取有效账户，默认不包含已关闭账户。
+     * 查询账户在指定时点的余额，基于流水与余额快照推导，无需扫描历史。
      */
-    private Account findAccount(String accountId) {
-        return findAccount(accountId, false);
+    public AccountDTO balanceAsOf(String accountId, LocalDateTime asOf) {
+        Account account = domainSupport.findAccount(accountId, true);
+        return domainSupport.toDto(balanceStore.balanceAsOf(account, asOf));
     }
 
     /**
-     * 获取账户，可配置是否允许返回已关闭账户。
+     * 按账户号键集分页查询账户，after 为上一页最后一个账户号；limit 为空时取默认页大小，并限制在最大页大小以内。
      */
-    private Account findAccount(String accountId, boolean includeClosed) {
-        Account account = repository.findById(accountId)
-                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND, "Account not found"));
-        if (!includeClosed && "CLOSED".equalsIgnoreCase(account.getStatus())) {
-            throw new BusinessException(ErrorCode.BUSINESS_RULE_VIOLATION, "Account is closed");
-        }
-        return account;
+    public List<AccountDTO> list(String after, Integer limit) {
+        int pageSize = pageSize(limit);
+        String cursor = after == null || after.trim().isEmpty() ? null : after.trim();
+        return toDtos(repository.findPage(cursor, pageSize));
     }
 
     /**
-     * 领域对象转 DTO，供外部接口返回。
+     * 实际生效的页大小。
      */
-    private AccountDTO toDto(Account account) {
-        return new AccountDTO(account.getAccountId(), account.getCustomerId(), account.getCurrency(), account.getTotalBalance(),
-                account.getAvailableBalance(), account.getFrozenBalance(), account.getStatus());
+    public int pageSize(Integer limit) {
+        return limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
     }
 
     /**
-     * 通用账户加锁执行模板：先获取 Redis 分布式锁，确保同一账户的修改串行，再执行业务逻辑。
+     * 流式导出 after 之后的全部账户，逐个回调，内存占用与表大小无关；追加式流水模式下按块批量叠加最新流水余额后再回调。
      */
-    private <T> T executeWithLock(String accountId, AccountOperation<T> operation) {
-        boolean locked = lockManager.tryLock(accountId, ACCOUNT_LOCK_TTL_SECONDS);
-        if (!locked) {
-            throw new BusinessException(ErrorCode.PROCESSING, "账户正在处理并发交易，请稍后重试");
-        }
-        try {
-            Account account = findAccount(accountId);
-            return operation.apply(account);
-        } finally {
-            lockManager.unlock(accountId);
-        }
-    }
-
-    private AccountDTO idempotentOperation(String requestId, String accountId, String operation, BigDecimal amount,
-                                           AccountOperation<AccountDTO> callback) {
-        String normalizedRequestId = normalizeRequestId(requestId);
-        Optional<AccountLedgerEntry> existing = ledgerRepository.findByRequestId(normalizedRequestId);
-        if (existing.isPresent()) {
-            log.info("ledger request {} for account {} already processed, skipping duplicate {}", normalizedRequestId, accountId, operation);
-            return toDto(findAccount(accountId));
+    public void export(String after, Consumer<AccountDTO> consumer) {
+        String cursor = after == null || after.trim().isEmpty() ? null : after.trim();
+        if (!balanceStore.appendOnly()) {
+            repository.scanAfter(cursor, account -> consumer.accept(domainSupport.toDto(account)));
+            return;
         }
-        return executeWithLock(accountId, account -> {
-            AccountDTO result = callback.apply(account);
-            saveLedger(normalizedRequestId, accountId, operation, amount, account);
-            return result;
+        List<Account> chunk = new ArrayList<>(EXPORT_RESTORE_CHUNK);
+        repository.scanAfter(cursor, account -> {
+            chunk.add(account);
+            if (chunk.size() >= EXPORT_RESTORE_CHUNK) {
+                toDtos(chunk).forEach(consumer);
+                chunk.clear();
+            }
         });
+        toDtos(chunk).forEach(consumer);
     }
 
-    private String normalizeRequestId(String requestId) {
-        return (requestId == null || requestId.trim().isEmpty())
-                ? UUID.randomUUID().toString()
-                : requestId.trim();
-    }
-
-    private void saveLedger(String requestId, String accountId, String operation, BigDecimal amount, Account account) {
-        AccountLedgerEntry entry = new AccountLedgerEntry(
-                UUID.randomUUID().toString(),
-                (requestId == null || requestId.trim().isEmpty()) ? UUID.randomUUID().toString() : requestId.trim(),
-                accountId,
-                operation,
-                amount,
-                account.getTotalBalance(),
-                account.getAvailableBalance(),
-                account.getFrozenBalance());
-        ledgerRepository.save(entry);
+    /**
+     * 查询指定客户下的所有账户。
+     */
+    public List<AccountDTO> listByCustomer(String customerId) {
+        return toDtos(repository.findByCustomer(customerId));
     }
 
     /**
-     * 账户操作模板接口，便于在加锁后传入不同的业务逻辑。
+     * 直接读 accounts 表的结果统一经余额存取叠加最新流水，追加式流水模式下 accounts 行只是定期回写的旧余额。
      */
-    @FunctionalInterface
-    private interface AccountOperation<T> {
-        T apply(Account account);
+    private List<AccountDTO> toDtos(List<Account> accounts) {
+        return balanceStore.restoreLatest(accounts).stream().map(domainSupport::toDto).collect(Collectors.toList());
     }
 }
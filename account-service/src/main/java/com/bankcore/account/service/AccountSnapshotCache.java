@@ -0,0 +1,127 @@
+package com.bankcore.account.service;
+
+import com.bankcore.common.dto.AccountDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 账户快照近端缓存：基于 Caffeine 按容量与 TTL 淘汰，读写均无全局锁，服务 GET /accounts/{id} 这类高频查询。
+ * 每次余额变更在变更时和事务结束后各失效一次本地条目，并在提交后通过 Redis pub/sub 通知其他实例失效；
+ * 加载前记录分段代次，回填后若代次已变（加载期间发生过失效）则撤回回填，保证本节点写后读到最新余额。
+ */
+@Component
+public class AccountSnapshotCache {
+    private static final Logger log = LoggerFactory.getLogger(AccountSnapshotCache.class);
+    private static final int GENERATION_STRIPES = 1024;
+    private static final String MESSAGE_SEPARATOR = "|";
+
+    private final StringRedisTemplate redisTemplate;
+    private final boolean enabled;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final Cache<String, AccountDTO> entries;
+
+    public AccountSnapshotCache(StringRedisTemplate redisTemplate,
+                                @Value("${account.cache.enabled:true}") boolean enabled,
+                                @Value("${account.cache.max-size:10000}") int maxSize,
+                                @Value("${account.cache.ttl-ms:30000}") long ttlMillis,
+                                @Value("${account.cache.channel:account:cache:invalidate}") String channel) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.channel = channel;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build();
+    }
+
+    /**
+     * 读取账户快照，未命中或过期时通过 loader 加载并在无并发失效的情况下回填。
+     */
+    public AccountDTO get(String accountId, Function<String, AccountDTO> loader) {
+        if (!enabled) {
+            return loader.apply(accountId);
+        }
+        AccountDTO cached = entries.getIfPresent(accountId);
+        if (cached != null) {
+            return cached;
+        }
+        int stripe = stripe(accountId);
+        long generation = generations.get(stripe);
+        AccountDTO loaded = loader.apply(accountId);
+        if (generations.get(stripe) == generation) {
+            entries.put(accountId, loaded);
+            if (generations.get(stripe) != generation) {
+                entries.asMap().remove(accountId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 余额变更时调用：立即失效本地条目，事务结束后再失效一次，并在提交后广播给其他实例。
+     */
+    public void evictOnCommit(String accountId) {
+        if (!enabled) {
+            return;
+        }
+        invalidate(accountId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(accountId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                invalidate(accountId);
+                if (status == STATUS_COMMITTED) {
+                    publish(accountId);
+                }
+            }
+        });
+    }
+
+    /**
+     * 处理其他实例广播的失效消息，忽略本节点自己发出的消息。
+     */
+    public void onRemoteInvalidation(String message) {
+        int separator = message.indexOf(MESSAGE_SEPARATOR);
+        if (separator < 0 || message.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        invalidate(message.substring(separator + 1));
+    }
+
+    public String channel() {
+        return channel;
+    }
+
+    private void invalidate(String accountId) {
+        generations.incrementAndGet(stripe(accountId));
+        entries.invalidate(accountId);
+    }
+
+    private void publish(String accountId) {
+        try {
+            redisTemplate.convertAndSend(channel, nodeId + MESSAGE_SEPARATOR + accountId);
+        } catch (Exception ex) {
+            log.warn("publish account cache invalidation failed accountId={}", accountId, ex);
+        }
+    }
+
+    private int stripe(String accountId) {
+        return Math.floorMod(accountId.hashCode(), GENERATION_STRIPES);
+    }
+}
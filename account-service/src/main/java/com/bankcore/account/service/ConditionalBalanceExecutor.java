@@ -0,0 +1,128 @@
+package com.bankcore.account.service;
+
+import com.bankcore.account.model.Account;
+import com.bankcore.account.model.AccountLedgerEntry;
+import com.bankcore.account.repository.AccountLedgerRepository;
+import com.bankcore.account.repository.AccountRepository;
+import com.bankcore.common.dto.AccountDTO;
+import com.bankcore.common.error.BusinessException;
+import com.bankcore.common.error.ErrorCode;
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 条件更新执行模式：冻结/扣款/入账/解冻不再先查流水、加锁、读改写，而是直接执行一条带余额与状态守卫的
+ * UPDATE，再插入流水，依赖 uk_account_request 唯一键做幂等兜底。无需账户锁，可按操作类型单独开启。
+ */
+@Component
+public class ConditionalBalanceExecutor {
+    private static final Logger log = LoggerFactory.getLogger(ConditionalBalanceExecutor.class);
+    private final AccountRepository repository;
+    private final AccountLedgerRepository ledgerRepository;
+    private final AccountDomainSupport domainSupport;
+    private final AccountBalanceStore balanceStore;
+    private final TransactionTemplate savepointTemplate;
+    private final Set<AccountOperationType> enabledOperations;
+
+    public ConditionalBalanceExecutor(AccountRepository repository,
+                                      AccountLedgerRepository ledgerRepository,
+                                      AccountDomainSupport domainSupport,
+                                      AccountBalanceStore balanceStore,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${account.ledger.conditional-operations:}") String conditionalOperations) {
+        this.repository = repository;
+        this.ledgerRepository = ledgerRepository;
+        this.domainSupport = domainSupport;
+        this.balanceStore = balanceStore;
+        this.savepointTemplate = new TransactionTemplate(transactionManager);
+        this.savepointTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.enabledOperations = parseOperations(conditionalOperations);
+    }
+
+    /**
+     * 指定操作类型是否走条件更新模式；追加式流水模式下 accounts 行不再承载余额，条件更新不适用。
+     */
+    public boolean supports(AccountOperationType type) {
+        return enabledOperations.contains(type) && !balanceStore.appendOnly();
+    }
+
+    /**
+     * 执行条件更新：守卫失败时重新读取账户以给出与读改写模式一致的错误；
+     * 请求ID重复时回滚到保存点，按已处理请求返回当前账户。
+     * 金额必须为正：守卫只校验变更后余额非负，负数金额会把扣款变成入账而绕过策略校验。
+     */
+    public AccountDTO execute(AccountOperationStrategy strategy, String accountId, BigDecimal amount, String requestId) {
+        AccountOperationType type = strategy.operationType();
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new BusinessException(ErrorCode.INVALID_REQUEST, "amount must be positive");
+        }
+        try {
+            return savepointTemplate.execute(status -> {
+                if (!applyDelta(type, accountId, amount)) {
+                    throw rejection(strategy, accountId, amount);
+                }
+                Account account = domainSupport.findAccount(accountId, true);
+                ledgerRepository.save(new AccountLedgerEntry(UUID.randomUUID().toString(), requestId, type.name(), amount, account));
+                return domainSupport.toDto(account);
+            });
+        } catch (DuplicateKeyException ex) {
+            log.info("ledger request {} for account {} already processed, skipping duplicate {}", requestId, accountId, type);
+            return domainSupport.toDto(domainSupport.findAccount(accountId));
+        }
+    }
+
+    private boolean applyDelta(AccountOperationType type, String accountId, BigDecimal amount) {
+        BigDecimal negated = amount.negate();
+        switch (type) {
+            case CREDIT:
+                return repository.applyConditionalDelta(accountId, amount, amount, BigDecimal.ZERO, false);
+            case FREEZE:
+                return repository.applyConditionalDelta(accountId, BigDecimal.ZERO, negated, amount, true);
+            case SETTLE:
+                return repository.applyConditionalDelta(accountId, negated, BigDecimal.ZERO, negated, true);
+            case UNFREEZE:
+                return repository.applyConditionalDelta(accountId, BigDecimal.ZERO, amount, negated, false);
+            default:
+                throw new IllegalStateException("Unsupported conditional operation " + type);
+        }
+    }
+
+    /**
+     * 守卫未命中时，在最新账户快照上重放策略以获得准确的失败原因；若重放成功说明余额刚被并发修改。
+     */
+    private RuntimeException rejection(AccountOperationStrategy strategy, String accountId, BigDecimal amount) {
+        Account account = domainSupport.findAccount(accountId);
+        try {
+            strategy.applyOperation(account, amount);
+        } catch (RuntimeException ex) {
+            return ex;
+        }
+        return new BusinessException(ErrorCode.PROCESSING, "账户正在处理并发交易，请稍后重试");
+    }
+
+    private static Set<AccountOperationType> parseOperations(String value) {
+        Set<AccountOperationType> operations = EnumSet.noneOf(AccountOperationType.class);
+        for (String token : value.split(",")) {
+            String name = token.trim().toUpperCase();
+            if (name.isEmpty()) {
+                continue;
+            }
+            AccountOperationType type = AccountOperationType.valueOf(name);
+            if (type == AccountOperationType.CLOSE) {
+                throw new IllegalArgumentException("CLOSE cannot run in conditional update mode");
+            }
+            operations.add(type);
+        }
+        return operations;
+    }
+}
@@ -0,0 +1,262 @@
+package com.bankcore.account.service;
+
+import com.bankcore.account.model.Account;
+import com.bankcore.account.model.AccountLedgerEntry;
+import com.bankcore.account.repository.AccountLedgerRepository;
+import com.bankcore.account.service.lock.AccountLock;
+import com.bankcore.common.dto.AccountDTO;
+import com.bankcore.common.error.BusinessException;
+import com.bankcore.common.error.ErrorCode;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 热点账户组提交：同一账户在短窗口内（默认 2ms 或 256 笔）到达的入账/清算请求合并为一次事务，
+ * 只更新一次账户行并以多行 INSERT 写入流水，消除资金池主账户上的行锁排队。
+ * 每个调用方仍拿到自己那一笔操作后的账户快照。
+ */
+@Component
+public class LedgerGroupCommitter {
+    private static final Logger log = LoggerFactory.getLogger(LedgerGroupCommitter.class);
+    private static final long ACCOUNT_LOCK_TTL_SECONDS = 30L;
+
+    private final AccountBalanceStore balanceStore;
+    private final AccountLedgerRepository ledgerRepository;
+    private final AccountDomainSupport domainSupport;
+    private final AccountLockManager lockManager;
+    private final AccountSnapshotCache snapshotCache;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final long awaitTimeoutMillis;
+    private final Set<String> hotAccounts;
+    private final ConcurrentMap<String, PendingBatch> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public LedgerGroupCommitter(AccountBalanceStore balanceStore,
+                                AccountLedgerRepository ledgerRepository,
+                                AccountDomainSupport domainSupport,
+                                AccountLockManager lockManager,
+                                AccountSnapshotCache snapshotCache,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${account.group-commit.enabled:false}") boolean enabled,
+                                @Value("${account.group-commit.window-ms:2}") long windowMillis,
+                                @Value("${account.group-commit.max-batch:256}") int maxBatchSize,
+                                @Value("${account.group-commit.await-timeout-ms:5000}") long awaitTimeoutMillis,
+                                @Value("${account.group-commit.flush-threads:4}") int flushThreads,
+                                @Value("${account.group-commit.accounts:}") String hotAccounts) {
+        this.balanceStore = balanceStore;
+        this.ledgerRepository = ledgerRepository;
+        this.domainSupport = domainSupport;
+        this.lockManager = lockManager;
+        this.snapshotCache = snapshotCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.awaitTimeoutMillis = awaitTimeoutMillis;
+        this.hotAccounts = Arrays.stream(hotAccounts.split(","))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .collect(Collectors.toSet());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.flusher = Executors.newScheduledThreadPool(Math.max(1, flushThreads), runnable -> {
+            Thread thread = new Thread(runnable, "ledger-group-commit-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 是否对该账户的该类操作启用组提交：仅入账与清算，且未配置账户清单时对所有账户生效。
+     */
+    public boolean supports(AccountOperationType type, String accountId) {
+        return enabled
+                && (type == AccountOperationType.CREDIT || type == AccountOperationType.SETTLE)
+                && (hotAccounts.isEmpty() || hotAccounts.contains(accountId));
+    }
+
+    /**
+     * 提交一笔操作并等待所在批次落库，返回该笔操作完成后的账户快照。
+     * 调用方不得处于事务中：等待期间持有的连接会与组提交事务争用连接池。
+     */
+    public AccountDTO submit(AccountOperationStrategy strategy, String accountId, BigDecimal amount, String requestId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Group commit must not be awaited inside a transaction");
+        }
+        PendingOperation operation = new PendingOperation(strategy, amount, requestId);
+        enqueue(accountId, operation);
+        try {
+            return operation.result.get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            throw new BusinessException(ErrorCode.PROCESSING, "账户批量记账处理中，请稍后按原请求ID重试");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.PROCESSING, "账户批量记账处理中，请稍后按原请求ID重试");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void enqueue(String accountId, PendingOperation operation) {
+        while (true) {
+            PendingBatch batch = pending.computeIfAbsent(accountId, PendingBatch::new);
+            boolean full;
+            synchronized (batch) {
+                if (batch.sealed) {
+                    continue;
+                }
+                batch.operations.add(operation);
+                if (batch.operations.size() == 1) {
+                    flusher.schedule(() -> flush(batch), windowMillis, TimeUnit.MILLISECONDS);
+                }
+                full = batch.operations.size() >= maxBatchSize;
+                if (full) {
+                    seal(batch);
+                }
+            }
+            if (full) {
+                flusher.execute(() -> flush(batch));
+            }
+            return;
+        }
+    }
+
+    private void seal(PendingBatch batch) {
+        batch.sealed = true;
+        pending.remove(batch.accountId, batch);
+    }
+
+    private void flush(PendingBatch batch) {
+        List<PendingOperation> operations;
+        synchronized (batch) {
+            if (batch.flushed) {
+                return;
+            }
+            if (!batch.sealed) {
+                seal(batch);
+            }
+            batch.flushed = true;
+            operations = batch.operations;
+        }
+        try {
+            commit(batch.accountId, operations);
+        } catch (RuntimeException ex) {
+            log.warn("group commit of {} operations on account {} failed", operations.size(), batch.accountId, ex);
+            for (PendingOperation operation : operations) {
+                operation.result.completeExceptionally(ex);
+            }
+        }
+    }
+
+    /**
+     * 在账户锁与单个事务内按到达顺序重放整批操作：一次查重、一次账户更新、一次多行流水插入；
+     * 单笔余额不足只影响该笔，不影响同批其他操作。结果在事务提交后才回填给调用方。
+     */
+    private void commit(String accountId, List<PendingOperation> operations) {
+        AccountLock lock = lockManager.tryLock(accountId, ACCOUNT_LOCK_TTL_SECONDS);
+        if (lock == null) {
+            throw new BusinessException(ErrorCode.PROCESSING, "账户正在处理并发交易，请稍后重试");
+        }
+        try {
+            List<Runnable> completions = transactionTemplate.execute(status -> applyBatch(accountId, operations));
+            completions.forEach(Runnable::run);
+        } finally {
+            lockManager.unlock(lock);
+        }
+    }
+
+    private List<Runnable> applyBatch(String accountId, List<PendingOperation> operations) {
+        Set<String> processed = ledgerRepository.findExistingRequestIds(
+                operations.stream().map(op -> op.requestId).collect(Collectors.toSet()));
+        Account account = domainSupport.findAccount(accountId);
+        List<AccountLedgerEntry> entries = new ArrayList<>(operations.size());
+        List<Runnable> completions = new ArrayList<>(operations.size());
+        List<PendingOperation> duplicates = new ArrayList<>();
+        for (PendingOperation operation : operations) {
+            if (!processed.add(operation.requestId)) {
+                duplicates.add(operation);
+                continue;
+            }
+            try {
+                operation.strategy.applyOperation(account, operation.amount);
+            } catch (RuntimeException ex) {
+                completions.add(() -> operation.result.completeExceptionally(ex));
+                continue;
+            }
+            entries.add(new AccountLedgerEntry(UUID.randomUUID().toString(), operation.requestId,
+                    operation.strategy.operationType().name(), operation.amount, account));
+            AccountDTO snapshot = domainSupport.toDto(account);
+            completions.add(() -> operation.result.complete(snapshot));
+        }
+        if (!entries.isEmpty()) {
+            snapshotCache.evictOnCommit(accountId);
+            balanceStore.update(account);
+            balanceStore.appendAll(entries);
+        }
+        AccountDTO current = domainSupport.toDto(account);
+        for (PendingOperation duplicate : duplicates) {
+            log.info("ledger request {} for account {} already processed, skipping duplicate {}", duplicate.requestId, accountId,
+                    duplicate.strategy.operationType());
+            completions.add(() -> duplicate.result.complete(current));
+        }
+        log.info("group committed {} of {} operations on account {}", entries.size(), operations.size(), accountId);
+        return completions;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+    }
+
+    private static final class PendingBatch {
+        private final String accountId;
+        private final List<PendingOperation> operations = new ArrayList<>();
+        private boolean sealed;
+        private boolean flushed;
+
+        private PendingBatch(String accountId) {
+            this.accountId = accountId;
+        }
+    }
+
+    private static final class PendingOperation {
+        private final AccountOperationStrategy strategy;
+        private final BigDecimal amount;
+        private final String requestId;
+        private final CompletableFuture<AccountDTO> result = new CompletableFuture<>();
+
+        private PendingOperation(AccountOperationStrategy strategy, BigDecimal amount, String requestId) {
+            this.strategy = strategy;
+            this.amount = amount;
+            this.requestId = requestId;
+        }
+    }
+}
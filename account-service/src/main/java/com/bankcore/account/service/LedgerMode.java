@@ -0,0 +1,11 @@
+package com.bankcore.account.service;
+
+/**
+ * 账户流水记账模式。切换模式需停掉全部实例后整体切换：原地更新模式启动时会先把追加模式期间的最新流水余额回写到 accounts 行。
+ */
+public enum LedgerMode {
+    /** 原地更新 accounts 行的三余额，流水仅用于幂等与审计 */
+    IN_PLACE,
+    /** 只追加流水，余额由最新流水（或快照）推导，accounts 行由压缩任务定期回写 */
+    APPEND_ONLY
+}
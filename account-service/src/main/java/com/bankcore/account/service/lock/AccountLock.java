@@ -0,0 +1,17 @@
+package com.bankcore.account.service.lock;
+
+/**
+ * 已获取的账户锁句柄，由 {@link AccountLockEngine} 返回，持有方负责在操作完成后释放。
+ */
+public interface AccountLock {
+
+    /**
+     * 被锁定的账户ID。
+     */
+    String accountId();
+
+    /**
+     * 释放锁，需由获取锁的线程调用。
+     */
+    void unlock();
+}
@@ -0,0 +1,17 @@
+package com.bankcore.account.service.lock;
+
+/**
+ * 账户锁引擎：调用方在有界时间内排队等待锁，跨节点的账户归属由 {@link RedisAccountLeaseEngine} 单独保证。
+ */
+public interface AccountLockEngine {
+
+    /**
+     * 在等待时间内尝试获取账户锁。
+     *
+     * @param accountId    账户ID
+     * @param waitMillis   最长等待时间（毫秒），超时返回 null
+     * @param leaseSeconds 锁租约时间（秒），进程内实现无需租约，可忽略
+     * @return 锁句柄，超时未获取到时返回 null
+     */
+    AccountLock tryLock(String accountId, long waitMillis, long leaseSeconds) throws InterruptedException;
+}
@@ -0,0 +1,92 @@
+package com.bankcore.account.service.lock;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+/**
+ * 基于 Redis 的账户归属租约：多实例部署时某个账户同一时刻只归一个节点写入，节点持有租约期间的写操作只需本地分段锁。
+ * 只有首次写入、租约剩余不足一半需要续约、或账户从其他节点交接过来时才访问 Redis，热点账户不再每笔写都往返 Redis。
+ * 租约按本地时钟保守计算到期时间；节点停顿超过租约导致两个节点短暂同时写入时，由 accounts.version 乐观校验拒绝后写者。
+ */
+@Component
+public class RedisAccountLeaseEngine {
+    private static final Logger log = LoggerFactory.getLogger(RedisAccountLeaseEngine.class);
+    private static final String ACCOUNT_OWNER_KEY = "account:owner:";
+    private static final long RETRY_INTERVAL_MILLIS = 10L;
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "local owner = redis.call('get', KEYS[1]) "
+                    + "if not owner or owner == ARGV[1] then redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2]) return 1 end "
+                    + "return 0",
+            Long.class);
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final long leaseMillis;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Cache<String, Long> ownedUntil;
+
+    public RedisAccountLeaseEngine(StringRedisTemplate redisTemplate,
+                                   @Value("${account.lock.lease-millis:2000}") long leaseMillis) {
+        this.redisTemplate = redisTemplate;
+        this.leaseMillis = Math.max(100L, leaseMillis);
+        this.ownedUntil = Caffeine.newBuilder().expireAfterWrite(this.leaseMillis, TimeUnit.MILLISECONDS).build();
+    }
+
+    /**
+     * 确保本节点持有账户归属租约，需在持有该账户本地锁时调用。租约剩余超过一半时直接返回，
+     * 否则续约或等待其他节点的租约到期后接手，等待超时返回 false。
+     */
+    public boolean acquire(String accountId, long waitMillis) throws InterruptedException {
+        long now = System.currentTimeMillis();
+        Long until = ownedUntil.getIfPresent(accountId);
+        if (until != null && until - now > leaseMillis / 2) {
+            return true;
+        }
+        String ownerKey = ACCOUNT_OWNER_KEY + accountId;
+        long deadline = now + waitMillis;
+        while (true) {
+            long requestedAt = System.currentTimeMillis();
+            Long acquired = redisTemplate.execute(ACQUIRE_SCRIPT, Collections.singletonList(ownerKey),
+                    nodeId, String.valueOf(leaseMillis));
+            if (acquired != null && acquired == 1L) {
+                ownedUntil.put(accountId, requestedAt + leaseMillis);
+                return true;
+            }
+            ownedUntil.invalidate(accountId);
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(RETRY_INTERVAL_MILLIS);
+        }
+    }
+
+    /**
+     * 停机时交还仍在有效期内的租约，其他节点无需等租约过期即可接手。
+     */
+    @PreDestroy
+    public void releaseAll() {
+        List<String> accountIds = new ArrayList<>(ownedUntil.asMap().keySet());
+        ownedUntil.invalidateAll();
+        for (String accountId : accountIds) {
+            try {
+                redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(ACCOUNT_OWNER_KEY + accountId), nodeId);
+            } catch (Exception ex) {
+                log.warn("交还账户归属租约失败 accountId={}", accountId, ex);
+            }
+        }
+    }
+}
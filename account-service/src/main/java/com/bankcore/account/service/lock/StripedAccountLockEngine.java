@@ -0,0 +1,62 @@
+package com.bankcore.account.service.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 进程内分段锁引擎：账户ID按哈希映射到固定数量的公平锁上，等待方按到达顺序排队，无需任何网络往返。
+ * 只保证本进程内互斥，多实例部署时由 {@link RedisAccountLeaseEngine} 保证账户同一时刻只归一个节点写入。
+ */
+@Component
+public class StripedAccountLockEngine implements AccountLockEngine {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public StripedAccountLockEngine(@Value("${account.lock.stripes:1024}") int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock(true);
+        }
+        this.mask = size - 1;
+    }
+
+    @Override
+    public AccountLock tryLock(String accountId, long waitMillis, long leaseSeconds) throws InterruptedException {
+        ReentrantLock stripe = stripes[stripeIndex(accountId)];
+        if (!stripe.tryLock(waitMillis, TimeUnit.MILLISECONDS)) {
+            return null;
+        }
+        return new StripeLock(accountId, stripe);
+    }
+
+    /**
+     * 账户所在分段下标，多账户加锁时按此顺序获取可避免分段间死锁。
+     */
+    public int stripeIndex(String accountId) {
+        int h = accountId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static final class StripeLock implements AccountLock {
+        private final String accountId;
+        private final ReentrantLock stripe;
+
+        private StripeLock(String accountId, ReentrantLock stripe) {
+            this.accountId = accountId;
+            this.stripe = stripe;
+        }
+
+        @Override
+        public String accountId() {
+            return accountId;
+        }
+
+        @Override
+        public void unlock() {
+            stripe.unlock();
+        }
+    }
+}
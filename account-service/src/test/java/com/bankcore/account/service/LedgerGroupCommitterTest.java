@@ -0,0 +1,185 @@
+package com.bankcore.account.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.bankcore.account.model.Account;
+import com.bankcore.account.repository.AccountLedgerRepository;
+import com.bankcore.account.service.lock.AccountLock;
+import com.bankcore.common.dto.AccountDTO;
+import com.bankcore.common.error.BusinessException;
+import com.bankcore.common.error.ErrorCode;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class LedgerGroupCommitterTest {
+    private static final String ACCOUNT_ID = "ACCT-1";
+
+    private final AccountBalanceStore balanceStore = mock(AccountBalanceStore.class);
+    private final AccountLedgerRepository ledgerRepository = mock(AccountLedgerRepository.class);
+    private final AccountDomainSupport domainSupport = mock(AccountDomainSupport.class);
+    private final AccountLockManager lockManager = mock(AccountLockManager.class);
+    private final AccountSnapshotCache snapshotCache = mock(AccountSnapshotCache.class);
+    private final ExecutorService callers = Executors.newFixedThreadPool(4);
+    private final AccountOperationStrategy credit = new AccountOperationStrategy() {
+        @Override
+        public AccountOperationType operationType() {
+            return AccountOperationType.CREDIT;
+        }
+
+        @Override
+        public void applyOperation(Account account, BigDecimal amount) {
+            account.credit(amount);
+        }
+    };
+    private LedgerGroupCommitter committer;
+
+    @BeforeEach
+    void setUp() {
+        Account account = new Account(ACCOUNT_ID, "C1", "CNY", new BigDecimal("100.00"));
+        when(domainSupport.findAccount(ACCOUNT_ID)).thenReturn(account);
+        when(domainSupport.toDto(any(Account.class))).thenAnswer(invocation -> {
+            Account a = invocation.getArgument(0);
+            return new AccountDTO(a.getAccountId(), a.getCustomerId(), a.getCurrency(), a.getTotalBalance(),
+                    a.getAvailableBalance(), a.getFrozenBalance(), a.getStatus());
+        });
+        when(ledgerRepository.findExistingRequestIds(anyCollection())).thenAnswer(invocation -> new HashSet<String>());
+        when(lockManager.tryLock(anyString(), anyLong())).thenReturn(mock(AccountLock.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (committer != null) {
+            committer.shutdown();
+        }
+    }
+
+    @Test
+    void fullBatchIsCommittedOnceWithOneLedgerRowPerOperation() throws Exception {
+        committer = committer(60000L, 3, 5000L);
+
+        List<CompletableFuture<AccountDTO>> results = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            results.add(submitAsync("REQ-" + i));
+        }
+
+        Set<BigDecimal> balances = new HashSet<>();
+        for (CompletableFuture<AccountDTO> result : results) {
+            balances.add(result.get(5, TimeUnit.SECONDS).getAvailableBalance());
+        }
+        assertEquals(3, balances.size());
+        assertTrue(balances.contains(new BigDecimal("103.00")));
+        verify(balanceStore, times(1)).update(any(Account.class));
+        verify(balanceStore).appendAll(argThat(entries -> entries.size() == 3));
+        verify(snapshotCache).evictOnCommit(ACCOUNT_ID);
+    }
+
+    @Test
+    void partialBatchIsFlushedWhenTheWindowCloses() {
+        committer = committer(10L, 256, 5000L);
+
+        AccountDTO result = committer.submit(credit, ACCOUNT_ID, new BigDecimal("1.00"), "REQ-1");
+
+        assertEquals(new BigDecimal("101.00"), result.getAvailableBalance());
+        verify(balanceStore).appendAll(argThat(entries -> entries.size() == 1));
+    }
+
+    @Test
+    void duplicateRequestInTheSameBatchIsAppliedOnce() throws Exception {
+        committer = committer(60000L, 2, 5000L);
+
+        CompletableFuture<AccountDTO> first = submitAsync("REQ-1");
+        CompletableFuture<AccountDTO> second = submitAsync("REQ-1");
+
+        assertEquals(new BigDecimal("101.00"), first.get(5, TimeUnit.SECONDS).getAvailableBalance());
+        assertEquals(new BigDecimal("101.00"), second.get(5, TimeUnit.SECONDS).getAvailableBalance());
+        verify(balanceStore).appendAll(argThat(entries -> entries.size() == 1));
+    }
+
+    @Test
+    void callerGetsProcessingWhenTheBatchIsNotCommittedInTime() {
+        when(lockManager.tryLock(anyString(), anyLong())).thenAnswer(invocation -> {
+            Thread.sleep(500L);
+            return null;
+        });
+        committer = committer(1L, 256, 50L);
+
+        BusinessException ex = assertThrows(BusinessException.class,
+                () -> committer.submit(credit, ACCOUNT_ID, new BigDecimal("1.00"), "REQ-1"));
+
+        assertEquals(ErrorCode.PROCESSING, ex.getErrorCode());
+    }
+
+    @Test
+    void lockFailureFailsEveryOperationInTheBatch() throws Exception {
+        when(lockManager.tryLock(anyString(), anyLong())).thenReturn(null);
+        committer = committer(60000L, 2, 5000L);
+
+        CompletableFuture<AccountDTO> first = submitAsync("REQ-1");
+        CompletableFuture<AccountDTO> second = submitAsync("REQ-2");
+
+        for (CompletableFuture<AccountDTO> result : Arrays.asList(first, second)) {
+            Exception ex = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertTrue(ex.getCause() instanceof BusinessException);
+        }
+        verify(balanceStore, never()).update(any(Account.class));
+    }
+
+    @Test
+    void submitInsideTransactionIsRejected() {
+        committer = committer(10L, 256, 5000L);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThrows(IllegalStateException.class,
+                    () -> committer.submit(credit, ACCOUNT_ID, new BigDecimal("1.00"), "REQ-1"));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        verify(lockManager, never()).tryLock(anyString(), anyLong());
+    }
+
+    @Test
+    void supportsOnlyCreditAndSettle() {
+        committer = committer(10L, 256, 5000L);
+
+        assertTrue(committer.supports(AccountOperationType.CREDIT, ACCOUNT_ID));
+        assertTrue(committer.supports(AccountOperationType.SETTLE, ACCOUNT_ID));
+        assertFalse(committer.supports(AccountOperationType.FREEZE, ACCOUNT_ID));
+    }
+
+    private LedgerGroupCommitter committer(long windowMillis, int maxBatch, long awaitTimeoutMillis) {
+        return new LedgerGroupCommitter(balanceStore, ledgerRepository, domainSupport, lockManager, snapshotCache,
+                mock(PlatformTransactionManager.class), true, windowMillis, maxBatch, awaitTimeoutMillis, 2, "");
+    }
+
+    private CompletableFuture<AccountDTO> submitAsync(String requestId) {
+        return CompletableFuture.supplyAsync(
+                () -> committer.submit(credit, ACCOUNT_ID, new BigDecimal("1.00"), requestId), callers);
+    }
+}
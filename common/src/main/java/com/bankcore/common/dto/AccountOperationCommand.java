@@ -0,0 +1,56 @@
+package com.bankcore.common.dto;
+
+import javax.validation.constraints.NotBlank;
+import java.math.BigDecimal;
+
+public class AccountOperationCommand {
+    @NotBlank
+    private String accountId;
+    @NotBlank
+    private String operation;
+    private BigDecimal amount;
+
+    private String requestId;
+
+    public AccountOperationCommand() {
+    }
+
+    public AccountOperationCommand(String accountId, String operation, BigDecimal amount, String requestId) {
+        this.accountId = accountId;
+        this.operation = operation;
+        this.amount = amount;
+        this.requestId = requestId;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(String accountId) {
+        this.accountId = accountId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+}
@@ -0,0 +1,85 @@
+package com.bankcore.common.dto;
+
+public class AccountOperationResult {
+    public static final String APPLIED = "APPLIED";
+    public static final String DUPLICATE = "DUPLICATE";
+    public static final String REJECTED = "REJECTED";
+
+    private String requestId;
+    private String accountId;
+    private String operation;
+    private String status;
+    private String errorCode;
+    private String message;
+    private AccountDTO account;
+
+    public AccountOperationResult() {
+    }
+
+    public AccountOperationResult(String requestId, String accountId, String operation, String status, String errorCode,
+                                  String message, AccountDTO account) {
+        this.requestId = requestId;
+        this.accountId = accountId;
+        this.operation = operation;
+        this.status = status;
+        this.errorCode = errorCode;
+        this.message = message;
+        this.account = account;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(String accountId) {
+        this.accountId = accountId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public void setErrorCode(String errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public AccountDTO getAccount() {
+        return account;
+    }
+
+    public void setAccount(AccountDTO account) {
+        this.account = account;
+    }
+}
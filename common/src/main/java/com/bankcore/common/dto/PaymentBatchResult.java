@@ -9,17 +9,25 @@ public class PaymentBatchResult {
     private int rejected;
     private int failed;
     private List<String> failedIds;
+    private List<Integer> failedIndexes;
 
     public PaymentBatchResult() {
         this.failedIds = Collections.emptyList();
+        this.failedIndexes = Collections.emptyList();
     }
 
     public PaymentBatchResult(int total, int succeeded, int rejected, int failed, List<String> failedIds) {
+        this(total, succeeded, rejected, failed, failedIds, Collections.<Integer>emptyList());
+    }
+
+    public PaymentBatchResult(int total, int succeeded, int rejected, int failed, List<String> failedIds,
+                              List<Integer> failedIndexes) {
         this.total = total;
         this.succeeded = succeeded;
         this.rejected = rejected;
         this.failed = failed;
         this.failedIds = failedIds;
+        this.failedIndexes = failedIndexes;
     }
 
     public int getTotal() {
@@ -61,4 +69,15 @@ public class PaymentBatchResult {
     public void setFailedIds(List<String> failedIds) {
         this.failedIds = failedIds;
     }
+
+    /**
+     * 未成功条目在提交列表中的下标（从 0 开始），空条目与批内重复条目只能按下标定位。
+     */
+    public List<Integer> getFailedIndexes() {
+        return failedIndexes;
+    }
+
+    public void setFailedIndexes(List<Integer> failedIndexes) {
+        this.failedIndexes = failedIndexes;
+    }
 }
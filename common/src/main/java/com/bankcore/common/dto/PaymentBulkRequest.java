@@ -0,0 +1,37 @@
+package com.bankcore.common.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+public class PaymentBulkRequest {
+    @NotBlank
+    private String batchId;
+    @NotNull
+    private List<PaymentRequest> payments = new ArrayList<>();
+
+    public PaymentBulkRequest() {
+    }
+
+    public PaymentBulkRequest(String batchId, List<PaymentRequest> payments) {
+        this.batchId = batchId;
+        this.payments = payments;
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public void setBatchId(String batchId) {
+        this.batchId = batchId;
+    }
+
+    public List<PaymentRequest> getPayments() {
+        return payments;
+    }
+
+    public void setPayments(List<PaymentRequest> payments) {
+        this.payments = payments;
+    }
+}
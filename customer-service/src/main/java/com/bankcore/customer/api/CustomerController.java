@@ -39,6 +39,11 @@ public class CustomerController {
         return customer != null ? ResponseEntity.ok(customer) : ResponseEntity.notFound().build();
     }
 
+    @PostMapping("/lookup")
+    public ResponseEntity<List<Customer>> lookup(@RequestBody List<String> ids) {
+        return ResponseEntity.ok(customerService.getCustomers(ids));
+    }
+
     @PostMapping
     public ResponseEntity<Customer> create(@Valid @RequestBody CreateCustomerRequest request) {
         Customer customer = customerService.createCustomer(request.getName(), request.getCreditCode(),
@@ -46,6 +51,11 @@ public class CustomerController {
         return ResponseEntity.ok(customer);
     }
 
+    @PutMapping("/{id}/status")
+    public ResponseEntity<Customer> updateStatus(@PathVariable String id, @Valid @RequestBody UpdateStatusRequest request) {
+        return ResponseEntity.ok(customerService.updateStatus(id, request.getStatus()));
+    }
+
     @GetMapping("/{id}/accounts")
     public ResponseEntity<List<AccountDTO>> accounts(@PathVariable String id) {
         String url = accountServiceBaseUrl + "/accounts?customerId=" + id;
@@ -58,6 +68,19 @@ public class CustomerController {
         return ResponseEntity.ok(payload);
     }
 
+    public static class UpdateStatusRequest {
+        @NotBlank
+        private String status;
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+    }
+
     public static class CreateCustomerRequest {
         @NotBlank
         private String name;
@@ -0,0 +1,28 @@
+package com.bankcore.customer.model;
+
+import com.bankcore.common.error.BusinessException;
+import com.bankcore.common.error.ErrorCode;
+
+/**
+ * 客户 KYC 状态；支付侧按 BLOCKED 阻断、按 RISKY 进入风控复核，其他取值一律拒绝，避免拼写错误被当作正常客户放行。
+ */
+public enum CustomerStatus {
+    NORMAL,
+    RISKY,
+    BLOCKED;
+
+    /**
+     * 解析外部传入的状态（忽略大小写与首尾空白），不在允许范围内时视为非法请求。
+     */
+    public static CustomerStatus parse(String value) {
+        if (value != null) {
+            String name = value.trim().toUpperCase();
+            for (CustomerStatus status : values()) {
+                if (status.name().equals(name)) {
+                    return status;
+                }
+            }
+        }
+        throw new BusinessException(ErrorCode.INVALID_REQUEST, "Unsupported customer status " + value);
+    }
+}
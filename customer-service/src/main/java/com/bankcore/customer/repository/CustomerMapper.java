@@ -5,6 +5,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
 
@@ -16,6 +17,13 @@ public interface CustomerMapper {
     @Select("SELECT customer_id, name, credit_code, contact_name, contact_phone, onboard_date, risk_level, status, segment FROM customers WHERE customer_id = #{id}")
     Customer findById(@Param("id") String id);
 
+    @Select("<script>SELECT customer_id, name, credit_code, contact_name, contact_phone, onboard_date, risk_level, status, segment FROM customers WHERE customer_id IN "
+            + "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<Customer> findByIds(@Param("ids") List<String> ids);
+
     @Insert("INSERT INTO customers(customer_id, name, credit_code, contact_name, contact_phone, onboard_date, risk_level, status, segment) VALUES(#{customerId}, #{name}, #{creditCode}, #{contactName}, #{contactPhone}, #{onboardDate}, #{riskLevel}, #{status}, #{segment})")
     void insert(Customer customer);
+
+    @Update("UPDATE customers SET status = #{status} WHERE customer_id = #{id}")
+    int updateStatus(@Param("id") String id, @Param("status") String status);
 }
@@ -1,11 +1,21 @@
 package com.bankcore.customer.service;
 
 import com.bankcore.customer.model.Customer;
+import com.bankcore.customer.model.CustomerStatus;
 import com.bankcore.customer.repository.CustomerMapper;
+import com.bankcore.common.error.BusinessException;
+import com.bankcore.common.error.ErrorCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -14,13 +24,20 @@ import java.util.UUID;
  */
 @Service
 public class CustomerService {
+    private static final Logger log = LoggerFactory.getLogger(CustomerService.class);
+    private static final int MAX_LOOKUP = 1000;
     private final CustomerMapper mapper;
+    private final StringRedisTemplate redisTemplate;
+    private final String statusChannel;
 
     /**
-     * 构造注入 MyBatis Mapper。
+     * 构造注入 MyBatis Mapper 与用于广播状态变更的 Redis 模板。
      */
-    public CustomerService(CustomerMapper mapper) {
+    public CustomerService(CustomerMapper mapper, StringRedisTemplate redisTemplate,
+                           @Value("${customer.events.status-channel:customer:status:changed}") String statusChannel) {
         this.mapper = mapper;
+        this.redisTemplate = redisTemplate;
+        this.statusChannel = statusChannel;
     }
 
     /**
@@ -37,6 +54,19 @@ public class CustomerService {
         return mapper.findById(id);
     }
 
+    /**
+     * 按客户 ID 批量查询，不存在的 ID 直接忽略。
+     */
+    public List<Customer> getCustomers(List<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (ids.size() > MAX_LOOKUP) {
+            throw new BusinessException(ErrorCode.INVALID_REQUEST, "Lookup exceeds " + MAX_LOOKUP + " customers");
+        }
+        return mapper.findByIds(ids);
+    }
+
     /**
      * 创建企业客户并补充 KYC 状态、风控等级。
      */
@@ -50,9 +80,30 @@ public class CustomerService {
         customer.setContactPhone(contactPhone);
         customer.setSegment(segment);
         customer.setRiskLevel(riskLevel == null ? "LOW" : riskLevel);
-        customer.setStatus(status == null ? "NORMAL" : status);
+        customer.setStatus(status == null ? CustomerStatus.NORMAL.name() : CustomerStatus.parse(status).name());
         customer.setOnboardDate(LocalDate.now());
         mapper.insert(customer);
         return customer;
     }
+
+    /**
+     * 变更客户状态（如冻结为 BLOCKED），状态须为 {@link CustomerStatus} 之一；提交后广播客户ID，供下游失效客户资料缓存。
+     */
+    @Transactional
+    public Customer updateStatus(String id, String status) {
+        if (mapper.updateStatus(id, CustomerStatus.parse(status).name()) == 0) {
+            throw new BusinessException(ErrorCode.NOT_FOUND, "Customer not found");
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    redisTemplate.convertAndSend(statusChannel, id);
+                } catch (Exception ex) {
+                    log.warn("publish customer status change failed customerId={}", id, ex);
+                }
+            }
+        });
+        return mapper.findById(id);
+    }
 }
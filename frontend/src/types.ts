@@ -40,6 +40,7 @@ export interface PaymentBatchResult {
   rejected: number;
   failed: number;
   failedIds: string[];
+  failedIndexes: number[];
 }
 
 export interface CashPool {
@@ -4,9 +4,11 @@ import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = "com.bankcore")
 @EnableRabbit
+@EnableScheduling
 @MapperScan("com.bankcore.payment.repository")
 public class PaymentServiceApplication {
     public static void main(String[] args) {
@@ -1,8 +1,10 @@
 package com.bankcore.payment.api;
 
 import com.bankcore.common.dto.PaymentBatchResult;
+import com.bankcore.common.dto.PaymentBulkRequest;
 import com.bankcore.common.dto.PaymentRequest;
 import com.bankcore.payment.model.PaymentInstruction;
+import com.bankcore.payment.service.PaymentBulkService;
 import com.bankcore.payment.service.PaymentService;
 import javax.validation.Valid;
 import org.springframework.http.ResponseEntity;
@@ -18,12 +20,14 @@ import java.util.List;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final PaymentBulkService bulkService;
 
     /**
      * 构造注入支付服务。
      */
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, PaymentBulkService bulkService) {
         this.paymentService = paymentService;
+        this.bulkService = bulkService;
     }
 
     /**
@@ -34,6 +38,14 @@ public class PaymentController {
         return ResponseEntity.ok(paymentService.submit(request));
     }
 
+    /**
+     * 批量提交支付（如代发工资文件），逐笔返回受理统计。
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<PaymentBatchResult> bulk(@Valid @RequestBody PaymentBulkRequest request) {
+        return ResponseEntity.ok(bulkService.submit(request));
+    }
+
     /**
      * 手动触发单条指令的异步处理。
      */
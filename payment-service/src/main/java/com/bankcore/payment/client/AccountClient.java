@@ -1,9 +1,11 @@
 package com.bankcore.payment.client;
 
 import com.bankcore.common.dto.AccountDTO;
+import java.util.List;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 @Component
 public class AccountClient {
@@ -17,38 +19,58 @@ public class AccountClient {
     }
 
     public AccountDTO getAccount(String accountId) {
+        return getAccountAsync(accountId).block();
+    }
+
+    public AccountDTO freeze(String accountId, java.math.BigDecimal amount, String requestId) {
+        return freezeAsync(accountId, amount, requestId).block();
+    }
+
+    public AccountDTO unfreeze(String accountId, java.math.BigDecimal amount, String requestId) {
+        return unfreezeAsync(accountId, amount, requestId).block();
+    }
+
+    public AccountDTO settle(String accountId, java.math.BigDecimal amount, String requestId) {
+        return settleAsync(accountId, amount, requestId).block();
+    }
+
+    public Mono<AccountDTO> getAccountAsync(String accountId) {
         String url = accountServiceBaseUrl + "/accounts/" + accountId;
         return webClient.get()
                 .uri(url)
                 .retrieve()
-                .bodyToMono(AccountDTO.class)
-                .block();
+                .bodyToMono(AccountDTO.class);
     }
 
-    public AccountDTO freeze(String accountId, java.math.BigDecimal amount, String requestId) {
-        String url = accountServiceBaseUrl + "/accounts/" + accountId + "/freeze?amount=" + amount + "&requestId=" + requestId;
+    /**
+     * 批量查询账户，不存在的账户不出现在结果中。
+     */
+    public Mono<List<AccountDTO>> getAccountsAsync(List<String> accountIds) {
         return webClient.post()
-                .uri(url)
+                .uri(accountServiceBaseUrl + "/accounts/lookup")
+                .bodyValue(accountIds)
                 .retrieve()
-                .bodyToMono(AccountDTO.class)
-                .block();
+                .bodyToFlux(AccountDTO.class)
+                .collectList();
     }
 
-    public AccountDTO unfreeze(String accountId, java.math.BigDecimal amount, String requestId) {
-        String url = accountServiceBaseUrl + "/accounts/" + accountId + "/unfreeze?amount=" + amount + "&requestId=" + requestId;
-        return webClient.post()
-                .uri(url)
-                .retrieve()
-                .bodyToMono(AccountDTO.class)
-                .block();
+    public Mono<AccountDTO> freezeAsync(String accountId, java.math.BigDecimal amount, String requestId) {
+        return post("/freeze", accountId, amount, requestId);
     }
 
-    public AccountDTO settle(String accountId, java.math.BigDecimal amount, String requestId) {
-        String url = accountServiceBaseUrl + "/accounts/" + accountId + "/settle?amount=" + amount + "&requestId=" + requestId;
+    public Mono<AccountDTO> unfreezeAsync(String accountId, java.math.BigDecimal amount, String requestId) {
+        return post("/unfreeze", accountId, amount, requestId);
+    }
+
+    public Mono<AccountDTO> settleAsync(String accountId, java.math.BigDecimal amount, String requestId) {
+        return post("/settle", accountId, amount, requestId);
+    }
+
+    private Mono<AccountDTO> post(String operation, String accountId, java.math.BigDecimal amount, String requestId) {
+        String url = accountServiceBaseUrl + "/accounts/" + accountId + operation + "?amount=" + amount + "&requestId=" + requestId;
         return webClient.post()
                 .uri(url)
                 .retrieve()
-                .bodyToMono(AccountDTO.class)
-                .block();
+                .bodyToMono(AccountDTO.class);
     }
 }
@@ -1,8 +1,10 @@
 package com.bankcore.payment.client;
 
+import java.util.List;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 @Component
 public class CustomerClient {
@@ -16,12 +18,27 @@ public class CustomerClient {
     }
 
     public CustomerProfile getCustomer(String customerId) {
+        return getCustomerAsync(customerId).block();
+    }
+
+    public Mono<CustomerProfile> getCustomerAsync(String customerId) {
         String url = customerServiceBaseUrl + "/customers/" + customerId;
         return webClient.get()
                 .uri(url)
                 .retrieve()
-                .bodyToMono(CustomerProfile.class)
-                .block();
+                .bodyToMono(CustomerProfile.class);
+    }
+
+    /**
+     * 批量查询客户资料，不存在的客户不出现在结果中。
+     */
+    public Mono<List<CustomerProfile>> getCustomersAsync(List<String> customerIds) {
+        return webClient.post()
+                .uri(customerServiceBaseUrl + "/customers/lookup")
+                .bodyValue(customerIds)
+                .retrieve()
+                .bodyToFlux(CustomerProfile.class)
+                .collectList();
     }
 
     public static class CustomerProfile {
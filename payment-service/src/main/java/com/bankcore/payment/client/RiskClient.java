@@ -3,8 +3,11 @@ package com.bankcore.payment.client;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
 
 @Component
 public class RiskClient {
@@ -18,13 +21,29 @@ public class RiskClient {
     }
 
     public RiskDecisionResponse evaluate(BigDecimal amount, String customerId, String channel, String payerAccount, String requestId) {
+        return evaluateAsync(amount, customerId, channel, payerAccount, requestId).block();
+    }
+
+    public Mono<RiskDecisionResponse> evaluateAsync(BigDecimal amount, String customerId, String channel, String payerAccount,
+                                                    String requestId) {
         RiskRequest payload = new RiskRequest(amount, customerId, channel, payerAccount, requestId);
         return webClient.post()
                 .uri(riskServiceBaseUrl + "/risk/evaluate")
                 .bodyValue(payload)
                 .retrieve()
-                .bodyToMono(RiskDecisionResponse.class)
-                .block();
+                .bodyToMono(RiskDecisionResponse.class);
+    }
+
+    /**
+     * 批量评估，结果按请求顺序返回。
+     */
+    public Mono<List<RiskDecisionResponse>> evaluateBatchAsync(List<RiskRequest> requests) {
+        return webClient.post()
+                .uri(riskServiceBaseUrl + "/risk/evaluate:batch")
+                .bodyValue(Collections.singletonMap("requests", requests))
+                .retrieve()
+                .bodyToFlux(RiskDecisionResponse.class)
+                .collectList();
     }
 
     public static class RiskRequest {
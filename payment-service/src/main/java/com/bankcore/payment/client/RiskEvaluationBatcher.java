@@ -0,0 +1,150 @@
+package com.bankcore.payment.client;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * 风控评估合批：流水线并发发起的单笔评估先进入队列，攒满 batch-size 或等待 batch-window-ms 后
+ * 以一次 /risk/evaluate:batch 调用发出，结果按顺序回填各自的 Mono；响应缺少某笔的决策时该笔以异常结束，不会当作无决策放行。
+ * 调用方取消时尚未发出的评估直接出队；批量调用超过 batch-timeout-ms 未返回时整批以 TimeoutException 结束，由调用方按瞬时故障重试。
+ * 关闭合批时退化为逐笔调用。
+ */
+@Component
+public class RiskEvaluationBatcher {
+    private final RiskClient riskClient;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long windowMillis;
+    private final Duration batchTimeout;
+    private final Queue<PendingEvaluation> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService timer;
+
+    public RiskEvaluationBatcher(RiskClient riskClient,
+                                 @Value("${payment.risk.batch-enabled:true}") boolean enabled,
+                                 @Value("${payment.risk.batch-size:64}") int batchSize,
+                                 @Value("${payment.risk.batch-window-ms:5}") long windowMillis,
+                                 @Value("${payment.risk.batch-timeout-ms:3000}") long batchTimeoutMillis) {
+        this.riskClient = riskClient;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.windowMillis = Math.max(1L, windowMillis);
+        this.batchTimeout = Duration.ofMillis(Math.max(1L, batchTimeoutMillis));
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "risk-evaluation-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Mono<RiskClient.RiskDecisionResponse> evaluate(BigDecimal amount, String customerId, String channel,
+                                                          String payerAccount, String requestId) {
+        if (!enabled) {
+            return riskClient.evaluateAsync(amount, customerId, channel, payerAccount, requestId);
+        }
+        RiskClient.RiskRequest request = new RiskClient.RiskRequest(amount, customerId, channel, payerAccount, requestId);
+        return Mono.create(sink -> {
+            PendingEvaluation evaluation = new PendingEvaluation(request, sink);
+            pending.add(evaluation);
+            sink.onCancel(() -> {
+                if (pending.remove(evaluation)) {
+                    pendingCount.decrementAndGet();
+                }
+            });
+            if (pendingCount.incrementAndGet() >= batchSize) {
+                flush();
+            } else {
+                scheduleFlush();
+            }
+        });
+    }
+
+    /**
+     * 单次批量评估的最大笔数（关闭合批时为 1）；调用方的并发许可不少于该值时批次才能攒满，不必每批都等满窗口。
+     */
+    public int getBatchSize() {
+        return enabled ? batchSize : 1;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdown();
+        flush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            timer.schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            }, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 按 batch-size 切批发出队列中的全部评估；不足一批的尾部在下一个窗口发出。
+     */
+    private void flush() {
+        while (true) {
+            List<PendingEvaluation> batch = new ArrayList<>(batchSize);
+            PendingEvaluation next;
+            while (batch.size() < batchSize && (next = pending.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            int remaining = pendingCount.addAndGet(-batch.size());
+            send(batch);
+            if (remaining < batchSize) {
+                if (remaining > 0) {
+                    scheduleFlush();
+                }
+                return;
+            }
+        }
+    }
+
+    private void send(List<PendingEvaluation> batch) {
+        List<RiskClient.RiskRequest> requests = new ArrayList<>(batch.size());
+        for (PendingEvaluation evaluation : batch) {
+            requests.add(evaluation.request);
+        }
+        riskClient.evaluateBatchAsync(requests).timeout(batchTimeout).subscribe(responses -> {
+            for (int i = 0; i < batch.size(); i++) {
+                RiskClient.RiskDecisionResponse response = i < responses.size() ? responses.get(i) : null;
+                if (response == null) {
+                    batch.get(i).sink.error(new IllegalStateException("Risk batch returned " + responses.size()
+                            + " decisions for " + batch.size() + " requests"));
+                } else {
+                    batch.get(i).sink.success(response);
+                }
+            }
+        }, ex -> batch.forEach(evaluation -> evaluation.sink.error(ex)));
+    }
+
+    private static final class PendingEvaluation {
+        private final RiskClient.RiskRequest request;
+        private final MonoSink<RiskClient.RiskDecisionResponse> sink;
+
+        private PendingEvaluation(RiskClient.RiskRequest request, MonoSink<RiskClient.RiskDecisionResponse> sink) {
+            this.request = request;
+            this.sink = sink;
+        }
+    }
+}
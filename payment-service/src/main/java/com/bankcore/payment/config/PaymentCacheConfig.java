@@ -0,0 +1,29 @@
+package com.bankcore.payment.config;
+
+import com.bankcore.payment.service.CustomerProfileCache;
+import java.nio.charset.StandardCharsets;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 订阅客户状态变更频道，失效本节点的客户资料缓存。
+ */
+@Configuration
+public class PaymentCacheConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "payment.customer-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer customerCacheListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                        CustomerProfileCache profileCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) ->
+                        profileCache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(profileCache.channel()));
+        return container;
+    }
+}
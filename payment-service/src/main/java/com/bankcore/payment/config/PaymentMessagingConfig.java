@@ -1,31 +1,67 @@
 package com.bankcore.payment.config;
 
-import org.springframework.amqp.core.Binding;
+import com.bankcore.payment.model.PaymentLane;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.BindingBuilder;
-import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.CustomExchange;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
 public class PaymentMessagingConfig {
 
+    /**
+     * 一致性哈希交换机（rabbitmq_consistent_hash_exchange 插件），按路由键即付款账户的哈希分配到分区队列。
+     */
     @Bean
-    public DirectExchange paymentExchange(@Value("${payment.messaging.exchange:payment.events.exchange}") String exchange) {
-        return new DirectExchange(exchange);
+    public CustomExchange paymentExchange(@Value("${payment.messaging.exchange:payment.events.hash}") String exchange) {
+        return new CustomExchange(exchange, "x-consistent-hash", true, false);
     }
 
+    /**
+     * 分区队列名：{queue}.0 ... {queue}.{N-1}，监听端按该 bean 订阅。
+     */
     @Bean
-    public Queue paymentQueue(@Value("${payment.messaging.queue:payment.events.queue}") String queue,
-                              @Value("${payment.messaging.dlq:payment.events.dlq}") String dlq) {
-        Map<String, Object> args = new HashMap<String, Object>();
-        args.put("x-dead-letter-exchange", "");
-        args.put("x-dead-letter-routing-key", dlq);
-        return new Queue(queue, true, false, false, args);
+    public String[] paymentPartitionQueues(@Value("${payment.messaging.queue:payment.events.queue}") String queue,
+                                           @Value("${payment.messaging.partitions:8}") int partitions) {
+        String[] names = new String[Math.max(1, partitions)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = queue + "." + i;
+        }
+        return names;
+    }
+
+    /**
+     * 每个分区队列开启单活消费者，多实例部署时同一分区同时只有一个消费者，保证同一账户的事件按序处理；
+     * 分区队列同时是优先级队列，按消息优先级（即调度通道）出队。
+     */
+    @Bean
+    public Declarables paymentPartitions(CustomExchange paymentExchange, String[] paymentPartitionQueues,
+                                         @Value("${payment.messaging.dlq:payment.events.dlq}") String dlq) {
+        List<Declarable> declarables = new ArrayList<Declarable>();
+        for (String name : paymentPartitionQueues) {
+            Map<String, Object> args = new HashMap<String, Object>();
+            args.put("x-dead-letter-exchange", "");
+            args.put("x-dead-letter-routing-key", dlq);
+            args.put("x-single-active-consumer", true);
+            args.put("x-max-priority", PaymentLane.MAX_MESSAGE_PRIORITY);
+            Queue queue = new Queue(name, true, false, false, args);
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(paymentExchange).with("1").noargs());
+        }
+        return new Declarables(declarables);
     }
 
     @Bean
@@ -33,9 +69,21 @@ public class PaymentMessagingConfig {
         return new Queue(dlq, true);
     }
 
+    /**
+     * 支付事件监听容器：手动确认，prefetch 即单个消费者允许的在途消息数。
+     */
     @Bean
-    public Binding paymentBinding(Queue paymentQueue, DirectExchange paymentExchange,
-                                  @Value("${payment.messaging.routingKey:payment.events}") String routingKey) {
-        return BindingBuilder.bind(paymentQueue).to(paymentExchange).with(routingKey);
+    public SimpleRabbitListenerContainerFactory paymentListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${payment.pipeline.max-in-flight:256}") int maxInFlight,
+            @Value("${payment.pipeline.consumers:1}") int consumers) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(maxInFlight);
+        factory.setConcurrentConsumers(consumers);
+        factory.setMaxConcurrentConsumers(consumers);
+        return factory;
     }
 }
@@ -0,0 +1,41 @@
+package com.bankcore.payment.model;
+
+/**
+ * 支付调度通道，按声明顺序由高到低：outbox 中继按该顺序取待投递事件，MQ 消息优先级与本地流水线许可也按通道分配。
+ * 库中以序号存储，调整顺序需同步迁移 payment_outbox.lane。
+ */
+public enum PaymentLane {
+    /** 加急：优先级 1~2，如资金调拨、头寸划转 */
+    URGENT(2),
+    /** 普通单笔支付 */
+    NORMAL(1),
+    /** 批次内的支付，如代发工资 */
+    BULK(0);
+
+    /** 最高通道对应的消息优先级，即队列的 x-max-priority */
+    public static final int MAX_MESSAGE_PRIORITY = 2;
+
+    private final int messagePriority;
+
+    PaymentLane(int messagePriority) {
+        this.messagePriority = messagePriority;
+    }
+
+    public int getMessagePriority() {
+        return messagePriority;
+    }
+
+    /**
+     * 优先级数值越小越紧急：小于 3 走加急通道；其余带批次号的走批量通道。
+     */
+    public static PaymentLane of(Integer priority, String batchId) {
+        if (priority != null && priority < 3) {
+            return URGENT;
+        }
+        return batchId == null ? NORMAL : BULK;
+    }
+
+    public static PaymentLane of(PaymentInstruction instruction) {
+        return of(instruction.getPriority(), instruction.getBatchId());
+    }
+}
@@ -0,0 +1,87 @@
+package com.bankcore.payment.model;
+
+import java.time.LocalDateTime;
+
+public class PaymentOutboxEvent {
+    /** 自增主键，即投递顺序 */
+    private Long id;
+    /** 请求ID */
+    private String requestId;
+    /** 支付指令ID */
+    private String instructionId;
+    /** 付款账户，作为分区路由键 */
+    private String payerAccount;
+    /** 调度通道，中继按通道顺序取待投递事件 */
+    private PaymentLane lane;
+    /** 写入时间 */
+    private LocalDateTime createdAt;
+    /** broker 确认时间，为空表示待投递 */
+    private LocalDateTime publishedAt;
+
+    public PaymentOutboxEvent() {
+    }
+
+    public PaymentOutboxEvent(String requestId, String instructionId, String payerAccount, PaymentLane lane) {
+        this.requestId = requestId;
+        this.instructionId = instructionId;
+        this.payerAccount = payerAccount;
+        this.lane = lane == null ? PaymentLane.NORMAL : lane;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public String getInstructionId() {
+        return instructionId;
+    }
+
+    public void setInstructionId(String instructionId) {
+        this.instructionId = instructionId;
+    }
+
+    public String getPayerAccount() {
+        return payerAccount;
+    }
+
+    public void setPayerAccount(String payerAccount) {
+        this.payerAccount = payerAccount;
+    }
+
+    public PaymentLane getLane() {
+        return lane;
+    }
+
+    public void setLane(PaymentLane lane) {
+        this.lane = lane;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getPublishedAt() {
+        return publishedAt;
+    }
+
+    public void setPublishedAt(LocalDateTime publishedAt) {
+        this.publishedAt = publishedAt;
+    }
+}
@@ -28,4 +28,17 @@ public interface PaymentMapper {
                              @Param("riskScore") java.math.BigDecimal riskScore,
                              @Param("expectedStatus") String expectedStatus,
                              @Param("status") String status);
+
+    void insertBatch(@Param("instructions") List<PaymentInstruction> instructions);
+
+    List<String> findExistingIds(@Param("instructionIds") List<String> instructionIds);
+
+    int compareAndUpdateWithRequest(@Param("instructionId") String instructionId,
+                                    @Param("expectedStatus") String expectedStatus,
+                                    @Param("status") String status,
+                                    @Param("riskScore") java.math.BigDecimal riskScore,
+                                    @Param("requestId") String requestId,
+                                    @Param("expectedRequestStatus") String expectedRequestStatus,
+                                    @Param("requestStatus") String requestStatus,
+                                    @Param("message") String message);
 }
@@ -0,0 +1,26 @@
+package com.bankcore.payment.repository;
+
+import com.bankcore.payment.model.PaymentLane;
+import com.bankcore.payment.model.PaymentOutboxEvent;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+@Mapper
+public interface PaymentOutboxMapper {
+
+    void insert(PaymentOutboxEvent event);
+
+    void insertBatch(@Param("events") List<PaymentOutboxEvent> events);
+
+    List<PaymentOutboxEvent> lockPending(@Param("lane") PaymentLane lane, @Param("afterId") long afterId,
+                                         @Param("limit") int limit);
+
+    List<PaymentOutboxEvent> findEarlierPending(@Param("payerAccount") String payerAccount, @Param("beforeId") long beforeId,
+                                                @Param("limit") int limit);
+
+    int markPublished(@Param("ids") List<Long> ids);
+
+    int deletePublishedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
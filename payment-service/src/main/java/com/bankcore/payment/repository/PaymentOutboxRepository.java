@@ -0,0 +1,50 @@
+package com.bankcore.payment.repository;
+
+import com.bankcore.payment.model.PaymentLane;
+import com.bankcore.payment.model.PaymentOutboxEvent;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class PaymentOutboxRepository {
+    private final PaymentOutboxMapper mapper;
+
+    public PaymentOutboxRepository(PaymentOutboxMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public void save(PaymentOutboxEvent event) {
+        mapper.insert(event);
+    }
+
+    public void saveAll(List<PaymentOutboxEvent> events) {
+        if (!events.isEmpty()) {
+            mapper.insertBatch(events);
+        }
+    }
+
+    /**
+     * 按写入顺序锁定某一通道中 id 大于 afterId 的一批待投递事件，已被其他实例锁定的行直接跳过，需在事务内调用。
+     */
+    public List<PaymentOutboxEvent> lockPending(PaymentLane lane, long afterId, int limit) {
+        return mapper.lockPending(lane, afterId, limit);
+    }
+
+    /**
+     * 同一付款账户中 outbox 顺序早于 beforeId、指令仍未开始处理的事件，按 outbox 顺序返回。
+     */
+    public List<PaymentOutboxEvent> findEarlierPending(String payerAccount, long beforeId, int limit) {
+        return mapper.findEarlierPending(payerAccount, beforeId, limit);
+    }
+
+    public void markPublished(List<Long> ids) {
+        if (!ids.isEmpty()) {
+            mapper.markPublished(ids);
+        }
+    }
+
+    public int deletePublishedBefore(LocalDateTime before, int limit) {
+        return mapper.deletePublishedBefore(before, limit);
+    }
+}
@@ -2,10 +2,13 @@ package com.bankcore.payment.repository;
 
 import com.bankcore.payment.model.PaymentInstruction;
 import com.bankcore.common.dto.PaymentStatus;
+import com.bankcore.payment.model.PaymentRequestStatus;
 import org.springframework.stereotype.Repository;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public class PaymentRepository {
@@ -19,6 +22,19 @@ public class PaymentRepository {
         mapper.insert(instruction);
     }
 
+    public void saveAll(List<PaymentInstruction> instructions) {
+        if (!instructions.isEmpty()) {
+            mapper.insertBatch(instructions);
+        }
+    }
+
+    /**
+     * 返回给定指令号中已存在的部分，一次 IN 查询。
+     */
+    public Set<String> findExistingIds(List<String> instructionIds) {
+        return instructionIds.isEmpty() ? new HashSet<>() : new HashSet<>(mapper.findExistingIds(instructionIds));
+    }
+
     public Optional<PaymentInstruction> findById(String instructionId) {
         return Optional.ofNullable(mapper.findById(instructionId));
     }
@@ -43,4 +59,15 @@ public class PaymentRepository {
                                         PaymentStatus expectedStatus, PaymentStatus status) {
         return mapper.compareAndUpdateRisk(instructionId, riskScore, expectedStatus.name(), status.name()) > 0;
     }
+
+    /**
+     * 单条多表 UPDATE 同时推进指令与请求状态，两者都与期望状态一致时才生效。
+     */
+    public boolean compareAndUpdateWithRequest(String instructionId, PaymentStatus expectedStatus, PaymentStatus status,
+                                               java.math.BigDecimal riskScore, String requestId,
+                                               PaymentRequestStatus expectedRequestStatus, PaymentRequestStatus requestStatus,
+                                               String message) {
+        return mapper.compareAndUpdateWithRequest(instructionId, expectedStatus.name(), status.name(), riskScore, requestId,
+                expectedRequestStatus.name(), requestStatus.name(), message) > 0;
+    }
 }
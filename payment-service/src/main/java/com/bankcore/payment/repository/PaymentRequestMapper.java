@@ -4,11 +4,17 @@ import com.bankcore.payment.model.PaymentRequestRecord;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 @Mapper
 public interface PaymentRequestMapper {
 
     void insert(PaymentRequestRecord record);
 
+    void insertBatch(@Param("records") List<PaymentRequestRecord> records);
+
+    List<String> findExistingIds(@Param("requestIds") List<String> requestIds);
+
     PaymentRequestRecord findByRequestId(@Param("requestId") String requestId);
 
     void updateStatus(@Param("requestId") String requestId,
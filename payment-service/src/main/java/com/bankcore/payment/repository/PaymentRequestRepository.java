@@ -1,9 +1,14 @@
 package com.bankcore.payment.repository;
 
+import com.bankcore.payment.model.PaymentInstruction;
 import com.bankcore.payment.model.PaymentRequestRecord;
 import com.bankcore.payment.model.PaymentRequestStatus;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -31,6 +36,32 @@ public class PaymentRequestRepository {
         return mapper.compareAndUpdateStatus(requestId, expected.name(), status.name(), paymentInstructionId, message) > 0;
     }
 
+    /**
+     * 为一批指令以多行 INSERT 创建 PENDING 请求记录。
+     */
+    public void createPendingAll(List<PaymentInstruction> instructions) {
+        if (instructions.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<PaymentRequestRecord> records = new ArrayList<>(instructions.size());
+        for (PaymentInstruction instruction : instructions) {
+            PaymentRequestRecord record = new PaymentRequestRecord(instruction.getRequestId(), instruction.getInstructionId(),
+                    PaymentRequestStatus.PENDING);
+            record.setCreatedAt(now);
+            record.setUpdatedAt(now);
+            records.add(record);
+        }
+        mapper.insertBatch(records);
+    }
+
+    /**
+     * 返回给定请求ID中已受理过的部分，一次 IN 查询。
+     */
+    public Set<String> findExistingIds(List<String> requestIds) {
+        return requestIds.isEmpty() ? new HashSet<>() : new HashSet<>(mapper.findExistingIds(requestIds));
+    }
+
     public PaymentRequestRecord createPending(String requestId, String paymentInstructionId) {
         PaymentRequestRecord record = new PaymentRequestRecord(requestId, paymentInstructionId, PaymentRequestStatus.PENDING);
         record.setCreatedAt(LocalDateTime.now());
@@ -0,0 +1,130 @@
+package com.bankcore.payment.service;
+
+import com.bankcore.payment.client.CustomerClient;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * 客户资料近端缓存：基于 Caffeine 按容量与短 TTL 淘汰，读写均无全局锁，命中时提交支付无需再调用客户服务。
+ * 客户状态变更由客户服务经 Redis pub/sub 广播，收到后立即失效对应条目；
+ * 加载前记录分段代次，加载期间发生过失效则不回填，避免旧状态覆盖失效结果。
+ */
+@Component
+public class CustomerProfileCache {
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final boolean enabled;
+    private final String channel;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final Cache<String, CustomerClient.CustomerProfile> entries;
+
+    public CustomerProfileCache(@Value("${payment.customer-cache.enabled:true}") boolean enabled,
+                                @Value("${payment.customer-cache.max-size:10000}") int maxSize,
+                                @Value("${payment.customer-cache.ttl-ms:10000}") long ttlMillis,
+                                @Value("${payment.customer-cache.channel:customer:status:changed}") String channel) {
+        this.enabled = enabled;
+        this.channel = channel;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build();
+    }
+
+    /**
+     * 读取客户资料，命中时直接返回，未命中或过期时订阅 loader 并在无并发失效的情况下回填。
+     */
+    public Mono<CustomerClient.CustomerProfile> get(String customerId,
+                                                    Function<String, Mono<CustomerClient.CustomerProfile>> loader) {
+        if (!enabled || customerId == null) {
+            return loader.apply(customerId);
+        }
+        CustomerClient.CustomerProfile cached = entries.getIfPresent(customerId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.defer(() -> {
+            int stripe = stripe(customerId);
+            long generation = generations.get(stripe);
+            return loader.apply(customerId).doOnNext(profile -> fill(customerId, profile, stripe, generation));
+        });
+    }
+
+    /**
+     * 批量读取客户资料：先取本地命中，只把未命中的客户ID交给 loader 一次加载，回填规则同单条读取。
+     */
+    public Mono<Map<String, CustomerClient.CustomerProfile>> getAll(Collection<String> customerIds,
+            Function<List<String>, Mono<List<CustomerClient.CustomerProfile>>> loader) {
+        Map<String, CustomerClient.CustomerProfile> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String customerId : customerIds) {
+            CustomerClient.CustomerProfile cached = enabled ? entries.getIfPresent(customerId) : null;
+            if (cached != null) {
+                found.put(customerId, cached);
+            } else {
+                missing.add(customerId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return Mono.just(found);
+        }
+        long[] loadGenerations = new long[missing.size()];
+        for (int i = 0; i < missing.size(); i++) {
+            loadGenerations[i] = generations.get(stripe(missing.get(i)));
+        }
+        return loader.apply(missing).map(profiles -> {
+            Map<String, CustomerClient.CustomerProfile> loaded = new HashMap<>();
+            for (CustomerClient.CustomerProfile profile : profiles) {
+                loaded.put(profile.getCustomerId(), profile);
+            }
+            if (enabled) {
+                for (int i = 0; i < missing.size(); i++) {
+                    CustomerClient.CustomerProfile profile = loaded.get(missing.get(i));
+                    if (profile != null) {
+                        fill(missing.get(i), profile, stripe(missing.get(i)), loadGenerations[i]);
+                    }
+                }
+            }
+            found.putAll(loaded);
+            return found;
+        });
+    }
+
+    /**
+     * 客户状态变更时失效本地条目。
+     */
+    public void invalidate(String customerId) {
+        generations.incrementAndGet(stripe(customerId));
+        entries.invalidate(customerId);
+    }
+
+    public String channel() {
+        return channel;
+    }
+
+    /**
+     * 加载期间分段代次未变才回填；写入后再次校验，与写入并发的失效不会被覆盖。
+     */
+    private void fill(String customerId, CustomerClient.CustomerProfile profile, int stripe, long generation) {
+        if (generations.get(stripe) == generation) {
+            entries.put(customerId, profile);
+            if (generations.get(stripe) != generation) {
+                entries.asMap().remove(customerId, profile);
+            }
+        }
+    }
+
+    private int stripe(String customerId) {
+        return Math.floorMod(customerId.hashCode(), GENERATION_STRIPES);
+    }
+}
@@ -0,0 +1,284 @@
+package com.bankcore.payment.service;
+
+import com.bankcore.common.dto.AccountDTO;
+import com.bankcore.common.dto.PaymentBatchResult;
+import com.bankcore.common.dto.PaymentBulkRequest;
+import com.bankcore.common.dto.PaymentRequest;
+import com.bankcore.common.dto.PaymentStatus;
+import com.bankcore.common.error.BusinessException;
+import com.bankcore.common.error.ErrorCode;
+import com.bankcore.payment.client.AccountClient;
+import com.bankcore.payment.client.CustomerClient;
+import com.bankcore.payment.model.PaymentInstruction;
+import com.bankcore.payment.model.PaymentLane;
+import com.bankcore.payment.model.PaymentOutboxEvent;
+import com.bankcore.payment.repository.PaymentOutboxRepository;
+import com.bankcore.payment.repository.PaymentRepository;
+import com.bankcore.payment.repository.PaymentRequestRepository;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 批量支付受理：代发工资等批量文件一次提交，逐笔校验后整批处理——请求去重与指令去重各一次 IN 查询，
+ * 付款账户与客户资料按批次调用远程接口，指令、请求记录与 outbox 事件按块以多行 INSERT 写入，
+ * 事件随后由 outbox 中继成批投递。单笔校验失败只拒绝该笔，单块写入失败只影响该块；
+ * 块内因并发提交撞上唯一键时改为逐笔写入，只拒绝冲突的条目。
+ */
+@Service
+public class PaymentBulkService {
+    private static final Logger log = LoggerFactory.getLogger(PaymentBulkService.class);
+    private static final int IN_CLAUSE_LIMIT = 1000;
+    private static final int LOOKUP_CONCURRENCY = 4;
+
+    private final PaymentRepository repository;
+    private final PaymentRequestRepository requestRepository;
+    private final PaymentOutboxRepository outboxRepository;
+    private final AccountClient accountClient;
+    private final CustomerClient customerClient;
+    private final CustomerProfileCache customerCache;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxSize;
+    private final int chunkSize;
+
+    public PaymentBulkService(PaymentRepository repository,
+                              PaymentRequestRepository requestRepository,
+                              PaymentOutboxRepository outboxRepository,
+                              AccountClient accountClient,
+                              CustomerClient customerClient,
+                              CustomerProfileCache customerCache,
+                              Validator validator,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${payment.bulk.max-size:50000}") int maxSize,
+                              @Value("${payment.bulk.chunk-size:1000}") int chunkSize) {
+        this.repository = repository;
+        this.requestRepository = requestRepository;
+        this.outboxRepository = outboxRepository;
+        this.accountClient = accountClient;
+        this.customerClient = customerClient;
+        this.customerCache = customerCache;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxSize = maxSize;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * 受理一个批次：已受理过的请求ID按幂等计为成功；空条目、非法条目、批内重复、账户或客户不存在、客户被冻结、
+     * 写入时与并发提交的请求ID或指令号冲突计为拒绝；
+     * 写库失败的条目计为失败。failedIndexes 按下标返回所有未成功条目；failedIds 只返回未成功的请求ID，
+     * 批内重复条目与同批已成功的条目共用请求ID，不会出现在其中。
+     */
+    public PaymentBatchResult submit(PaymentBulkRequest bulk) {
+        List<PaymentRequest> requests = bulk == null || bulk.getPayments() == null
+                ? Collections.<PaymentRequest>emptyList()
+                : bulk.getPayments();
+        if (requests.isEmpty()) {
+            return new PaymentBatchResult(0, 0, 0, 0, Collections.emptyList());
+        }
+        if (requests.size() > maxSize) {
+            throw new BusinessException(ErrorCode.INVALID_REQUEST, "Bulk exceeds " + maxSize + " payments");
+        }
+        String batchId = bulk.getBatchId();
+        List<Integer> invalidIndexes = new ArrayList<>();
+        Map<String, Integer> positions = new HashMap<>();
+        List<PaymentRequest> candidates = validate(requests, invalidIndexes, positions);
+        int total = requests.size();
+        List<String> rejectedIds = new ArrayList<>();
+
+        Set<String> accepted = new HashSet<>();
+        for (List<String> chunk : partition(ids(candidates, PaymentRequest::getRequestId), IN_CLAUSE_LIMIT)) {
+            accepted.addAll(requestRepository.findExistingIds(chunk));
+        }
+        Set<String> takenInstructions = new HashSet<>();
+        for (List<String> chunk : partition(ids(candidates, PaymentRequest::getInstructionId), IN_CLAUSE_LIMIT)) {
+            takenInstructions.addAll(repository.findExistingIds(chunk));
+        }
+        List<PaymentRequest> fresh = new ArrayList<>(candidates.size());
+        for (PaymentRequest request : candidates) {
+            if (accepted.contains(request.getRequestId())) {
+                continue;
+            }
+            if (takenInstructions.contains(request.getInstructionId())) {
+                rejectedIds.add(request.getRequestId());
+                continue;
+            }
+            fresh.add(request);
+        }
+
+        List<PaymentInstruction> instructions = buildInstructions(batchId, fresh, rejectedIds);
+        List<String> failedIds = new ArrayList<>();
+        List<String> conflictIds = new ArrayList<>();
+        for (List<PaymentInstruction> chunk : partition(instructions, chunkSize)) {
+            try {
+                persist(chunk);
+            } catch (DuplicateKeyException ex) {
+                log.info("bulk batch {} chunk of {} payments hit a concurrent duplicate, persisting row by row", batchId,
+                        chunk.size());
+                persistEach(batchId, chunk, conflictIds, failedIds);
+            } catch (DataAccessException ex) {
+                log.warn("bulk batch {} failed to persist chunk of {} payments", batchId, chunk.size(), ex);
+                chunk.forEach(p -> failedIds.add(p.getRequestId()));
+            }
+        }
+        rejectedIds.addAll(conflictIds);
+        int succeeded = accepted.size() + instructions.size() - conflictIds.size() - failedIds.size();
+        int rejected = invalidIndexes.size() + rejectedIds.size();
+        log.info("bulk batch {} accepted {} of {} payments, rejected {}, failed {}", batchId, succeeded, total,
+                rejected, failedIds.size());
+        List<Integer> failedIndexes = new ArrayList<>(invalidIndexes);
+        rejectedIds.forEach(id -> failedIndexes.add(positions.get(id)));
+        failedIds.forEach(id -> failedIndexes.add(positions.get(id)));
+        Collections.sort(failedIndexes);
+        Set<String> succeededIds = new HashSet<>(accepted);
+        instructions.forEach(p -> succeededIds.add(p.getRequestId()));
+        succeededIds.removeAll(conflictIds);
+        succeededIds.removeAll(failedIds);
+        Set<String> unsuccessful = new LinkedHashSet<>();
+        for (Integer index : failedIndexes) {
+            PaymentRequest request = requests.get(index);
+            if (request != null && request.getRequestId() != null && !succeededIds.contains(request.getRequestId())) {
+                unsuccessful.add(request.getRequestId());
+            }
+        }
+        return new PaymentBatchResult(total, succeeded, rejected, failedIds.size(), new ArrayList<>(unsuccessful),
+                failedIndexes);
+    }
+
+    private void persist(List<PaymentInstruction> chunk) {
+        transactionTemplate.execute(status -> {
+            repository.saveAll(chunk);
+            requestRepository.createPendingAll(chunk);
+            outboxRepository.saveAll(chunk.stream()
+                    .map(p -> new PaymentOutboxEvent(p.getRequestId(), p.getInstructionId(), p.getPayerAccount(),
+                            PaymentLane.of(p)))
+                    .collect(Collectors.toList()));
+            return null;
+        });
+    }
+
+    /**
+     * 多行写入撞上唯一键后逐笔重写该块：冲突的条目计为拒绝，其余照常受理。
+     */
+    private void persistEach(String batchId, List<PaymentInstruction> chunk, List<String> conflictIds, List<String> failedIds) {
+        for (PaymentInstruction instruction : chunk) {
+            try {
+                persist(Collections.singletonList(instruction));
+            } catch (DuplicateKeyException ex) {
+                conflictIds.add(instruction.getRequestId());
+            } catch (DataAccessException ex) {
+                log.warn("bulk batch {} failed to persist payment {}", batchId, instruction.getRequestId(), ex);
+                failedIds.add(instruction.getRequestId());
+            }
+        }
+    }
+
+    /**
+     * 逐笔做 Bean Validation 并剔除批内重复的请求ID与指令号：空条目、非法条目与重复条目记下其下标，
+     * 通过校验的条目记下请求ID到下标的映射（通过校验的请求ID在批内唯一）。
+     */
+    private List<PaymentRequest> validate(List<PaymentRequest> requests, List<Integer> invalidIndexes,
+                                          Map<String, Integer> positions) {
+        Set<String> requestIds = new HashSet<>();
+        Set<String> instructionIds = new HashSet<>();
+        List<PaymentRequest> valid = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            PaymentRequest request = requests.get(i);
+            if (request == null
+                    || !validator.validate(request).isEmpty()
+                    || !requestIds.add(request.getRequestId())
+                    || !instructionIds.add(request.getInstructionId())) {
+                invalidIndexes.add(i);
+                continue;
+            }
+            positions.put(request.getRequestId(), i);
+            valid.add(request);
+        }
+        return valid;
+    }
+
+    /**
+     * 批量取付款账户与客户资料（客户资料优先命中近端缓存），组装待写入的指令。
+     */
+    private List<PaymentInstruction> buildInstructions(String batchId, List<PaymentRequest> requests, List<String> rejectedIds) {
+        if (requests.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, AccountDTO> accounts = lookup(ids(requests, PaymentRequest::getPayerAccount), accountClient::getAccountsAsync)
+                .map(list -> list.stream().collect(Collectors.toMap(AccountDTO::getAccountId, Function.identity(), (a, b) -> a)))
+                .block();
+        Set<String> customerIds = accounts.values().stream()
+                .map(AccountDTO::getCustomerId)
+                .filter(id -> id != null)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, CustomerClient.CustomerProfile> customers = customerIds.isEmpty()
+                ? new HashMap<>()
+                : customerCache.getAll(customerIds, missing -> lookup(missing, customerClient::getCustomersAsync)).block();
+        List<PaymentInstruction> instructions = new ArrayList<>(requests.size());
+        for (PaymentRequest request : requests) {
+            AccountDTO account = accounts.get(request.getPayerAccount());
+            CustomerClient.CustomerProfile customer = account == null ? null : customers.get(account.getCustomerId());
+            String customerStatus = customer == null || customer.getStatus() == null ? "NORMAL" : customer.getStatus();
+            if (customer == null || "BLOCKED".equalsIgnoreCase(customerStatus)) {
+                rejectedIds.add(request.getRequestId());
+                continue;
+            }
+            instructions.add(new PaymentInstruction(
+                    request.getRequestId(),
+                    request.getInstructionId(),
+                    request.getPayerAccount(),
+                    request.getPayeeAccount(),
+                    account.getCustomerId(),
+                    customerStatus,
+                    request.getCurrency(),
+                    request.getAmount(),
+                    request.getPurpose(),
+                    request.getChannel(),
+                    batchId == null ? request.getBatchId() : batchId,
+                    request.getPriority(),
+                    PaymentStatus.PENDING));
+        }
+        return instructions;
+    }
+
+    /**
+     * 按批量接口的上限分块并发调用，合并各块结果。
+     */
+    private <T> Mono<List<T>> lookup(List<String> ids, Function<List<String>, Mono<List<T>>> batchCall) {
+        return Flux.fromIterable(partition(ids, IN_CLAUSE_LIMIT))
+                .flatMap(batchCall, LOOKUP_CONCURRENCY)
+                .flatMapIterable(Function.identity())
+                .collectList();
+    }
+
+    private static List<String> ids(List<PaymentRequest> requests, Function<PaymentRequest, String> key) {
+        return requests.stream().map(key).distinct().collect(Collectors.toList());
+    }
+
+    private static <T> List<List<T>> partition(List<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += size) {
+            chunks.add(items.subList(from, Math.min(items.size(), from + size)));
+        }
+        return chunks;
+    }
+}
@@ -1,13 +1,25 @@
 package com.bankcore.payment.service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Component;
 
 /**
  * 支付幂等组件：利用 Redis 分布式锁与标记，保护请求提交与事件消费的唯一性。
+ * 事件的查重加锁与完成释放各由一段 Lua 脚本原子完成，每条事件只需两次往返；批量接口以管道合并多条事件的脚本调用。
  */
 @Component
 public class PaymentIdempotencyManager {
@@ -15,6 +27,16 @@ public class PaymentIdempotencyManager {
     private static final String REQUEST_LOCK_KEY = "payment:req:lock:";
     private static final String EVENT_PROCESSING_KEY = "payment:event:processing:";
     private static final String EVENT_DONE_KEY = "payment:event:done:";
+    private static final DefaultRedisScript<Long> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then return 2 end "
+                    + "if redis.call('set', KEYS[2], '1', 'NX', 'EX', ARGV[1]) then return 1 end "
+                    + "return 0",
+            Long.class);
+    private static final DefaultRedisScript<Long> COMPLETE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('set', KEYS[1], '1', 'EX', ARGV[1]) "
+                    + "redis.call('del', KEYS[2]) "
+                    + "return 1",
+            Long.class);
     private final StringRedisTemplate redisTemplate;
 
     /**
@@ -44,28 +66,45 @@ public class PaymentIdempotencyManager {
     }
 
     /**
-     * 判断消费是否已经完成，防止 MQ 重复投递导致二次扣款。
+     * 一次往返完成事件的查重与占用：已完成返回 PROCESSED，占用成功返回 ACQUIRED，被其他消费者占用返回 IN_PROGRESS。
+     * 脚本无返回值时抛出异常，由消费者按失败重试，而不是当作他人处理中而丢弃消息。
      */
-    public boolean isEventAlreadyProcessed(String instructionId) {
-        String key = EVENT_DONE_KEY + instructionId;
-        Boolean exists = redisTemplate.hasKey(key);
-        return exists != null && exists.booleanValue();
+    public EventClaim tryClaimEvent(String instructionId, long ttlSeconds) {
+        Long code = redisTemplate.execute(CLAIM_SCRIPT, eventKeys(instructionId), String.valueOf(ttlSeconds));
+        return EventClaim.of(code);
     }
 
     /**
-     * 尝试获取消费中的标记，同一笔指令只允许一个消费者处理。
+     * 预取多条消息的消费者一次管道批量认领，按传入顺序返回各指令的认领结果。
      */
-    public boolean tryAcquireEventProcessing(String instructionId, long ttlSeconds) {
-        Boolean locked = redisTemplate.opsForValue().setIfAbsent(EVENT_PROCESSING_KEY + instructionId, "1", ttlSeconds, TimeUnit.SECONDS);
-        return locked != null && locked.booleanValue();
+    public Map<String, EventClaim> tryClaimEvents(Collection<String> instructionIds, long ttlSeconds) {
+        Map<String, EventClaim> claims = new LinkedHashMap<>();
+        if (instructionIds == null || instructionIds.isEmpty()) {
+            return claims;
+        }
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(instructionIds));
+        List<Object> codes = evalPipelined(CLAIM_SCRIPT, ids, ttlSeconds);
+        for (int i = 0; i < ids.size(); i++) {
+            claims.put(ids.get(i), EventClaim.of(i < codes.size() ? (Long) codes.get(i) : null));
+        }
+        return claims;
     }
 
     /**
-     * 标记事件处理完成，设置过期时间用于幂等窗口。
+     * 一次往返写入完成标记并释放处理锁，完成标记的过期时间即幂等窗口。
      */
-    public void markEventCompleted(String instructionId, long ttlSeconds) {
-        redisTemplate.opsForValue().set(EVENT_DONE_KEY + instructionId, "1", ttlSeconds, TimeUnit.SECONDS);
-        redisTemplate.delete(EVENT_PROCESSING_KEY + instructionId);
+    public void completeEvent(String instructionId, long ttlSeconds) {
+        redisTemplate.execute(COMPLETE_SCRIPT, eventKeys(instructionId), String.valueOf(ttlSeconds));
+    }
+
+    /**
+     * 批量写入完成标记并释放处理锁，整批只需一次往返。
+     */
+    public void completeEvents(Collection<String> instructionIds, long ttlSeconds) {
+        if (instructionIds == null || instructionIds.isEmpty()) {
+            return;
+        }
+        evalPipelined(COMPLETE_SCRIPT, new ArrayList<>(new LinkedHashSet<>(instructionIds)), ttlSeconds);
     }
 
     /**
@@ -74,4 +113,38 @@ public class PaymentIdempotencyManager {
     public void releaseEventLock(String instructionId) {
         redisTemplate.delete(EVENT_PROCESSING_KEY + instructionId);
     }
+
+    private List<Object> evalPipelined(DefaultRedisScript<Long> script, List<String> instructionIds, long ttlSeconds) {
+        byte[] body = script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        byte[] ttl = String.valueOf(ttlSeconds).getBytes(StandardCharsets.UTF_8);
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String instructionId : instructionIds) {
+                connection.scriptingCommands().eval(body, ReturnType.INTEGER, 2,
+                        (EVENT_DONE_KEY + instructionId).getBytes(StandardCharsets.UTF_8),
+                        (EVENT_PROCESSING_KEY + instructionId).getBytes(StandardCharsets.UTF_8),
+                        ttl);
+            }
+            return null;
+        });
+    }
+
+    private static List<String> eventKeys(String instructionId) {
+        return Arrays.asList(EVENT_DONE_KEY + instructionId, EVENT_PROCESSING_KEY + instructionId);
+    }
+
+    /**
+     * 事件认领结果。
+     */
+    public enum EventClaim {
+        ACQUIRED,
+        PROCESSED,
+        IN_PROGRESS;
+
+        private static EventClaim of(Long code) {
+            if (code == null) {
+                throw new IllegalStateException("Event claim script returned no result");
+            }
+            return code.longValue() == 1L ? ACQUIRED : code.longValue() == 2L ? PROCESSED : IN_PROGRESS;
+        }
+    }
 }
@@ -9,14 +9,18 @@ import com.bankcore.common.error.ErrorCode;
 import com.bankcore.payment.client.AccountClient;
 import com.bankcore.payment.client.CustomerClient;
 import com.bankcore.payment.model.PaymentInstruction;
+import com.bankcore.payment.model.PaymentLane;
+import com.bankcore.payment.model.PaymentOutboxEvent;
 import com.bankcore.payment.model.PaymentRequestRecord;
 import com.bankcore.payment.model.PaymentRequestStatus;
+import com.bankcore.payment.repository.PaymentOutboxRepository;
 import com.bankcore.payment.repository.PaymentRepository;
 import com.bankcore.payment.repository.PaymentRequestRepository;
-import com.bankcore.payment.service.messaging.PaymentEventPublisher;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -24,9 +28,13 @@ import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
 
 /**
  * 支付指令服务：负责受理请求、做幂等检查、落库并投递异步事件，支持批量、补偿与状态更新。
@@ -39,95 +47,149 @@ public class PaymentService {
     private final PaymentRequestRepository requestRepository;
     private final AccountClient accountClient;
     private final CustomerClient customerClient;
-    private final PaymentEventPublisher paymentEventPublisher;
+    private final CustomerProfileCache customerCache;
+    private final PaymentOutboxRepository outboxRepository;
     private final PaymentIdempotencyManager idempotencyManager;
     private final AsyncTaskExecutor paymentTaskExecutor;
+    private final RequestIdempotencyMode idempotencyMode;
+    private final ConcurrentMap<String, Boolean> inFlightRequests = new ConcurrentHashMap<>();
 
     /**
-     * 构造注入依赖：仓储、幂等管理、外部账户/客户查询与事件发布器。
+     * 构造注入依赖：仓储、幂等管理、外部账户/客户查询与事件 outbox。
      */
     public PaymentService(PaymentRepository repository,
                           PaymentRequestRepository requestRepository,
                           AccountClient accountClient,
                           CustomerClient customerClient,
-                          PaymentEventPublisher paymentEventPublisher,
+                          CustomerProfileCache customerCache,
+                          PaymentOutboxRepository outboxRepository,
                           PaymentIdempotencyManager idempotencyManager,
-                          @Qualifier("paymentTaskExecutor") AsyncTaskExecutor paymentTaskExecutor) {
+                          @Qualifier("paymentTaskExecutor") AsyncTaskExecutor paymentTaskExecutor,
+                          @Value("${payment.idempotency.request-mode:REDIS}") RequestIdempotencyMode idempotencyMode) {
         this.repository = repository;
         this.requestRepository = requestRepository;
         this.accountClient = accountClient;
         this.customerClient = customerClient;
-        this.paymentEventPublisher = paymentEventPublisher;
+        this.customerCache = customerCache;
+        this.outboxRepository = outboxRepository;
         this.idempotencyManager = idempotencyManager;
         this.paymentTaskExecutor = paymentTaskExecutor;
+        this.idempotencyMode = idempotencyMode;
     }
 
     /**
-     * 提交支付请求：通过 Redis 锁和请求表保障幂等，校验账户与客户状态后落库并投递 MQ。
+     * 提交支付请求：按幂等模式识别重复请求，校验账户与客户状态后落库，事件与指令同事务写入 outbox 后由中继投递 MQ。
      */
     @Transactional
     public PaymentInstruction submit(PaymentRequest request) {
+        if (idempotencyMode == RequestIdempotencyMode.DATABASE) {
+            return submitInsertFirst(request);
+        }
         boolean lockAcquired = idempotencyManager.tryAcquireRequestLock(request.getRequestId(), REQUEST_LOCK_TTL_SECONDS);
         if (!lockAcquired) {
             log.info("request {} already locked, returning existing result if present", request.getRequestId());
             return resolveExistingRequest(request.getRequestId());
         }
         try {
+            Mono<Payer> payerLookup = lookupPayer(request.getPayerAccount()).cache();
+            Disposable inFlight = payerLookup.subscribe(payer -> { }, ex -> { });
             PaymentRequestRecord existing = requestRepository.findByRequestId(request.getRequestId()).orElse(null);
             if (existing != null) {
+                inFlight.dispose();
                 return handleExistingRequest(existing);
             }
-            AccountDTO payerAccount = accountClient.getAccount(request.getPayerAccount());
-            if (payerAccount == null) {
-                throw new BusinessException(ErrorCode.NOT_FOUND, "Payer account not found");
-            }
-            CustomerClient.CustomerProfile payerCustomer = customerClient.getCustomer(payerAccount.getCustomerId());
-            if (payerCustomer == null) {
-                throw new BusinessException(ErrorCode.NOT_FOUND, "Customer not found for account");
-            }
-            String payerStatus = payerCustomer.getStatus() == null ? "NORMAL" : payerCustomer.getStatus();
-            if ("BLOCKED".equalsIgnoreCase(payerStatus)) {
-                throw new BusinessException(ErrorCode.RISK_REJECTED, "Payer customer is blocked");
-            }
-            PaymentInstruction instruction = new PaymentInstruction(
-                    request.getRequestId(),
-                    request.getInstructionId(),
-                    request.getPayerAccount(),
-                    request.getPayeeAccount(),
-                    payerAccount.getCustomerId(),
-                    payerStatus,
-                    request.getCurrency(),
-                    request.getAmount(),
-                    request.getPurpose(),
-                    request.getChannel(),
-                    request.getBatchId(),
-                    request.getPriority(),
-                    PaymentStatus.PENDING);
-            log.info("enqueuing payment requestId={}, instructionId={}, payerAccount={}, amount={}",
-                    instruction.getRequestId(), instruction.getInstructionId(), instruction.getPayerAccount(), instruction.getAmount());
-            repository.save(instruction);
-            requestRepository.createPending(request.getRequestId(), instruction.getInstructionId());
-            paymentEventPublisher.publishAsync(request.getRequestId(), instruction.getInstructionId());
-            return instruction;
+            requestRepository.createPending(request.getRequestId(), request.getInstructionId());
+            return accept(request, payerLookup.block());
         } finally {
             idempotencyManager.releaseRequestLock(request.getRequestId());
         }
     }
 
+    /**
+     * 数据库幂等：本节点同一请求ID在途时直接返回处理中；否则先插入 PENDING 请求记录，主键冲突即为重复请求，
+     * 其他节点未提交的同 ID 插入会在行锁上等待其结束。请求记录与指令同事务，校验失败时一并回滚。
+     */
+    private PaymentInstruction submitInsertFirst(PaymentRequest request) {
+        String requestId = request.getRequestId();
+        if (inFlightRequests.putIfAbsent(requestId, Boolean.TRUE) != null) {
+            throw new BusinessException(ErrorCode.PROCESSING, "Payment request is already being processed");
+        }
+        try {
+            Mono<Payer> payerLookup = lookupPayer(request.getPayerAccount()).cache();
+            Disposable inFlight = payerLookup.subscribe(payer -> { }, ex -> { });
+            try {
+                requestRepository.createPending(requestId, request.getInstructionId());
+            } catch (DuplicateKeyException ex) {
+                inFlight.dispose();
+                log.info("request {} already accepted, returning existing result", requestId);
+                return resolveExistingRequest(requestId);
+            }
+            return accept(request, payerLookup.block());
+        } finally {
+            inFlightRequests.remove(requestId);
+        }
+    }
+
+    /**
+     * 校验付款客户状态，写入指令与 outbox 事件。
+     */
+    private PaymentInstruction accept(PaymentRequest request, Payer payer) {
+        AccountDTO payerAccount = payer.account;
+        CustomerClient.CustomerProfile payerCustomer = payer.customer;
+        String payerStatus = payerCustomer.getStatus() == null ? "NORMAL" : payerCustomer.getStatus();
+        if ("BLOCKED".equalsIgnoreCase(payerStatus)) {
+            throw new BusinessException(ErrorCode.RISK_REJECTED, "Payer customer is blocked");
+        }
+        PaymentInstruction instruction = new PaymentInstruction(
+                request.getRequestId(),
+                request.getInstructionId(),
+                request.getPayerAccount(),
+                request.getPayeeAccount(),
+                payerAccount.getCustomerId(),
+                payerStatus,
+                request.getCurrency(),
+                request.getAmount(),
+                request.getPurpose(),
+                request.getChannel(),
+                request.getBatchId(),
+                request.getPriority(),
+                PaymentStatus.PENDING);
+        log.info("enqueuing payment requestId={}, instructionId={}, payerAccount={}, amount={}",
+                instruction.getRequestId(), instruction.getInstructionId(), instruction.getPayerAccount(), instruction.getAmount());
+        repository.save(instruction);
+        outboxRepository.save(new PaymentOutboxEvent(instruction.getRequestId(), instruction.getInstructionId(),
+                instruction.getPayerAccount(), PaymentLane.of(instruction)));
+        return instruction;
+    }
+
+    /**
+     * 付款账户与其客户资料的查询链：账户返回后立即查客户，客户资料优先取近端缓存，命中时不再发起第二次远程调用。
+     * 在读取请求记录之前就已订阅，远程往返与本地查库并行。
+     */
+    private Mono<Payer> lookupPayer(String payerAccountId) {
+        return accountClient.getAccountAsync(payerAccountId)
+                .switchIfEmpty(Mono.error(() -> new BusinessException(ErrorCode.NOT_FOUND, "Payer account not found")))
+                .flatMap(account -> customerCache.get(account.getCustomerId(), customerClient::getCustomerAsync)
+                        .switchIfEmpty(Mono.error(() -> new BusinessException(ErrorCode.NOT_FOUND, "Customer not found for account")))
+                        .map(customer -> new Payer(account, customer)));
+    }
+
     /**
      * 手工补投 MQ：用于运营/批量重新触发处理。
      */
+    @Transactional
     public PaymentInstruction enqueueForProcessing(String instructionId) {
         PaymentInstruction instruction = repository.findById(instructionId)
                 .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND, "Instruction not found"));
         log.info("manual enqueue instructionId={}, requestId={}", instructionId, instruction.getRequestId());
         requestRepository.updateStatus(instruction.getRequestId(), PaymentRequestStatus.PENDING, instructionId, "manual enqueue");
-        paymentEventPublisher.publishAsync(instruction.getRequestId(), instructionId);
+        outboxRepository.save(new PaymentOutboxEvent(instruction.getRequestId(), instructionId, instruction.getPayerAccount(),
+                PaymentLane.of(instruction)));
         return instruction;
     }
 
     /**
-     * 批量触发支付处理，去重后逐个入队。
+     * 批量触发支付处理，去重后逐个写入 outbox，由中继成批投递。
      */
     public PaymentBatchResult processBatch(List<String> instructionIds) {
         if (instructionIds == null || instructionIds.isEmpty()) {
@@ -271,4 +333,14 @@ public class PaymentService {
         }
         return handleExistingRequest(existing);
     }
+
+    private static final class Payer {
+        private final AccountDTO account;
+        private final CustomerClient.CustomerProfile customer;
+
+        private Payer(AccountDTO account, CustomerClient.CustomerProfile customer) {
+            this.account = account;
+            this.customer = customer;
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package com.bankcore.payment.service;
+
+import com.bankcore.payment.model.PaymentInstruction;
+import com.bankcore.payment.model.PaymentRequestRecord;
+import com.bankcore.payment.repository.PaymentRepository;
+import com.bankcore.payment.repository.PaymentRequestRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 支付状态机：事件处理期间的状态迁移只在 {@link PaymentTransition} 中累积，
+ * 结束时以加载时的指令状态与请求状态作为期望值，一条多表 CAS 同时写入 payments 与 payment_requests。
+ */
+@Component
+public class PaymentStateMachine {
+    private final PaymentRepository paymentRepository;
+    private final PaymentRequestRepository requestRepository;
+
+    public PaymentStateMachine(PaymentRepository paymentRepository, PaymentRequestRepository requestRepository) {
+        this.paymentRepository = paymentRepository;
+        this.requestRepository = requestRepository;
+    }
+
+    /**
+     * 以当前持久化状态开始一次流转，指令或请求记录可为空。
+     */
+    public PaymentTransition begin(String requestId, PaymentInstruction instruction, PaymentRequestRecord requestRecord) {
+        return new PaymentTransition(requestId, instruction, requestRecord);
+    }
+
+    /**
+     * 落库最终状态，返回 false 表示期间状态已被其他流程修改，本次写入未生效。
+     */
+    @Transactional
+    public boolean commit(PaymentTransition transition) {
+        boolean paymentChanged = transition.paymentChanged();
+        boolean requestChanged = transition.requestChanged();
+        if (paymentChanged && requestChanged) {
+            return paymentRepository.compareAndUpdateWithRequest(transition.getInstructionId(), transition.getInitialPaymentStatus(),
+                    transition.getPaymentStatus(), transition.getRiskScore(), transition.getRequestId(),
+                    transition.getInitialRequestStatus(), transition.getRequestStatus(), transition.getMessage());
+        }
+        if (paymentChanged) {
+            return transition.getRiskScore() == null
+                    ? paymentRepository.compareAndUpdateStatus(transition.getInstructionId(), transition.getInitialPaymentStatus(),
+                    transition.getPaymentStatus())
+                    : paymentRepository.compareAndUpdateRisk(transition.getInstructionId(), transition.getRiskScore(),
+                    transition.getInitialPaymentStatus(), transition.getPaymentStatus());
+        }
+        if (requestChanged) {
+            return requestRepository.updateStatusIfMatch(transition.getRequestId(), transition.getInitialRequestStatus(),
+                    transition.getRequestStatus(), transition.getInstructionId(), transition.getMessage());
+        }
+        return true;
+    }
+}
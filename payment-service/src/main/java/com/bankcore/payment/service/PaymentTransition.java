@@ -0,0 +1,132 @@
+package com.bankcore.payment.service;
+
+import com.bankcore.common.dto.PaymentStatus;
+import com.bankcore.payment.model.PaymentInstruction;
+import com.bankcore.payment.model.PaymentRequestRecord;
+import com.bankcore.payment.model.PaymentRequestStatus;
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 单个支付事件内的状态流转：在内存中推进指令状态与请求状态并校验迁移合法性，
+ * 由 {@link PaymentStateMachine#commit(PaymentTransition)} 以加载时的状态为期望值一次性落库。
+ */
+public class PaymentTransition {
+    private static final Map<PaymentStatus, Set<PaymentStatus>> PAYMENT_TRANSITIONS = new EnumMap<>(PaymentStatus.class);
+    private static final Map<PaymentRequestStatus, Set<PaymentRequestStatus>> REQUEST_TRANSITIONS =
+            new EnumMap<>(PaymentRequestStatus.class);
+
+    static {
+        PAYMENT_TRANSITIONS.put(PaymentStatus.INITIATED,
+                EnumSet.of(PaymentStatus.PENDING, PaymentStatus.IN_RISK_REVIEW, PaymentStatus.FAILED));
+        PAYMENT_TRANSITIONS.put(PaymentStatus.PENDING, EnumSet.of(PaymentStatus.IN_RISK_REVIEW, PaymentStatus.FAILED));
+        PAYMENT_TRANSITIONS.put(PaymentStatus.IN_RISK_REVIEW,
+                EnumSet.of(PaymentStatus.RISK_APPROVED, PaymentStatus.RISK_REJECTED, PaymentStatus.FAILED));
+        PAYMENT_TRANSITIONS.put(PaymentStatus.RISK_APPROVED,
+                EnumSet.of(PaymentStatus.RISK_REJECTED, PaymentStatus.CLEARING, PaymentStatus.POSTED, PaymentStatus.FAILED));
+        PAYMENT_TRANSITIONS.put(PaymentStatus.CLEARING, EnumSet.of(PaymentStatus.POSTED, PaymentStatus.FAILED));
+        PAYMENT_TRANSITIONS.put(PaymentStatus.RISK_REJECTED, EnumSet.noneOf(PaymentStatus.class));
+        PAYMENT_TRANSITIONS.put(PaymentStatus.POSTED, EnumSet.noneOf(PaymentStatus.class));
+        PAYMENT_TRANSITIONS.put(PaymentStatus.FAILED, EnumSet.noneOf(PaymentStatus.class));
+        REQUEST_TRANSITIONS.put(PaymentRequestStatus.PENDING,
+                EnumSet.of(PaymentRequestStatus.PROCESSING, PaymentRequestStatus.SUCCEEDED, PaymentRequestStatus.FAILED));
+        REQUEST_TRANSITIONS.put(PaymentRequestStatus.PROCESSING,
+                EnumSet.of(PaymentRequestStatus.SUCCEEDED, PaymentRequestStatus.FAILED));
+        REQUEST_TRANSITIONS.put(PaymentRequestStatus.FAILED, EnumSet.of(PaymentRequestStatus.PENDING, PaymentRequestStatus.SUCCEEDED));
+        REQUEST_TRANSITIONS.put(PaymentRequestStatus.SUCCEEDED, EnumSet.noneOf(PaymentRequestStatus.class));
+    }
+
+    private final String instructionId;
+    private final String requestId;
+    private final PaymentStatus initialPaymentStatus;
+    private final PaymentRequestStatus initialRequestStatus;
+    private PaymentStatus paymentStatus;
+    private PaymentRequestStatus requestStatus;
+    private BigDecimal riskScore;
+    private String message;
+    private boolean requestTouched;
+
+    PaymentTransition(String requestId, PaymentInstruction instruction, PaymentRequestRecord requestRecord) {
+        this.requestId = requestId;
+        this.instructionId = instruction == null ? null : instruction.getInstructionId();
+        this.initialPaymentStatus = instruction == null ? null : instruction.getStatus();
+        this.initialRequestStatus = requestRecord == null ? null : requestRecord.getStatus();
+        this.paymentStatus = initialPaymentStatus;
+        this.requestStatus = initialRequestStatus;
+    }
+
+    /**
+     * 推进指令状态，原状态保持不变视为合法。
+     */
+    public PaymentTransition moveTo(PaymentStatus target) {
+        if (paymentStatus == null) {
+            throw new IllegalStateException("No payment instruction to transition for request " + requestId);
+        }
+        if (target != paymentStatus && !PAYMENT_TRANSITIONS.get(paymentStatus).contains(target)) {
+            throw new IllegalStateException("Illegal payment transition " + paymentStatus + " -> " + target);
+        }
+        paymentStatus = target;
+        return this;
+    }
+
+    /**
+     * 推进请求状态并记录说明；请求记录不存在时只记录目标状态，落库时忽略。
+     */
+    public PaymentTransition request(PaymentRequestStatus target, String message) {
+        if (requestStatus != null && target != requestStatus && !REQUEST_TRANSITIONS.get(requestStatus).contains(target)) {
+            throw new IllegalStateException("Illegal request transition " + requestStatus + " -> " + target);
+        }
+        this.requestStatus = target;
+        this.message = message;
+        this.requestTouched = true;
+        return this;
+    }
+
+    public PaymentTransition riskScore(BigDecimal riskScore) {
+        this.riskScore = riskScore;
+        return this;
+    }
+
+    public String getInstructionId() {
+        return instructionId;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public PaymentStatus getInitialPaymentStatus() {
+        return initialPaymentStatus;
+    }
+
+    public PaymentRequestStatus getInitialRequestStatus() {
+        return initialRequestStatus;
+    }
+
+    public PaymentStatus getPaymentStatus() {
+        return paymentStatus;
+    }
+
+    public PaymentRequestStatus getRequestStatus() {
+        return requestStatus;
+    }
+
+    public BigDecimal getRiskScore() {
+        return riskScore;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    boolean paymentChanged() {
+        return paymentStatus != initialPaymentStatus || riskScore != null;
+    }
+
+    boolean requestChanged() {
+        return requestTouched && initialRequestStatus != null;
+    }
+}
@@ -0,0 +1,11 @@
+package com.bankcore.payment.service;
+
+/**
+ * 支付请求提交的幂等模式。
+ */
+public enum RequestIdempotencyMode {
+    /** Redis 请求锁 + 查询请求表 */
+    REDIS,
+    /** 先插入 payment_requests，以主键冲突识别重复请求；本节点在途请求由进程内表拦截，不依赖 Redis */
+    DATABASE
+}
@@ -1,10 +1,35 @@
 package com.bankcore.payment.service.messaging;
 
+import com.bankcore.payment.model.PaymentLane;
+import com.bankcore.payment.model.PaymentOutboxEvent;
 import java.io.Serializable;
+import java.time.ZoneId;
 
 public class PaymentEvent implements Serializable {
     private String requestId;
     private String instructionId;
+    private String payerAccount;
+    private PaymentLane lane;
+    /** 事件写入 outbox 的时间（毫秒），用于统计排队等待时长 */
+    private long createdAt;
+    /** outbox 自增主键，同一付款账户的事件按此顺序处理 */
+    private long sequence;
+
+    /**
+     * 由 outbox 行构造事件，中继投递与消费端补处理前序事件共用。
+     */
+    public static PaymentEvent of(PaymentOutboxEvent outboxEvent) {
+        PaymentEvent event = new PaymentEvent();
+        event.setRequestId(outboxEvent.getRequestId());
+        event.setInstructionId(outboxEvent.getInstructionId());
+        event.setPayerAccount(outboxEvent.getPayerAccount());
+        event.setLane(outboxEvent.getLane() == null ? PaymentLane.NORMAL : outboxEvent.getLane());
+        event.setCreatedAt(outboxEvent.getCreatedAt() == null
+                ? System.currentTimeMillis()
+                : outboxEvent.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        event.setSequence(outboxEvent.getId() == null ? 0L : outboxEvent.getId());
+        return event;
+    }
 
     public String getRequestId() {
         return requestId;
@@ -21,4 +46,36 @@ public class PaymentEvent implements Serializable {
     public void setInstructionId(String instructionId) {
         this.instructionId = instructionId;
     }
+
+    public String getPayerAccount() {
+        return payerAccount;
+    }
+
+    public void setPayerAccount(String payerAccount) {
+        this.payerAccount = payerAccount;
+    }
+
+    public PaymentLane getLane() {
+        return lane;
+    }
+
+    public void setLane(PaymentLane lane) {
+        this.lane = lane;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
 }
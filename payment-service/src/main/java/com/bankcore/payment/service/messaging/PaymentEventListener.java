@@ -1,167 +1,103 @@
 package com.bankcore.payment.service.messaging;
 
-import com.bankcore.common.dto.PaymentStatus;
-import com.bankcore.payment.client.AccountClient;
-import com.bankcore.payment.client.RiskClient;
-import com.bankcore.payment.model.PaymentInstruction;
-import com.bankcore.payment.model.PaymentRequestRecord;
-import com.bankcore.payment.model.PaymentRequestStatus;
-import com.bankcore.payment.repository.PaymentRepository;
-import com.bankcore.payment.repository.PaymentRequestRepository;
-import com.bankcore.payment.service.PaymentClearingAdapter;
-import com.bankcore.payment.service.PaymentIdempotencyManager;
-import com.bankcore.payment.service.PaymentAccountLockManager;
-import com.bankcore.payment.service.PaymentRiskAssessor;
-import java.math.BigDecimal;
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
 /**
- * 支付事件消费者：监听 MQ 消息，执行风控->冻结->清算的异步链路，并用 Redis 标记避免重复消费。
+ * 支付事件消费者：监听 MQ 消息后交给 {@link PaymentProcessingPipeline} 异步处理，消费线程立即返回继续拉取下一条；
+ * 采用手动确认，流水线完成后 ack。可重试的阶段由流水线在阶段内原位重试，同一付款账户的后续事件继续等待；
+ * 流水线最终失败时 nack 且不重新入队，由分区队列转入死信队列，避免失败事件排到该账户后续事件之后或无限循环。
+ * 在途消息数由容器 prefetch 限制。
+ * 事件按付款账户分区且每个分区只有一个活跃消费者，同一付款账户的事件在本地依次处理，不同账户之间并行。
+ * 分区队列是优先级队列，积压时 broker 先投递加急事件。
  */
 @Component
 public class PaymentEventListener {
     private static final Logger log = LoggerFactory.getLogger(PaymentEventListener.class);
-    private static final long EVENT_LOCK_TTL_SECONDS = 300L;
-    private static final long EVENT_DONE_TTL_SECONDS = 3600L;
-    private static final long ACCOUNT_LOCK_TTL_SECONDS = 60L;
-    private final PaymentRepository paymentRepository;
-    private final PaymentRequestRepository requestRepository;
-    private final PaymentRiskAssessor riskAssessor;
-    private final PaymentClearingAdapter clearingAdapter;
-    private final AccountClient accountClient;
-    private final RiskClient riskClient;
-    private final PaymentIdempotencyManager idempotencyManager;
-    private final PaymentAccountLockManager accountLockManager;
+    private final PaymentProcessingPipeline pipeline;
+    private final PaymentLaneMetrics laneMetrics;
+    private final ConcurrentMap<String, CompletableFuture<Void>> payerTails = new ConcurrentHashMap<>();
 
     /**
      * 构造函数注入依赖，方便单测与替换实现。
      */
-    public PaymentEventListener(PaymentRepository paymentRepository,
-                                PaymentRequestRepository requestRepository,
-                                PaymentRiskAssessor riskAssessor,
-                                PaymentClearingAdapter clearingAdapter,
-                                AccountClient accountClient,
-                                RiskClient riskClient,
-                                PaymentIdempotencyManager idempotencyManager,
-                                PaymentAccountLockManager accountLockManager) {
-        this.paymentRepository = paymentRepository;
-        this.requestRepository = requestRepository;
-        this.riskAssessor = riskAssessor;
-        this.clearingAdapter = clearingAdapter;
-        this.accountClient = accountClient;
-        this.riskClient = riskClient;
-        this.idempotencyManager = idempotencyManager;
-        this.accountLockManager = accountLockManager;
+    public PaymentEventListener(PaymentProcessingPipeline pipeline, PaymentLaneMetrics laneMetrics) {
+        this.pipeline = pipeline;
+        this.laneMetrics = laneMetrics;
     }
 
     /**
      * MQ 监听入口：幂等检查 -> 风控 -> 冻结记账 -> 清算 -> 更新请求/指令状态。
      */
-    @RabbitListener(queues = "${payment.messaging.queue:payment.events.queue}")
-    public void onPaymentEvent(PaymentEvent event) {
-        if (event == null || event.getInstructionId() == null) {
+    @RabbitListener(queues = "#{paymentPartitionQueues}", containerFactory = "paymentListenerContainerFactory")
+    public void onPaymentEvent(PaymentEvent event, Channel channel, @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+        String payer = event == null ? null : event.getPayerAccount() != null ? event.getPayerAccount() : event.getInstructionId();
+        if (payer == null) {
+            settle(channel, deliveryTag, true);
             return;
         }
-        if (idempotencyManager.isEventAlreadyProcessed(event.getInstructionId())) {
-            log.info("payment event {} already processed, skipping", event.getInstructionId());
-            return;
-        }
-        boolean locked = idempotencyManager.tryAcquireEventProcessing(event.getInstructionId(), EVENT_LOCK_TTL_SECONDS);
-        if (!locked) {
-            log.info("payment event {} is already being processed", event.getInstructionId());
-            return;
+        laneMetrics.received(event);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = payerTails.put(payer, done);
+        Runnable run = () -> {
+            try {
+                pipeline.process(event)
+                        .subscribe(
+                                null,
+                                ex -> finish(event, payer, done, channel, deliveryTag, false),
+                                () -> finish(event, payer, done, channel, deliveryTag, true));
+            } catch (RuntimeException ex) {
+                log.error("failed to start processing payment event {}", event.getInstructionId(), ex);
+                finish(event, payer, done, channel, deliveryTag, false);
+            }
+        };
+        if (previous == null) {
+            run.run();
+        } else {
+            previous.whenComplete((ignored, ex) -> run.run());
         }
-        log.info("received payment event requestId={}, instructionId={}", event.getRequestId(), event.getInstructionId());
+    }
+
+    /**
+     * 确认消息并放行同一付款账户的下一条事件；确认失败（如通道已关闭）时也必须放行，未确认的消息由 broker 重新投递。
+     */
+    private void finish(PaymentEvent event, String payer, CompletableFuture<Void> done, Channel channel, long deliveryTag,
+                        boolean success) {
         try {
-            PaymentRequestRecord requestRecord = requestRepository.findByRequestId(event.getRequestId()).orElse(null);
-            if (requestRecord != null && requestRecord.getStatus() == PaymentRequestStatus.SUCCEEDED) {
-                log.info("Duplicate payment request {} ignored: already succeeded", event.getRequestId());
-                idempotencyManager.markEventCompleted(event.getInstructionId(), EVENT_DONE_TTL_SECONDS);
-                return;
-            }
-            PaymentInstruction instruction = paymentRepository.findById(event.getInstructionId())
-                    .orElse(null);
-            if (instruction == null) {
-                requestRepository.updateStatus(event.getRequestId(), PaymentRequestStatus.FAILED, event.getInstructionId(), "instruction missing");
-                idempotencyManager.markEventCompleted(event.getInstructionId(), EVENT_DONE_TTL_SECONDS);
-                return;
-            }
-            if (instruction.getStatus() == PaymentStatus.POSTED || instruction.getStatus() == PaymentStatus.CLEARING) {
-                idempotencyManager.markEventCompleted(event.getInstructionId(), EVENT_DONE_TTL_SECONDS);
-                return;
-            }
-            if (instruction.getStatus() == PaymentStatus.RISK_REJECTED || instruction.getStatus() == PaymentStatus.FAILED) {
-                requestRepository.updateStatus(event.getRequestId(), PaymentRequestStatus.SUCCEEDED, instruction.getInstructionId(), "already handled");
-                idempotencyManager.markEventCompleted(event.getInstructionId(), EVENT_DONE_TTL_SECONDS);
-                return;
+            laneMetrics.finished(event);
+            if (!success) {
+                log.error("payment event {} failed, dead-lettering", event.getInstructionId());
             }
-            boolean requestLocked = requestRecord == null
-                    || requestRepository.updateStatusIfMatch(event.getRequestId(), PaymentRequestStatus.PENDING, PaymentRequestStatus.PROCESSING, instruction.getInstructionId(), null)
-                    || requestRepository.updateStatusIfMatch(event.getRequestId(), PaymentRequestStatus.PROCESSING, PaymentRequestStatus.PROCESSING, instruction.getInstructionId(), null);
-            if (!requestLocked) {
-                log.info("request {} status already advanced, skipping", event.getRequestId());
-                idempotencyManager.markEventCompleted(event.getInstructionId(), EVENT_DONE_TTL_SECONDS);
-                return;
-            }
-            paymentRepository.compareAndUpdateStatus(instruction.getInstructionId(), PaymentStatus.PENDING, PaymentStatus.IN_RISK_REVIEW);
-            RiskClient.RiskDecisionResponse decision = riskClient.evaluate(instruction.getAmount(), instruction.getPayerCustomerId(), instruction.getChannel() == null ? "API" : instruction.getChannel(), instruction.getPayerAccount(), instruction.getInstructionId());
-            if (decision != null && decision.getResult() != null && "REJECTED".equalsIgnoreCase(decision.getResult())) {
-                paymentRepository.compareAndUpdateStatus(instruction.getInstructionId(), PaymentStatus.IN_RISK_REVIEW, PaymentStatus.RISK_REJECTED);
-                requestRepository.updateStatus(event.getRequestId(), PaymentRequestStatus.SUCCEEDED, instruction.getInstructionId(), decision.getReason());
-                idempotencyManager.markEventCompleted(event.getInstructionId(), EVENT_DONE_TTL_SECONDS);
-                return;
-            }
-            if (decision != null && decision.getResult() != null && "REVIEW".equalsIgnoreCase(decision.getResult())) {
-                paymentRepository.compareAndUpdateStatus(instruction.getInstructionId(), PaymentStatus.IN_RISK_REVIEW, PaymentStatus.IN_RISK_REVIEW);
-                requestRepository.updateStatus(event.getRequestId(), PaymentRequestStatus.PROCESSING, instruction.getInstructionId(), decision.getReason());
-                idempotencyManager.markEventCompleted(event.getInstructionId(), EVENT_DONE_TTL_SECONDS);
-                return;
-            }
-            // 在真正冻结/扣款前，使用账户维度分布式锁保证同一账户不会被并发出款
-            boolean accountLocked = accountLockManager.tryLock(instruction.getPayerAccount(), ACCOUNT_LOCK_TTL_SECONDS);
-            if (!accountLocked) {
-                log.warn("payer account {} is locked by concurrent payment, will retry", instruction.getPayerAccount());
-                throw new IllegalStateException("账户正在处理其他支付，稍后重试");
-            }
-            BigDecimal score = riskAssessor.evaluate(instruction);
-            PaymentStatus nextStatus = score.compareTo(BigDecimal.valueOf(80)) >= 0
-                    ? PaymentStatus.RISK_REJECTED
-                    : PaymentStatus.RISK_APPROVED;
-            paymentRepository.compareAndUpdateRisk(instruction.getInstructionId(), score, PaymentStatus.IN_RISK_REVIEW, nextStatus);
-            instruction.setRiskScore(score);
-            instruction.setStatus(nextStatus);
-            if (nextStatus == PaymentStatus.RISK_REJECTED) {
-                requestRepository.updateStatus(event.getRequestId(), PaymentRequestStatus.SUCCEEDED, instruction.getInstructionId(), "rejected by risk");
-                idempotencyManager.markEventCompleted(event.getInstructionId(), EVENT_DONE_TTL_SECONDS);
-                accountLockManager.unlock(instruction.getPayerAccount());
-                return;
-            }
-            try {
-                accountClient.freeze(instruction.getPayerAccount(), instruction.getAmount(), instruction.getInstructionId());
-                PaymentStatus clearingStatus = clearingAdapter.dispatch(instruction);
-                if (clearingStatus == PaymentStatus.POSTED) {
-                    accountClient.settle(instruction.getPayerAccount(), instruction.getAmount(), instruction.getInstructionId());
-                    paymentRepository.compareAndUpdateStatus(instruction.getInstructionId(), PaymentStatus.RISK_APPROVED, PaymentStatus.POSTED);
-                    requestRepository.updateStatus(event.getRequestId(), PaymentRequestStatus.SUCCEEDED, instruction.getInstructionId(), "posted");
-                } else if (clearingStatus == PaymentStatus.CLEARING) {
-                    paymentRepository.compareAndUpdateStatus(instruction.getInstructionId(), PaymentStatus.RISK_APPROVED, PaymentStatus.CLEARING);
-                    requestRepository.updateStatus(event.getRequestId(), PaymentRequestStatus.SUCCEEDED, instruction.getInstructionId(), "sent to clearing");
+            settle(channel, deliveryTag, success);
+        } finally {
+            payerTails.remove(payer, done);
+            done.complete(null);
+        }
+    }
+
+    /**
+     * 成功 ack；失败 nack 且不重新入队，消息经分区队列的死信配置进入 DLQ。
+     */
+    private void settle(Channel channel, long deliveryTag, boolean success) {
+        try {
+            synchronized (channel) {
+                if (success) {
+                    channel.basicAck(deliveryTag, false);
                 } else {
-                    paymentRepository.compareAndUpdateStatus(instruction.getInstructionId(), PaymentStatus.RISK_APPROVED, PaymentStatus.FAILED);
-                    requestRepository.updateStatus(event.getRequestId(), PaymentRequestStatus.FAILED, instruction.getInstructionId(), "clearing failed");
-                    accountClient.unfreeze(instruction.getPayerAccount(), instruction.getAmount(), instruction.getInstructionId());
+                    channel.basicNack(deliveryTag, false, false);
                 }
-                idempotencyManager.markEventCompleted(event.getInstructionId(), EVENT_DONE_TTL_SECONDS);
-            } finally {
-                accountLockManager.unlock(instruction.getPayerAccount());
             }
-        } catch (Exception ex) {
-            log.error("Payment processing failed for {}", event.getInstructionId(), ex);
-            idempotencyManager.releaseEventLock(event.getInstructionId());
-            throw ex;
+        } catch (IOException | RuntimeException ex) {
+            log.warn("failed to {} payment event deliveryTag={}", success ? "ack" : "nack", deliveryTag, ex);
         }
     }
 }
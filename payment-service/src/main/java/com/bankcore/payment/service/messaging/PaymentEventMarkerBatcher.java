@@ -0,0 +1,168 @@
+package com.bankcore.payment.service.messaging;
+
+import com.bankcore.payment.service.PaymentIdempotencyManager;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 事件幂等标记合批：容器预取的多条消息并发进入流水线，各自的认领与完成请求先进入队列，
+ * 攒满 batch-size 或等待 batch-window-ms 后以一次管道往返发给 Redis，结果按指令回填。
+ * Redis 调用只在合批线程上执行，不占用消费线程；关闭合批时退化为逐条脚本调用。
+ */
+@Component
+class PaymentEventMarkerBatcher {
+    private final PaymentIdempotencyManager idempotencyManager;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long windowMillis;
+    private final long lockTtlSeconds;
+    private final long doneTtlSeconds;
+    private final MarkerQueue<PaymentIdempotencyManager.EventClaim> claims;
+    private final MarkerQueue<Void> completions;
+    private final ScheduledExecutorService executor;
+
+    PaymentEventMarkerBatcher(PaymentIdempotencyManager idempotencyManager,
+                              @Value("${payment.idempotency.batch-enabled:true}") boolean enabled,
+                              @Value("${payment.idempotency.batch-size:64}") int batchSize,
+                              @Value("${payment.idempotency.batch-window-ms:2}") long windowMillis,
+                              @Value("${payment.idempotency.event-lock-ttl-seconds:300}") long lockTtlSeconds,
+                              @Value("${payment.idempotency.event-done-ttl-seconds:3600}") long doneTtlSeconds) {
+        this.idempotencyManager = idempotencyManager;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.windowMillis = Math.max(1L, windowMillis);
+        this.lockTtlSeconds = lockTtlSeconds;
+        this.doneTtlSeconds = doneTtlSeconds;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-event-marker-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.claims = new MarkerQueue<>(ids -> idempotencyManager.tryClaimEvents(ids, this.lockTtlSeconds),
+                PaymentIdempotencyManager.EventClaim.IN_PROGRESS);
+        this.completions = new MarkerQueue<>(ids -> {
+            idempotencyManager.completeEvents(ids, this.doneTtlSeconds);
+            return null;
+        }, null);
+    }
+
+    /**
+     * 认领事件，结果在所在批次返回后完成。
+     */
+    CompletableFuture<PaymentIdempotencyManager.EventClaim> claim(String instructionId) {
+        if (!enabled) {
+            return CompletableFuture.supplyAsync(() -> idempotencyManager.tryClaimEvent(instructionId, lockTtlSeconds), executor);
+        }
+        return claims.add(instructionId);
+    }
+
+    /**
+     * 写入完成标记并等待所在批次落到 Redis，需在阻塞线程池上调用；标记写入后消息才能确认。
+     */
+    void completeAndWait(String instructionId) {
+        if (!enabled) {
+            idempotencyManager.completeEvent(instructionId, doneTtlSeconds);
+            return;
+        }
+        try {
+            completions.add(instructionId).join();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        claims.flush();
+        completions.flush();
+    }
+
+    /**
+     * 一类标记的待发队列：同一指令在一个批次内只发一次，后到的重复请求得到 duplicateResult
+     * （认领时为 IN_PROGRESS，同一事件不会被两个处理者同时认领），批次失败时整批以同一异常结束。
+     */
+    private final class MarkerQueue<T> {
+        private final Function<List<String>, Map<String, T>> sender;
+        private final T duplicateResult;
+        private final Queue<Pending<T>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+        private MarkerQueue(Function<List<String>, Map<String, T>> sender, T duplicateResult) {
+            this.sender = sender;
+            this.duplicateResult = duplicateResult;
+        }
+
+        private CompletableFuture<T> add(String instructionId) {
+            Pending<T> entry = new Pending<>(instructionId);
+            pending.add(entry);
+            if (pendingCount.incrementAndGet() >= batchSize) {
+                executor.execute(this::flush);
+            } else if (flushScheduled.compareAndSet(false, true)) {
+                executor.schedule(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                }, windowMillis, TimeUnit.MILLISECONDS);
+            }
+            return entry.result;
+        }
+
+        private void flush() {
+            List<Pending<T>> batch = new ArrayList<>(batchSize);
+            Pending<T> next;
+            while ((next = pending.poll()) != null) {
+                batch.add(next);
+                if (batch.size() == batchSize) {
+                    send(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                send(batch);
+            }
+        }
+
+        private void send(List<Pending<T>> batch) {
+            pendingCount.addAndGet(-batch.size());
+            List<String> ids = new ArrayList<>(batch.size());
+            batch.forEach(entry -> ids.add(entry.instructionId));
+            try {
+                Map<String, T> results = sender.apply(ids);
+                Set<String> answered = new HashSet<>();
+                for (Pending<T> entry : batch) {
+                    entry.result.complete(!answered.add(entry.instructionId)
+                            ? duplicateResult
+                            : results == null ? null : results.get(entry.instructionId));
+                }
+            } catch (RuntimeException ex) {
+                batch.forEach(entry -> entry.result.completeExceptionally(ex));
+            }
+        }
+    }
+
+    private static final class Pending<T> {
+        private final String instructionId;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Pending(String instructionId) {
+            this.instructionId = instructionId;
+        }
+    }
+}
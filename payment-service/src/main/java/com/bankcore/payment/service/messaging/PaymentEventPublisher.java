@@ -1,27 +1,190 @@
 package com.bankcore.payment.service.messaging;
 
+import com.bankcore.payment.model.PaymentOutboxEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * 支付事件发布：以付款账户作为路由键发往一致性哈希交换机，同一账户的事件总是落在同一个分区队列，
+ * 消息优先级按调度通道设置，积压时加急事件先于批量事件出队。
+ * 事件按路由键哈希进入发送线程各自的内存缓冲，同一付款账户的事件总由同一个线程按入队顺序发送，多线程发送不会打乱账户内顺序；
+ * 发送线程成批取出，在连接工厂缓存的同一个通道上连续发送，并以异步 publisher confirm 确认；
+ * 每个事件返回一个在 broker 确认后完成的 future。未确认的消息数受上限约束，达到上限时发送线程等待确认而不是继续堆积。
+ * 事件只经 outbox 中继发布，消息优先级取 outbox 记录的调度通道。
+ */
 @Component
 public class PaymentEventPublisher {
+    private static final Logger log = LoggerFactory.getLogger(PaymentEventPublisher.class);
+    private static final long POLL_TIMEOUT_MILLIS = 100L;
+
     private final RabbitTemplate rabbitTemplate;
     private final String exchange;
-    private final String routingKey;
+    private final int batchSize;
+    private final int maxOutstandingConfirms;
+    private final List<BlockingQueue<PendingEvent>> buffers;
+    private final Semaphore confirmPermits;
+    private final AtomicInteger outstandingConfirms = new AtomicInteger();
+    private final ExecutorService senders;
+    private volatile boolean running = true;
 
     public PaymentEventPublisher(RabbitTemplate rabbitTemplate,
-                                 @Value("${payment.messaging.exchange:payment.events.exchange}") String exchange,
-                                 @Value("${payment.messaging.routingKey:payment.events}") String routingKey) {
+                                 @Value("${payment.messaging.exchange:payment.events.hash}") String exchange,
+                                 @Value("${payment.publisher.batch-size:100}") int batchSize,
+                                 @Value("${payment.publisher.buffer-capacity:10000}") int bufferCapacity,
+                                 @Value("${payment.publisher.max-outstanding-confirms:1000}") int maxOutstandingConfirms,
+                                 @Value("${payment.publisher.sender-threads:2}") int senderThreads) {
         this.rabbitTemplate = rabbitTemplate;
         this.exchange = exchange;
-        this.routingKey = routingKey;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxOutstandingConfirms = Math.max(this.batchSize, maxOutstandingConfirms);
+        this.confirmPermits = new Semaphore(this.maxOutstandingConfirms);
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = Math.max(1, senderThreads);
+        this.buffers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            buffers.add(new ArrayBlockingQueue<>(Math.max(1, bufferCapacity / threads)));
+        }
+        this.senders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "payment-event-publisher-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (BlockingQueue<PendingEvent> buffer : buffers) {
+            senders.execute(() -> sendLoop(buffer));
+        }
+    }
+
+    /**
+     * 进入发送缓冲，供 outbox 中继在持有行锁的事务内等待确认；消息优先级取 outbox 事件的通道。
+     */
+    public CompletableFuture<Void> publish(PaymentOutboxEvent outboxEvent) {
+        PaymentEvent event = PaymentEvent.of(outboxEvent);
+        PendingEvent pending = new PendingEvent(event, event.getPayerAccount() == null ? event.getInstructionId() : event.getPayerAccount());
+        enqueue(pending);
+        return pending.result;
+    }
+
+    /**
+     * 已发送但尚未收到 broker 确认的消息数。
+     */
+    public int getOutstandingConfirms() {
+        return outstandingConfirms.get();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        senders.shutdown();
+        if (!senders.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("payment event publisher stopped with {} buffered events", buffers.stream().mapToInt(BlockingQueue::size).sum());
+        }
+    }
+
+    private void enqueue(PendingEvent pending) {
+        BlockingQueue<PendingEvent> buffer = buffers.get(Math.floorMod(pending.routingKey.hashCode(), buffers.size()));
+        if (!running || !buffer.offer(pending)) {
+            pending.result.completeExceptionally(new IllegalStateException("Payment event buffer is full"));
+        }
     }
 
-    public void publishAsync(String requestId, String instructionId) {
-        PaymentEvent event = new PaymentEvent();
-        event.setRequestId(requestId);
-        event.setInstructionId(instructionId);
-        rabbitTemplate.convertAndSend(exchange, routingKey, event);
+    private void sendLoop(BlockingQueue<PendingEvent> buffer) {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                PendingEvent first = buffer.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                confirmPermits.acquire(batch.size());
+                send(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                batch.forEach(pending -> pending.result.completeExceptionally(ex));
+                return;
+            } catch (RuntimeException ex) {
+                log.error("payment event sender failed on batch of {}", batch.size(), ex);
+                batch.forEach(pending -> pending.result.completeExceptionally(ex));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 整批在同一个缓存通道上发送，确认结果逐条异步回填；发送失败（含序列化等非 AMQP 异常）的剩余事件立即异常完成并归还许可。
+     */
+    private void send(List<PendingEvent> batch) {
+        AtomicInteger sent = new AtomicInteger();
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (PendingEvent pending : batch) {
+                    CorrelationData correlation = new CorrelationData(pending.event.getInstructionId());
+                    int priority = pending.event.getLane().getMessagePriority();
+                    operations.convertAndSend(exchange, pending.routingKey, pending.event, message -> {
+                        message.getMessageProperties().setPriority(priority);
+                        return message;
+                    }, correlation);
+                    track(pending, correlation);
+                    sent.incrementAndGet();
+                }
+                return null;
+            });
+        } catch (RuntimeException ex) {
+            int failed = batch.size() - sent.get();
+            log.warn("failed to publish {} of {} payment events", failed, batch.size(), ex);
+            for (int i = sent.get(); i < batch.size(); i++) {
+                batch.get(i).result.completeExceptionally(ex);
+            }
+            confirmPermits.release(failed);
+        }
+    }
+
+    private void track(PendingEvent pending, CorrelationData correlation) {
+        outstandingConfirms.incrementAndGet();
+        correlation.getFuture().addCallback(confirm -> {
+            settle();
+            if (confirm != null && confirm.isAck()) {
+                pending.result.complete(null);
+            } else {
+                pending.result.completeExceptionally(new IllegalStateException("Payment event "
+                        + pending.event.getInstructionId() + " nacked by broker: " + (confirm == null ? null : confirm.getReason())));
+            }
+        }, ex -> {
+            settle();
+            pending.result.completeExceptionally(ex);
+        });
+    }
+
+    private void settle() {
+        outstandingConfirms.decrementAndGet();
+        confirmPermits.release();
+    }
+
+    private static final class PendingEvent {
+        private final PaymentEvent event;
+        private final String routingKey;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private PendingEvent(PaymentEvent event, String routingKey) {
+            this.event = event;
+            this.routingKey = routingKey;
+        }
     }
 }
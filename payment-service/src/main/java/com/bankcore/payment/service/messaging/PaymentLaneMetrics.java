@@ -0,0 +1,89 @@
+package com.bankcore.payment.service.messaging;
+
+import com.bankcore.payment.model.PaymentLane;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按调度通道统计的指标（tag lane）：
+ * payment.lane.depth 本节点已收到未处理完的事件数，payment.lane.stage.waiting 各阶段等待许可的调用数，
+ * payment.lane.wait 从写入 outbox 到开始处理的等待时长，payment.lane.latency 从写入 outbox 到处理完成的时长，
+ * payment.lane.slo.breach 完成时长超过该通道目标的事件数。
+ */
+@Component
+public class PaymentLaneMetrics {
+    private final MeterRegistry registry;
+    private final Map<PaymentLane, AtomicInteger> depth = new EnumMap<>(PaymentLane.class);
+    private final Map<PaymentLane, Timer> waitTimers = new EnumMap<>(PaymentLane.class);
+    private final Map<PaymentLane, Timer> latencyTimers = new EnumMap<>(PaymentLane.class);
+    private final Map<PaymentLane, Counter> breaches = new EnumMap<>(PaymentLane.class);
+    private final Map<PaymentLane, Long> sloMillis = new EnumMap<>(PaymentLane.class);
+
+    public PaymentLaneMetrics(MeterRegistry registry,
+                              @Value("${payment.scheduling.urgent-slo-ms:2000}") long urgentSloMillis,
+                              @Value("${payment.scheduling.normal-slo-ms:10000}") long normalSloMillis,
+                              @Value("${payment.scheduling.bulk-slo-ms:600000}") long bulkSloMillis) {
+        this.registry = registry;
+        sloMillis.put(PaymentLane.URGENT, urgentSloMillis);
+        sloMillis.put(PaymentLane.NORMAL, normalSloMillis);
+        sloMillis.put(PaymentLane.BULK, bulkSloMillis);
+        for (PaymentLane lane : PaymentLane.values()) {
+            String tag = lane.name().toLowerCase();
+            AtomicInteger count = new AtomicInteger();
+            depth.put(lane, count);
+            Gauge.builder("payment.lane.depth", count, AtomicInteger::get).tag("lane", tag).register(registry);
+            waitTimers.put(lane, Timer.builder("payment.lane.wait").tag("lane", tag)
+                    .publishPercentiles(0.5, 0.99).register(registry));
+            latencyTimers.put(lane, Timer.builder("payment.lane.latency").tag("lane", tag)
+                    .publishPercentiles(0.5, 0.99).register(registry));
+            breaches.put(lane, Counter.builder("payment.lane.slo.breach").tag("lane", tag).register(registry));
+        }
+    }
+
+    void registerStage(String stage, PipelineStage pipelineStage) {
+        for (PaymentLane lane : PaymentLane.values()) {
+            Gauge.builder("payment.lane.stage.waiting", pipelineStage, s -> s.waiting(lane))
+                    .tag("lane", lane.name().toLowerCase())
+                    .tag("stage", stage)
+                    .register(registry);
+        }
+    }
+
+    void received(PaymentEvent event) {
+        depth.get(laneOf(event)).incrementAndGet();
+    }
+
+    void started(PaymentEvent event) {
+        if (event.getCreatedAt() > 0L) {
+            waitTimers.get(laneOf(event)).record(elapsed(event), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void finished(PaymentEvent event) {
+        PaymentLane lane = laneOf(event);
+        depth.get(lane).decrementAndGet();
+        if (event.getCreatedAt() > 0L) {
+            long elapsed = elapsed(event);
+            latencyTimers.get(lane).record(elapsed, TimeUnit.MILLISECONDS);
+            if (elapsed > sloMillis.get(lane)) {
+                breaches.get(lane).increment();
+            }
+        }
+    }
+
+    static PaymentLane laneOf(PaymentEvent event) {
+        return event.getLane() == null ? PaymentLane.NORMAL : event.getLane();
+    }
+
+    private static long elapsed(PaymentEvent event) {
+        return Math.max(0L, System.currentTimeMillis() - event.getCreatedAt());
+    }
+}
@@ -0,0 +1,150 @@
+package com.bankcore.payment.service.messaging;
+
+import com.bankcore.payment.model.PaymentLane;
+import com.bankcore.payment.model.PaymentOutboxEvent;
+import com.bankcore.payment.repository.PaymentOutboxRepository;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * outbox 中继：轮询 payment_outbox 中未投递的事件，按通道优先、同通道按写入顺序成批发布并等待 publisher confirm，
+ * 已确认的行批量标记为已投递。每批为每个低优先级通道保留 batch-size / fair-share-interval 个名额，
+ * 高优先级通道持续积压时批量通道仍按该份额投递；保留名额用不完时再由高优先级通道补足。行在事务内以 SKIP LOCKED 锁定，多实例并行中继时互不重复；
+ * 未确认的事件保留在表中，下一轮重新投递，消费端按指令幂等。
+ * 多实例中继与重投都可能打乱同一付款账户的投递顺序，执行顺序由消费端按 outbox 顺序补处理前序事件保证。
+ */
+@Component
+public class PaymentOutboxRelay {
+    private static final Logger log = LoggerFactory.getLogger(PaymentOutboxRelay.class);
+    private static final int PURGE_CHUNK = 5000;
+
+    private final PaymentOutboxRepository outboxRepository;
+    private final PaymentEventPublisher publisher;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int reservedPerLane;
+    private final long confirmTimeoutMillis;
+    private final int retentionDays;
+
+    public PaymentOutboxRelay(PaymentOutboxRepository outboxRepository,
+                              PaymentEventPublisher publisher,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${payment.outbox.relay-enabled:true}") boolean enabled,
+                              @Value("${payment.outbox.batch-size:200}") int batchSize,
+                              @Value("${payment.outbox.confirm-timeout-ms:5000}") long confirmTimeoutMillis,
+                              @Value("${payment.outbox.retention-days:7}") int retentionDays,
+                              @Value("${payment.scheduling.fair-share-interval:10}") int fairShareInterval) {
+        this.outboxRepository = outboxRepository;
+        this.publisher = publisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.reservedPerLane = Math.max(1, this.batchSize / Math.max(1, fairShareInterval));
+        this.confirmTimeoutMillis = confirmTimeoutMillis;
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * 一轮中继：整批全部确认时继续取下一批，直到积压清空或出现未确认的事件。
+     */
+    @Scheduled(fixedDelayString = "${payment.outbox.poll-interval-ms:100}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Integer relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch());
+            } while (relayed != null && relayed >= batchSize);
+        } catch (RuntimeException ex) {
+            log.warn("payment outbox relay failed", ex);
+        }
+    }
+
+    /**
+     * 清理保留期之前已投递的事件，分块删除避免长事务。
+     */
+    @Scheduled(cron = "${payment.outbox.purge-cron:0 30 3 * * *}")
+    public void purge() {
+        LocalDateTime before = LocalDateTime.now().minusDays(retentionDays);
+        int deleted;
+        int total = 0;
+        do {
+            deleted = outboxRepository.deletePublishedBefore(before, PURGE_CHUNK);
+            total += deleted;
+        } while (deleted >= PURGE_CHUNK);
+        log.info("purged {} published payment outbox events before {}", total, before);
+    }
+
+    private int relayBatch() {
+        List<PaymentOutboxEvent> events = lockBatch();
+        if (events.isEmpty()) {
+            return 0;
+        }
+        List<CompletableFuture<Void>> confirms = new ArrayList<>(events.size());
+        for (PaymentOutboxEvent event : events) {
+            confirms.add(publisher.publish(event));
+        }
+        long deadline = System.currentTimeMillis() + confirmTimeoutMillis;
+        List<Long> published = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            try {
+                confirms.get(i).get(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                published.add(events.get(i).getId());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException ex) {
+                log.warn("payment outbox event {} for instruction {} not confirmed, will retry", events.get(i).getId(),
+                        events.get(i).getInstructionId());
+            }
+        }
+        outboxRepository.markPublished(published);
+        return published.size() == events.size() ? events.size() : 0;
+    }
+
+    /**
+     * 按通道优先级依次锁定，每个通道先让出其后各通道的保留名额；第二轮再由仍有积压的通道按优先级补足剩余名额。
+     */
+    private List<PaymentOutboxEvent> lockBatch() {
+        PaymentLane[] lanes = PaymentLane.values();
+        long[] lastIds = new long[lanes.length];
+        boolean[] drained = new boolean[lanes.length];
+        List<PaymentOutboxEvent> events = new ArrayList<>(batchSize);
+        for (int i = 0; i < lanes.length; i++) {
+            int limit = batchSize - events.size() - reservedPerLane * (lanes.length - 1 - i);
+            if (limit > 0) {
+                drained[i] = lockLane(lanes[i], lastIds, limit, events) < limit;
+            }
+        }
+        for (int i = 0; i < lanes.length && events.size() < batchSize; i++) {
+            if (!drained[i]) {
+                lockLane(lanes[i], lastIds, batchSize - events.size(), events);
+            }
+        }
+        return events;
+    }
+
+    private int lockLane(PaymentLane lane, long[] lastIds, int limit, List<PaymentOutboxEvent> events) {
+        List<PaymentOutboxEvent> locked = outboxRepository.lockPending(lane, lastIds[lane.ordinal()], limit);
+        if (!locked.isEmpty()) {
+            lastIds[lane.ordinal()] = locked.get(locked.size() - 1).getId();
+            events.addAll(locked);
+        }
+        return locked.size();
+    }
+}
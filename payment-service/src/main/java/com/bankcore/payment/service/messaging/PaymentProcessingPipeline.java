@@ -0,0 +1,342 @@
+package com.bankcore.payment.service.messaging;
+
+import com.bankcore.common.dto.PaymentStatus;
+import com.bankcore.payment.client.AccountClient;
+import com.bankcore.payment.client.RiskClient;
+import com.bankcore.payment.client.RiskEvaluationBatcher;
+import com.bankcore.payment.model.PaymentInstruction;
+import com.bankcore.payment.model.PaymentLane;
+import com.bankcore.payment.model.PaymentOutboxEvent;
+import com.bankcore.payment.model.PaymentRequestRecord;
+import com.bankcore.payment.model.PaymentRequestStatus;
+import com.bankcore.payment.repository.PaymentOutboxRepository;
+import com.bankcore.payment.repository.PaymentRepository;
+import com.bankcore.payment.repository.PaymentRequestRepository;
+import com.bankcore.payment.service.PaymentClearingAdapter;
+import com.bankcore.payment.service.PaymentIdempotencyManager;
+import com.bankcore.payment.service.PaymentRiskAssessor;
+import com.bankcore.payment.service.PaymentStateMachine;
+import com.bankcore.payment.service.PaymentTransition;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+/**
+ * 支付处理流水线：幂等检查 -> 风控 -> 冻结 -> 清算 -> 入账/解冻 -> 状态落库，各阶段以 Mono 串联而不阻塞消费线程。
+ * 远程调用直接使用 WebClient 的 Mono（风控评估经合批后批量调用），并按阶段限制在途数量，许可按调度通道优先分配；
+ * Redis、数据库与清算调用在有界的阻塞线程池上执行；预取的多条消息的事件认领与完成标记经 {@link PaymentEventMarkerBatcher} 合并为管道批量请求。
+ * 只有按请求ID幂等的远程阶段（风控评估、冻结、入账、解冻）在连接失败或 5xx 时按退避原位重试，
+ * 事件认领、状态落库与清算发送不重试，失败即结束本次处理。
+ * 同一付款账户的事件按 outbox 顺序处理：开始处理前先补处理该账户 outbox 中更早、指令仍未开始处理的事件，
+ * 多实例中继乱序投递、部分确认后重投或加急事件插队时，付款账户的资金变动仍按提交顺序发生（前序事件正由其他节点处理时除外）；
+ * 被补处理的事件随后到达时按幂等标记直接跳过。
+ * 阶段返回空表示该事件已处理完毕，后续阶段不再执行。状态迁移经 {@link PaymentStateMachine} 在内存中累积，只在终点落库一次。
+ */
+@Component
+public class PaymentProcessingPipeline {
+    private static final Logger log = LoggerFactory.getLogger(PaymentProcessingPipeline.class);
+    private final PaymentRepository paymentRepository;
+    private final PaymentRequestRepository requestRepository;
+    private final PaymentOutboxRepository outboxRepository;
+    private final PaymentRiskAssessor riskAssessor;
+    private final PaymentClearingAdapter clearingAdapter;
+    private final AccountClient accountClient;
+    private final RiskEvaluationBatcher riskBatcher;
+    private final PaymentIdempotencyManager idempotencyManager;
+    private final PaymentEventMarkerBatcher markerBatcher;
+    private final PaymentStateMachine stateMachine;
+    private final Scheduler blockingScheduler;
+    private final PipelineStage riskStage;
+    private final PipelineStage accountStage;
+    private final PaymentLaneMetrics laneMetrics;
+    private final Retry remoteRetry;
+    private final int maxPredecessors;
+
+    public PaymentProcessingPipeline(PaymentRepository paymentRepository,
+                                     PaymentRequestRepository requestRepository,
+                                     PaymentOutboxRepository outboxRepository,
+                                     PaymentRiskAssessor riskAssessor,
+                                     PaymentClearingAdapter clearingAdapter,
+                                     AccountClient accountClient,
+                                     RiskEvaluationBatcher riskBatcher,
+                                     PaymentIdempotencyManager idempotencyManager,
+                                     PaymentEventMarkerBatcher markerBatcher,
+                                     PaymentStateMachine stateMachine,
+                                     PaymentLaneMetrics laneMetrics,
+                                     @Value("${payment.pipeline.blocking-threads:16}") int blockingThreads,
+                                     @Value("${payment.pipeline.risk-concurrency:64}") int riskConcurrency,
+                                     @Value("${payment.pipeline.account-concurrency:64}") int accountConcurrency,
+                                     @Value("${payment.scheduling.urgent-reserved:8}") int urgentReserved,
+                                     @Value("${payment.scheduling.fair-share-interval:10}") int fairShareInterval,
+                                     @Value("${payment.pipeline.retry-attempts:3}") int retryAttempts,
+                                     @Value("${payment.pipeline.retry-backoff-ms:200}") long retryBackoffMillis,
+                                     @Value("${payment.ordering.max-predecessors:20}") int maxPredecessors) {
+        this.paymentRepository = paymentRepository;
+        this.requestRepository = requestRepository;
+        this.outboxRepository = outboxRepository;
+        this.riskAssessor = riskAssessor;
+        this.clearingAdapter = clearingAdapter;
+        this.accountClient = accountClient;
+        this.riskBatcher = riskBatcher;
+        this.idempotencyManager = idempotencyManager;
+        this.markerBatcher = markerBatcher;
+        this.stateMachine = stateMachine;
+        this.blockingScheduler = Schedulers.newBoundedElastic(Math.max(1, blockingThreads),
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "payment-pipeline-io");
+        int riskPermits = Math.max(riskConcurrency, riskBatcher.getBatchSize() + urgentReserved);
+        if (riskPermits > riskConcurrency) {
+            log.warn("risk-concurrency {} leaves fewer shared permits than risk batch-size {}, raised to {}", riskConcurrency,
+                    riskBatcher.getBatchSize(), riskPermits);
+        }
+        this.riskStage = new PipelineStage(riskPermits, urgentReserved, fairShareInterval);
+        this.accountStage = new PipelineStage(accountConcurrency, urgentReserved, fairShareInterval);
+        this.laneMetrics = laneMetrics;
+        laneMetrics.registerStage("risk", riskStage);
+        laneMetrics.registerStage("account", accountStage);
+        this.remoteRetry = Retry.backoff(Math.max(0, retryAttempts), Duration.ofMillis(Math.max(1L, retryBackoffMillis)))
+                .filter(PaymentProcessingPipeline::isTransient)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+        this.maxPredecessors = Math.max(0, maxPredecessors);
+    }
+
+    /**
+     * 处理一条支付事件，返回的 Mono 完成即表示事件可以确认。前序事件处理失败只记录日志，留给其自身的消息或下一次补处理。
+     */
+    public Mono<Void> process(PaymentEvent event) {
+        if (event == null || event.getInstructionId() == null) {
+            return Mono.empty();
+        }
+        return blocking(() -> earlierPending(event))
+                .flatMapMany(Flux::fromIterable)
+                .concatMap(earlier -> processOne(earlier)
+                        .onErrorResume(ex -> {
+                            log.warn("earlier payment event {} for payer {} failed before {}", earlier.getInstructionId(),
+                                    earlier.getPayerAccount(), event.getInstructionId(), ex);
+                            return Mono.empty();
+                        }))
+                .then(processOne(event));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        blockingScheduler.dispose();
+    }
+
+    private Mono<Void> processOne(PaymentEvent event) {
+        return Mono.fromFuture(() -> markerBatcher.claim(event.getInstructionId()))
+                .filter(claim -> acquired(event, claim))
+                .flatMap(claim -> processAcquired(event));
+    }
+
+    /**
+     * 该付款账户 outbox 中排在本事件之前、指令仍未开始处理的事件。
+     */
+    private List<PaymentEvent> earlierPending(PaymentEvent event) {
+        if (maxPredecessors == 0 || event.getPayerAccount() == null || event.getSequence() <= 0L) {
+            return Collections.emptyList();
+        }
+        List<PaymentOutboxEvent> earlier = outboxRepository.findEarlierPending(event.getPayerAccount(), event.getSequence(),
+                maxPredecessors);
+        if (!earlier.isEmpty()) {
+            log.info("payment event {} for payer {} processing {} earlier events first", event.getInstructionId(),
+                    event.getPayerAccount(), earlier.size());
+        }
+        return earlier.stream().map(PaymentEvent::of).collect(Collectors.toList());
+    }
+
+    private Mono<Void> processAcquired(PaymentEvent event) {
+        log.info("received payment event requestId={}, instructionId={}", event.getRequestId(), event.getInstructionId());
+        laneMetrics.started(event);
+        PaymentLane lane = PaymentLaneMetrics.laneOf(event);
+        return blocking(() -> prepare(event))
+                .flatMap(context -> riskStage.execute(lane, () -> riskBatcher.evaluate(context.instruction.getAmount(),
+                                context.instruction.getPayerCustomerId(),
+                                context.instruction.getChannel() == null ? "API" : context.instruction.getChannel(),
+                                context.instruction.getPayerAccount(), context.instruction.getInstructionId()))
+                        .retryWhen(remoteRetry)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .flatMap(decision -> blocking(() -> applyRiskDecision(event, context, decision.orElse(null)))))
+                .flatMap(context -> moveFunds(event, context))
+                .onErrorResume(ex -> {
+                    log.error("Payment processing failed for {}", event.getInstructionId(), ex);
+                    return blocking(() -> {
+                        idempotencyManager.releaseEventLock(event.getInstructionId());
+                        return Boolean.TRUE;
+                    }).then(Mono.error(ex));
+                })
+                .then();
+    }
+
+    private boolean acquired(PaymentEvent event, PaymentIdempotencyManager.EventClaim claim) {
+        if (claim == PaymentIdempotencyManager.EventClaim.PROCESSED) {
+            log.info("payment event {} already processed, skipping", event.getInstructionId());
+            return false;
+        }
+        if (claim == PaymentIdempotencyManager.EventClaim.IN_PROGRESS) {
+            log.info("payment event {} is already being processed", event.getInstructionId());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 读取请求与指令并在内存中推进到风控审核中；已处理或状态已推进的事件直接标记完成。
+     * 事件处理中的状态不再逐步落库，由事件锁保证同一指令只有一个处理者。
+     */
+    private EventContext prepare(PaymentEvent event) {
+        PaymentRequestRecord requestRecord = requestRepository.findByRequestId(event.getRequestId()).orElse(null);
+        if (requestRecord != null && requestRecord.getStatus() == PaymentRequestStatus.SUCCEEDED) {
+            log.info("Duplicate payment request {} ignored: already succeeded", event.getRequestId());
+            return complete(event);
+        }
+        PaymentInstruction instruction = paymentRepository.findById(event.getInstructionId()).orElse(null);
+        if (instruction == null) {
+            requestRepository.updateStatus(event.getRequestId(), PaymentRequestStatus.FAILED, event.getInstructionId(), "instruction missing");
+            return complete(event);
+        }
+        PaymentTransition transition = stateMachine.begin(event.getRequestId(), instruction, requestRecord);
+        if (instruction.getStatus() == PaymentStatus.POSTED || instruction.getStatus() == PaymentStatus.CLEARING) {
+            return complete(event);
+        }
+        if (instruction.getStatus() == PaymentStatus.RISK_REJECTED || instruction.getStatus() == PaymentStatus.FAILED) {
+            stateMachine.commit(transition.request(PaymentRequestStatus.SUCCEEDED, "already handled"));
+            return complete(event);
+        }
+        if (requestRecord != null && requestRecord.getStatus() != PaymentRequestStatus.PENDING
+                && requestRecord.getStatus() != PaymentRequestStatus.PROCESSING) {
+            log.info("request {} status already advanced, skipping", event.getRequestId());
+            return complete(event);
+        }
+        if (instruction.getStatus() == PaymentStatus.INITIATED || instruction.getStatus() == PaymentStatus.PENDING) {
+            transition.moveTo(PaymentStatus.IN_RISK_REVIEW);
+        }
+        return new EventContext(instruction, transition);
+    }
+
+    /**
+     * 在内存中落地风控结论，拒绝或待人工复核时一次性提交；通过后计算内部评分，只有评分通过才返回进入资金阶段。
+     */
+    private EventContext applyRiskDecision(PaymentEvent event, EventContext context, RiskClient.RiskDecisionResponse decision) {
+        PaymentInstruction instruction = context.instruction;
+        PaymentTransition transition = context.transition;
+        if (decision != null && decision.getResult() != null && "REJECTED".equalsIgnoreCase(decision.getResult())) {
+            commit(transition.moveTo(PaymentStatus.RISK_REJECTED).request(PaymentRequestStatus.SUCCEEDED, decision.getReason()));
+            return complete(event);
+        }
+        if (decision != null && decision.getResult() != null && "REVIEW".equalsIgnoreCase(decision.getResult())) {
+            commit(transition.request(PaymentRequestStatus.PROCESSING, decision.getReason()));
+            return complete(event);
+        }
+        BigDecimal score = riskAssessor.evaluate(instruction);
+        PaymentStatus nextStatus = score.compareTo(BigDecimal.valueOf(80)) >= 0
+                ? PaymentStatus.RISK_REJECTED
+                : PaymentStatus.RISK_APPROVED;
+        transition.moveTo(nextStatus).riskScore(score);
+        instruction.setRiskScore(score);
+        instruction.setStatus(nextStatus);
+        if (nextStatus == PaymentStatus.RISK_REJECTED) {
+            commit(transition.request(PaymentRequestStatus.SUCCEEDED, "rejected by risk"));
+            return complete(event);
+        }
+        return context;
+    }
+
+    /**
+     * 冻结 -> 清算 -> 入账或解冻。同一付款账户的事件由分区队列投递到同一消费者并在本地串行，
+     * 处理前已补齐更早的事件，无需再加账户锁。
+     */
+    private Mono<Void> moveFunds(PaymentEvent event, EventContext context) {
+        PaymentInstruction instruction = context.instruction;
+        String payer = instruction.getPayerAccount();
+        BigDecimal amount = instruction.getAmount();
+        String instructionId = instruction.getInstructionId();
+        PaymentLane lane = PaymentLaneMetrics.laneOf(event);
+        return accountStage.execute(lane, () -> accountClient.freezeAsync(payer, amount, instructionId))
+                .retryWhen(remoteRetry)
+                .then(blocking(() -> clearingAdapter.dispatch(instruction)))
+                .flatMap(status -> status == PaymentStatus.POSTED
+                        ? accountStage.execute(lane, () -> accountClient.settleAsync(payer, amount, instructionId))
+                                .retryWhen(remoteRetry).thenReturn(status)
+                        : Mono.just(status))
+                .flatMap(status -> blocking(() -> recordClearingResult(context.transition, status)))
+                .flatMap(status -> status == PaymentStatus.FAILED
+                        ? accountStage.execute(lane, () -> accountClient.unfreezeAsync(payer, amount, instructionId))
+                                .retryWhen(remoteRetry).then()
+                        : Mono.<Void>empty())
+                .then(blocking(() -> complete(event)))
+                .then();
+    }
+
+    /**
+     * 清算结果连同此前在内存中累积的风控状态与评分一次性落库。
+     */
+    private PaymentStatus recordClearingResult(PaymentTransition transition, PaymentStatus clearingStatus) {
+        if (clearingStatus == PaymentStatus.POSTED) {
+            commit(transition.moveTo(PaymentStatus.POSTED).request(PaymentRequestStatus.SUCCEEDED, "posted"));
+            return PaymentStatus.POSTED;
+        }
+        if (clearingStatus == PaymentStatus.CLEARING) {
+            commit(transition.moveTo(PaymentStatus.CLEARING).request(PaymentRequestStatus.SUCCEEDED, "sent to clearing"));
+            return PaymentStatus.CLEARING;
+        }
+        commit(transition.moveTo(PaymentStatus.FAILED).request(PaymentRequestStatus.FAILED, "clearing failed"));
+        return PaymentStatus.FAILED;
+    }
+
+    private void commit(PaymentTransition transition) {
+        if (!stateMachine.commit(transition)) {
+            log.warn("payment {} changed concurrently, state {} / {} not applied", transition.getInstructionId(),
+                    transition.getPaymentStatus(), transition.getRequestStatus());
+        }
+    }
+
+    /**
+     * 标记事件处理完成，返回 null 以结束流水线。
+     */
+    private <T> T complete(PaymentEvent event) {
+        markerBatcher.completeAndWait(event.getInstructionId());
+        return null;
+    }
+
+    /**
+     * 连接失败、超时与 5xx 视为可重试，4xx 是对方明确拒绝，重试也不会成功。
+     */
+    private static boolean isTransient(Throwable ex) {
+        if (ex instanceof WebClientResponseException) {
+            return ((WebClientResponseException) ex).getStatusCode().is5xxServerError();
+        }
+        return ex instanceof WebClientRequestException || ex instanceof TimeoutException;
+    }
+
+    private <T> Mono<T> blocking(Callable<T> work) {
+        return Mono.fromCallable(work).subscribeOn(blockingScheduler);
+    }
+
+    private static final class EventContext {
+        private final PaymentInstruction instruction;
+        private final PaymentTransition transition;
+
+        private EventContext(PaymentInstruction instruction, PaymentTransition transition) {
+            this.instruction = instruction;
+            this.transition = transition;
+        }
+    }
+}
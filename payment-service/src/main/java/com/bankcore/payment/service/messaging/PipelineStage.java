@@ -0,0 +1,188 @@
+package com.bankcore.payment.service.messaging;
+
+import com.bankcore.payment.model.PaymentLane;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * 流水线阶段许可：限制单个阶段同时在途的异步调用数，超出的调用排队等待许可释放后再订阅，不占用线程。
+ * 等待队列按调度通道划分，许可释放时先放行高优先级通道；另预留一部分许可只给加急通道使用，
+ * 批量积压占满阶段时加急支付仍能立即进入。
+ * 有调用在等待的通道连续 fair-share-interval - 1 次许可都被其他通道拿走时，下一个许可必定给它，
+ * 即每个有积压的低优先级通道至少分得 1/fair-share-interval 的许可，高优先级持续积压也不会饿死批量通道。
+ * 调用方取消时，排队中的调用直接出队，已启动的调用被取消并归还许可；调用同步抛错同样归还许可。
+ */
+final class PipelineStage {
+    private final int maxInFlight;
+    private final int sharedLimit;
+    private final int fairShareInterval;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<PaymentLane, Queue<Ticket<?>>> waiting = new EnumMap<>(PaymentLane.class);
+    private final Map<PaymentLane, AtomicInteger> waitingCounts = new EnumMap<>(PaymentLane.class);
+    private final Map<PaymentLane, Integer> passedOver = new EnumMap<>(PaymentLane.class);
+
+    PipelineStage(int maxInFlight, int urgentReserved, int fairShareInterval) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.sharedLimit = Math.max(1, this.maxInFlight - Math.max(0, urgentReserved));
+        this.fairShareInterval = Math.max(1, fairShareInterval);
+        for (PaymentLane lane : PaymentLane.values()) {
+            waiting.put(lane, new ArrayDeque<>());
+            waitingCounts.put(lane, new AtomicInteger());
+            passedOver.put(lane, 0);
+        }
+    }
+
+    <T> Mono<T> execute(PaymentLane lane, Supplier<Mono<T>> work) {
+        PaymentLane target = lane == null ? PaymentLane.NORMAL : lane;
+        return Mono.create(sink -> {
+            Ticket<T> ticket = new Ticket<>(target, sink, work);
+            synchronized (this) {
+                waitingCounts.get(target).incrementAndGet();
+                waiting.get(target).add(ticket);
+            }
+            sink.onCancel(ticket::cancel);
+            drain();
+        });
+    }
+
+    /**
+     * 该通道正在等待许可的调用数。
+     */
+    int waiting(PaymentLane lane) {
+        return waitingCounts.get(lane).get();
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * 在锁内分配许可并取出可以启动的调用，锁外再订阅，调用同步完成时的重入释放不会在锁内递归。
+     */
+    private void drain() {
+        List<Ticket<?>> ready = new ArrayList<>();
+        synchronized (this) {
+            PaymentLane lane;
+            while ((lane = nextLane()) != null) {
+                ready.add(grant(lane));
+            }
+        }
+        ready.forEach(Ticket::start);
+    }
+
+    /**
+     * 选出下一个获得许可的通道：已被连续跳过 fair-share-interval - 1 次的通道优先（跳过最久者），否则按优先级；
+     * 加急通道可用全部许可，其他通道只能用共享部分。没有可放行的调用时返回 null。
+     */
+    private PaymentLane nextLane() {
+        PaymentLane next = null;
+        PaymentLane starved = null;
+        for (PaymentLane lane : PaymentLane.values()) {
+            int limit = lane == PaymentLane.URGENT ? maxInFlight : sharedLimit;
+            if (waiting.get(lane).isEmpty() || inFlight.get() >= limit) {
+                continue;
+            }
+            if (next == null) {
+                next = lane;
+            }
+            int skipped = passedOver.get(lane);
+            if (skipped >= fairShareInterval - 1 && (starved == null || skipped > passedOver.get(starved))) {
+                starved = lane;
+            }
+        }
+        return starved != null ? starved : next;
+    }
+
+    private Ticket<?> grant(PaymentLane lane) {
+        inFlight.incrementAndGet();
+        waitingCounts.get(lane).decrementAndGet();
+        Ticket<?> ticket = waiting.get(lane).poll();
+        for (PaymentLane other : PaymentLane.values()) {
+            passedOver.put(other, other == lane || waiting.get(other).isEmpty() ? 0 : passedOver.get(other) + 1);
+        }
+        return ticket;
+    }
+
+    /**
+     * 排队中的调用被取消时出队；已被分配许可但尚未启动的调用由 {@link Ticket#start()} 归还许可。
+     */
+    private synchronized void dequeue(Ticket<?> ticket) {
+        if (waiting.get(ticket.lane).remove(ticket)) {
+            waitingCounts.get(ticket.lane).decrementAndGet();
+        }
+    }
+
+    /**
+     * 一次排队中的调用：WAITING -> RUNNING -> 完成，任一状态都可能被取消；许可只归还一次。
+     */
+    private final class Ticket<T> {
+        private static final int WAITING = 0;
+        private static final int RUNNING = 1;
+        private static final int CANCELLED = 2;
+
+        private final PaymentLane lane;
+        private final MonoSink<T> sink;
+        private final Supplier<Mono<T>> work;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile Disposable subscription;
+
+        private Ticket(PaymentLane lane, MonoSink<T> sink, Supplier<Mono<T>> work) {
+            this.lane = lane;
+            this.sink = sink;
+            this.work = work;
+        }
+
+        private void start() {
+            if (!state.compareAndSet(WAITING, RUNNING)) {
+                releasePermit();
+                return;
+            }
+            try {
+                subscription = Mono.defer(work)
+                        .doFinally(signal -> releasePermit())
+                        .subscribe(sink::success, sink::error, sink::success);
+            } catch (RuntimeException ex) {
+                releasePermit();
+                sink.error(ex);
+                return;
+            }
+            if (state.get() == CANCELLED) {
+                subscription.dispose();
+            }
+        }
+
+        private void cancel() {
+            int previous = state.getAndSet(CANCELLED);
+            if (previous == WAITING) {
+                dequeue(this);
+            } else if (previous == RUNNING) {
+                Disposable running = subscription;
+                if (running != null) {
+                    running.dispose();
+                }
+            }
+        }
+
+        private void releasePermit() {
+            if (released.compareAndSet(false, true)) {
+                release();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.bankcore.payment.service.messaging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.bankcore.payment.model.PaymentLane;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class PipelineStageTest {
+    private final List<String> started = new ArrayList<>();
+    private final List<Sinks.One<String>> running = new ArrayList<>();
+
+    @Test
+    void queuesCallsBeyondTheSharedLimit() {
+        PipelineStage stage = new PipelineStage(3, 1, 100);
+        submit(stage, PaymentLane.NORMAL, "n1");
+        submit(stage, PaymentLane.NORMAL, "n2");
+        submit(stage, PaymentLane.NORMAL, "n3");
+
+        assertEquals(Arrays.asList("n1", "n2"), started);
+        assertEquals(2, stage.inFlight());
+        assertEquals(1, stage.waiting(PaymentLane.NORMAL));
+
+        finishOldest();
+        assertEquals(Arrays.asList("n1", "n2", "n3"), started);
+        assertEquals(0, stage.waiting(PaymentLane.NORMAL));
+    }
+
+    @Test
+    void urgentUsesReservedPermitsWhenSharedPermitsAreTaken() {
+        PipelineStage stage = new PipelineStage(3, 1, 100);
+        submit(stage, PaymentLane.BULK, "b1");
+        submit(stage, PaymentLane.BULK, "b2");
+        submit(stage, PaymentLane.BULK, "b3");
+        submit(stage, PaymentLane.URGENT, "u1");
+
+        assertEquals(Arrays.asList("b1", "b2", "u1"), started);
+        assertEquals(3, stage.inFlight());
+        assertEquals(1, stage.waiting(PaymentLane.BULK));
+    }
+
+    @Test
+    void higherLaneIsServedFirstWhenPermitIsReleased() {
+        PipelineStage stage = new PipelineStage(1, 0, 100);
+        submit(stage, PaymentLane.NORMAL, "first");
+        submit(stage, PaymentLane.BULK, "b1");
+        submit(stage, PaymentLane.NORMAL, "n1");
+        submit(stage, PaymentLane.URGENT, "u1");
+
+        finishOldest();
+        finishOldest();
+        finishOldest();
+        assertEquals(Arrays.asList("first", "u1", "n1", "b1"), started);
+    }
+
+    @Test
+    void starvedLaneGetsItsFairShare() {
+        PipelineStage stage = new PipelineStage(1, 0, 3);
+        submit(stage, PaymentLane.NORMAL, "first");
+        for (int i = 1; i <= 5; i++) {
+            submit(stage, PaymentLane.NORMAL, "n" + i);
+        }
+        submit(stage, PaymentLane.BULK, "b1");
+        submit(stage, PaymentLane.BULK, "b2");
+
+        for (int i = 0; i < 7; i++) {
+            finishOldest();
+        }
+        assertEquals(Arrays.asList("first", "n1", "n2", "b1", "n3", "n4", "b2", "n5"), started);
+    }
+
+    @Test
+    void failedCallReleasesItsPermit() {
+        PipelineStage stage = new PipelineStage(1, 0, 100);
+        stage.execute(PaymentLane.NORMAL, () -> Mono.<String>error(new IllegalStateException("boom")))
+                .subscribe(value -> { }, ex -> { });
+        submit(stage, PaymentLane.NORMAL, "n1");
+
+        assertEquals(Arrays.asList("n1"), started);
+        assertEquals(1, stage.inFlight());
+    }
+
+    @Test
+    void synchronousThrowReleasesItsPermitAndLaterCallsStillRun() {
+        PipelineStage stage = new PipelineStage(1, 0, 100);
+        submit(stage, PaymentLane.NORMAL, "first");
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        stage.execute(PaymentLane.NORMAL, () -> {
+            throw new IllegalStateException("boom");
+        }).subscribe(value -> { }, failure::set);
+        submit(stage, PaymentLane.NORMAL, "n1");
+
+        finishOldest();
+        assertTrue(failure.get() instanceof IllegalStateException);
+        assertEquals(Arrays.asList("first", "n1"), started);
+        assertEquals(1, stage.inFlight());
+    }
+
+    @Test
+    void cancelledWaitingCallLeavesTheQueue() {
+        PipelineStage stage = new PipelineStage(1, 0, 100);
+        submit(stage, PaymentLane.NORMAL, "first");
+        Disposable cancelled = submit(stage, PaymentLane.NORMAL, "n1");
+        submit(stage, PaymentLane.NORMAL, "n2");
+
+        cancelled.dispose();
+        assertEquals(1, stage.waiting(PaymentLane.NORMAL));
+        finishOldest();
+        assertEquals(Arrays.asList("first", "n2"), started);
+        assertEquals(1, stage.inFlight());
+    }
+
+    @Test
+    void cancelledRunningCallReleasesItsPermit() {
+        PipelineStage stage = new PipelineStage(1, 0, 100);
+        Disposable cancelled = submit(stage, PaymentLane.NORMAL, "first");
+        submit(stage, PaymentLane.NORMAL, "n1");
+
+        cancelled.dispose();
+        assertEquals(Arrays.asList("first", "n1"), started);
+        assertEquals(1, stage.inFlight());
+        assertEquals(0, stage.waiting(PaymentLane.NORMAL));
+    }
+
+    private Disposable submit(PipelineStage stage, PaymentLane lane, String name) {
+        return stage.execute(lane, () -> {
+            started.add(name);
+            Sinks.One<String> sink = Sinks.one();
+            running.add(sink);
+            return sink.asMono();
+        }).subscribe();
+    }
+
+    private void finishOldest() {
+        running.remove(0).tryEmitValue("done");
+    }
+}
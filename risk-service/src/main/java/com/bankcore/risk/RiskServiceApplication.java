@@ -3,9 +3,11 @@ package com.bankcore.risk;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = "com.bankcore")
 @MapperScan("com.bankcore.risk.repository")
+@EnableScheduling
 public class RiskServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(RiskServiceApplication.class, args);
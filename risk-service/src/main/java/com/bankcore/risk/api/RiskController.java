@@ -2,23 +2,30 @@ package com.bankcore.risk.api;
 
 import com.bankcore.risk.model.RiskDecision;
 import com.bankcore.risk.service.RiskEngineService;
+import com.bankcore.risk.service.rule.RiskRuleRegistry;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
 import java.math.BigDecimal;
+import java.util.List;
 
 @RestController
 @RequestMapping("/risk")
 public class RiskController {
     private final RiskEngineService riskEngineService;
+    private final RiskRuleRegistry ruleRegistry;
 
-    public RiskController(RiskEngineService riskEngineService) {
+    public RiskController(RiskEngineService riskEngineService, RiskRuleRegistry ruleRegistry) {
         this.riskEngineService = riskEngineService;
+        this.ruleRegistry = ruleRegistry;
     }
 
     @PostMapping("/evaluate")
@@ -26,6 +33,36 @@ public class RiskController {
         return riskEngineService.evaluate(request);
     }
 
+    /**
+     * 批量评估，结果按请求顺序返回；单笔参数非法只对该笔返回 REJECTED，不拒绝整批。
+     */
+    @PostMapping("/evaluate:batch")
+    public List<RiskDecision> evaluateBatch(@Valid @RequestBody RiskBatchRequest request) {
+        return riskEngineService.evaluateAll(request.getRequests());
+    }
+
+    /**
+     * 规则修改后通知所有节点重新加载。
+     */
+    @PostMapping("/rules/refresh")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void refreshRules() {
+        ruleRegistry.publishChange();
+    }
+
+    public static class RiskBatchRequest {
+        @NotEmpty
+        private List<RiskRequest> requests;
+
+        public List<RiskRequest> getRequests() {
+            return requests;
+        }
+
+        public void setRequests(List<RiskRequest> requests) {
+            this.requests = requests;
+        }
+    }
+
     public static class RiskRequest {
         @DecimalMin("0.01")
         private BigDecimal amount;
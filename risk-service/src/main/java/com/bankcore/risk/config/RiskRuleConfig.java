@@ -0,0 +1,24 @@
+package com.bankcore.risk.config;
+
+import com.bankcore.risk.service.rule.RiskRuleRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 订阅规则变更频道，收到通知后重新编译本节点的规则评估计划。
+ */
+@Configuration
+public class RiskRuleConfig {
+
+    @Bean
+    public RedisMessageListenerContainer riskRuleListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                   RiskRuleRegistry ruleRegistry) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> ruleRegistry.refresh(), new ChannelTopic(ruleRegistry.channel()));
+        return container;
+    }
+}
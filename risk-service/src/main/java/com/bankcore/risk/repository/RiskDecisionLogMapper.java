@@ -11,6 +11,8 @@ import java.util.List;
 public interface RiskDecisionLogMapper {
     void insert(RiskDecisionLog log);
 
+    int insertBatch(@Param("logs") List<RiskDecisionLog> logs);
+
     BigDecimal sumForCustomerToday(@Param("customerId") String customerId);
 
     List<RiskDecisionLog> findRecent(@Param("limit") int limit);
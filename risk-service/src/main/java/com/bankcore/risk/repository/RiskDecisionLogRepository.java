@@ -18,6 +18,12 @@ public class RiskDecisionLogRepository {
         mapper.insert(log);
     }
 
+    public void saveAll(List<RiskDecisionLog> logs) {
+        if (!logs.isEmpty()) {
+            mapper.insertBatch(logs);
+        }
+    }
+
     public BigDecimal sumToday(String customerId) {
         BigDecimal total = mapper.sumForCustomerToday(customerId);
         return total == null ? BigDecimal.ZERO : total;
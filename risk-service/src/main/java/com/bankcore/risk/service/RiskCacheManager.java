@@ -1,38 +1,34 @@
 package com.bankcore.risk.service;
 
 import com.bankcore.risk.model.RiskDecision;
-import com.bankcore.risk.model.RiskRule;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.math.BigDecimal;
-import java.time.Duration;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.function.Supplier;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Component;
 
 /**
- * 风控缓存/计数组件：
- * 1) 缓存启用规则，减少 DB 压力；
- * 2) 通过 Redis 计数器做日累计、分钟频次统计，避免高并发下打爆数据库。
+ * 风控缓存组件：缓存风控决策并标记处理中的请求，避免重复评估。日累计与频次计数见 {@code VelocityCounterStore}。
  */
 @Component
 public class RiskCacheManager {
     private static final Logger log = LoggerFactory.getLogger(RiskCacheManager.class);
-    private static final String RULE_CACHE_KEY = "risk:rules:enabled";
-    private static final String DAILY_AMOUNT_KEY = "risk:daily:amount:";
-    private static final String FREQ_KEY = "risk:freq:";
     private static final String REQUEST_PROCESSING_KEY = "risk:req:processing:";
     private static final String REQUEST_RESULT_KEY = "risk:req:result:";
-    private static final long RULE_CACHE_TTL_SECONDS = 300L;
     private static final long REQUEST_RESULT_TTL_SECONDS = 600L;
-    private static final int SCALE = 2;
+    private static final byte[] ONE = "1".getBytes(StandardCharsets.UTF_8);
 
     private final StringRedisTemplate redisTemplate;
     private final ObjectMapper objectMapper = new ObjectMapper();
@@ -41,35 +37,6 @@ public class RiskCacheManager {
         this.redisTemplate = redisTemplate;
     }
 
-    /**
-     * 从 Redis 读取启用规则，缺失时通过 loader 查询数据库并缓存 5 分钟。
-     */
-    public List<RiskRule> loadEnabledRules(Supplier<List<RiskRule>> loader) {
-        try {
-            String cached = redisTemplate.opsForValue().get(RULE_CACHE_KEY);
-            if (cached != null && cached.length() > 0) {
-                return objectMapper.readValue(cached, new TypeReference<List<RiskRule>>() {
-                });
-            }
-        } catch (Exception ex) {
-            log.warn("读取规则缓存失败，降级为数据库查询", ex);
-        }
-        List<RiskRule> rules = loader.get();
-        try {
-            redisTemplate.opsForValue().set(RULE_CACHE_KEY, objectMapper.writeValueAsString(rules), RULE_CACHE_TTL_SECONDS, TimeUnit.SECONDS);
-        } catch (Exception ex) {
-            log.warn("规则写入缓存失败，不影响主流程", ex);
-        }
-        return rules == null ? Collections.<RiskRule>emptyList() : rules;
-    }
-
-    /**
-     * 清空规则缓存，便于运营手工刷新。
-     */
-    public void evictRules() {
-        redisTemplate.delete(RULE_CACHE_KEY);
-    }
-
     public boolean tryMarkProcessing(String requestId) {
         if (requestId == null || requestId.trim().isEmpty()) {
             return true;
@@ -107,59 +74,75 @@ public class RiskCacheManager {
     }
 
     /**
-     * 累加当日交易金额（以分为单位），返回累加后的值；Redis 失效时返回 null。
+     * 批量读取已缓存的决策，一次 MGET；读取失败时视为全部未命中。
      */
-    public Long incrementDailyAmount(String customerId, BigDecimal amount) {
-        if (customerId == null || amount == null) {
-            return null;
+    public Map<String, RiskDecision> getCachedDecisions(List<String> requestIds) {
+        Map<String, RiskDecision> decisions = new HashMap<>();
+        if (requestIds.isEmpty()) {
+            return decisions;
+        }
+        List<String> keys = new ArrayList<>(requestIds.size());
+        for (String requestId : requestIds) {
+            keys.add(REQUEST_RESULT_KEY + requestId);
         }
         try {
-            String key = DAILY_AMOUNT_KEY + customerId + ":" + currentDate();
-            long delta = amount.movePointRight(SCALE).longValue();
-            Long total = redisTemplate.opsForValue().increment(key, delta);
-            if (total != null) {
-                redisTemplate.expire(key, secondsToEndOfDay(), TimeUnit.SECONDS);
+            List<String> cached = redisTemplate.opsForValue().multiGet(keys);
+            for (int i = 0; cached != null && i < requestIds.size(); i++) {
+                if (cached.get(i) != null) {
+                    decisions.put(requestIds.get(i), objectMapper.readValue(cached.get(i), RiskDecision.class));
+                }
             }
-            return total;
         } catch (Exception ex) {
-            log.warn("日累计计数写入 Redis 失败，customer={}", customerId, ex);
-            return null;
+            log.warn("批量读取风控决策缓存失败 size={}", requestIds.size(), ex);
         }
+        return decisions;
     }
 
     /**
-     * 高频交易计数，按分钟粒度累加，返回当前分钟内的次数。
+     * 批量标记处理中，一次管道往返，返回标记成功的请求ID。
      */
-    public Long incrementFrequency(String customerId) {
-        if (customerId == null) {
-            return null;
+    public Set<String> tryMarkProcessingAll(List<String> requestIds) {
+        Set<String> marked = new HashSet<>();
+        if (requestIds.isEmpty()) {
+            return marked;
         }
-        try {
-            String key = FREQ_KEY + customerId + ":" + currentMinute();
-            Long count = redisTemplate.opsForValue().increment(key, 1L);
-            if (count != null) {
-                redisTemplate.expire(key, 3600, TimeUnit.SECONDS);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String requestId : requestIds) {
+                connection.stringCommands().set((REQUEST_PROCESSING_KEY + requestId).getBytes(StandardCharsets.UTF_8),
+                        ONE, Expiration.seconds(REQUEST_RESULT_TTL_SECONDS), RedisStringCommands.SetOption.SET_IF_ABSENT);
             }
-            return count;
-        } catch (Exception ex) {
-            log.warn("频次计数写入 Redis 失败，customer={}", customerId, ex);
             return null;
+        });
+        for (int i = 0; i < requestIds.size(); i++) {
+            if (Boolean.TRUE.equals(results.get(i))) {
+                marked.add(requestIds.get(i));
+            }
         }
+        return marked;
     }
 
-    private String currentDate() {
-        LocalDateTime now = LocalDateTime.now();
-        return String.format("%04d%02d%02d", now.getYear(), now.getMonthValue(), now.getDayOfMonth());
-    }
-
-    private String currentMinute() {
-        LocalDateTime now = LocalDateTime.now();
-        return String.format("%04d%02d%02d%02d%02d", now.getYear(), now.getMonthValue(), now.getDayOfMonth(), now.getHour(), now.getMinute());
-    }
-
-    private long secondsToEndOfDay() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime end = LocalDateTime.of(now.toLocalDate(), LocalTime.MAX);
-        return Duration.between(now, end).getSeconds();
+    /**
+     * 批量缓存决策，一次管道往返。
+     */
+    public void cacheDecisions(Map<String, RiskDecision> decisions) {
+        if (decisions.isEmpty()) {
+            return;
+        }
+        try {
+            Map<byte[], byte[]> values = new LinkedHashMap<>();
+            for (Map.Entry<String, RiskDecision> entry : decisions.entrySet()) {
+                values.put((REQUEST_RESULT_KEY + entry.getKey()).getBytes(StandardCharsets.UTF_8),
+                        objectMapper.writeValueAsBytes(entry.getValue()));
+            }
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map.Entry<byte[], byte[]> entry : values.entrySet()) {
+                    connection.stringCommands().set(entry.getKey(), entry.getValue(),
+                            Expiration.seconds(REQUEST_RESULT_TTL_SECONDS), RedisStringCommands.SetOption.UPSERT);
+                }
+                return null;
+            });
+        } catch (Exception ex) {
+            log.warn("批量写入风控决策缓存失败 size={}", decisions.size(), ex);
+        }
     }
 }
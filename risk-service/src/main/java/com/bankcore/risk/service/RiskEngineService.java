@@ -1,47 +1,86 @@
 package com.bankcore.risk.service;
 
+import com.bankcore.common.error.BusinessException;
+import com.bankcore.common.error.ErrorCode;
 import com.bankcore.risk.api.RiskController;
 import com.bankcore.risk.model.RiskDecision;
 import com.bankcore.risk.model.RiskDecisionLog;
 import com.bankcore.risk.model.RiskDecisionResult;
-import com.bankcore.risk.model.RiskRule;
-import com.bankcore.risk.repository.RiskDecisionLogRepository;
-import com.bankcore.risk.repository.RiskRuleRepository;
-import java.util.function.Supplier;
+import com.bankcore.risk.service.audit.RiskDecisionLogWriter;
+import com.bankcore.risk.service.rule.CompiledRiskRule;
+import com.bankcore.risk.service.rule.RiskRulePlan;
+import com.bankcore.risk.service.rule.RiskRuleRegistry;
+import com.bankcore.risk.service.rule.RiskRuleType;
+import com.bankcore.risk.service.velocity.VelocityCounterStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 
 /**
- * 风控引擎：加载启用的规则，依次校验黑名单、单笔限额、日累计限额，并记录审计日志。
+ * 风控引擎：按内存中已编译的规则计划依次校验黑名单、单笔限额、日累计限额与高频，首条命中即返回，并记录审计日志。
+ * 各规则类型的检查逻辑登记在 EnumMap 中，评估时不再加载或解析规则。
  */
 @Service
 public class RiskEngineService {
-    private static final String RULE_LIMIT_PER_TXN = "LIMIT_PER_TXN";
-    private static final String RULE_LIMIT_DAILY = "LIMIT_DAILY";
-    private static final String RULE_BLACKLIST = "BLACKLIST";
-    private static final String RULE_HIGH_FREQ = "HIGH_FREQ";
     private static final Logger log = LoggerFactory.getLogger(RiskEngineService.class);
 
-    private final RiskRuleRepository riskRuleRepository;
-    private final RiskDecisionLogRepository decisionLogRepository;
+    private final Map<RiskRuleType, RuleCheck> checks = new EnumMap<>(RiskRuleType.class);
+    private final RiskRuleRegistry ruleRegistry;
+    private final RiskDecisionLogWriter decisionLogWriter;
     private final RiskCacheManager riskCacheManager;
+    private final VelocityCounterStore velocityCounters;
+    private final Validator validator;
+    private final int maxBatchSize;
 
     /**
-     * 构造注入规则仓储与决策日志仓储。
+     * 构造注入规则计划、决策日志写入与速度计数，并按规则类型登记检查逻辑。
      */
-    public RiskEngineService(RiskRuleRepository riskRuleRepository,
-                             RiskDecisionLogRepository decisionLogRepository,
-                             RiskCacheManager riskCacheManager) {
-        this.riskRuleRepository = riskRuleRepository;
-        this.decisionLogRepository = decisionLogRepository;
+    public RiskEngineService(RiskRuleRegistry ruleRegistry,
+                             RiskDecisionLogWriter decisionLogWriter,
+                             RiskCacheManager riskCacheManager,
+                             VelocityCounterStore velocityCounters,
+                             Validator validator,
+                             @Value("${risk.batch.max-size:500}") int maxBatchSize) {
+        this.ruleRegistry = ruleRegistry;
+        this.decisionLogWriter = decisionLogWriter;
         this.riskCacheManager = riskCacheManager;
+        this.velocityCounters = velocityCounters;
+        this.validator = validator;
+        this.maxBatchSize = maxBatchSize;
+        checks.put(RiskRuleType.BLACKLIST, (rule, request) ->
+                rule.blacklists(request.getCustomerId(), request.getPayerAccount())
+                        ? "Customer or account on blacklist" : null);
+        checks.put(RiskRuleType.LIMIT_PER_TXN, (rule, request) ->
+                request.getAmount() != null && request.getAmount().compareTo(rule.getThreshold()) > 0
+                        ? "Amount exceeds per-transaction threshold " + rule.getThreshold() : null);
+        checks.put(RiskRuleType.LIMIT_DAILY, (rule, request) ->
+                violatesDailyLimit(request.getCustomerId(), request.getAmount(), rule.getThreshold())
+                        ? "Daily cumulative limit exceeded for customer " + request.getCustomerId() : null);
+        checks.put(RiskRuleType.HIGH_FREQ, (rule, request) ->
+                violatesFrequency(request.getCustomerId(), rule.getThreshold().intValue())
+                        ? "High frequency transactions detected for customer " + request.getCustomerId() : null);
+        for (RiskRuleType type : RiskRuleType.values()) {
+            if (!checks.containsKey(type)) {
+                throw new IllegalStateException("No risk check registered for " + type);
+            }
+        }
     }
 
     /**
@@ -54,125 +93,190 @@ public class RiskEngineService {
             return cached;
         }
         if (!riskCacheManager.tryMarkProcessing(request.getRequestId())) {
-            RiskDecision pending = new RiskDecision();
-            pending.setDecisionId(UUID.randomUUID().toString());
-            pending.setResult(RiskDecisionResult.REVIEW);
-            pending.setReason("Duplicate risk evaluation in progress");
-            return pending;
+            return inProgress();
         }
-        // 通过 Redis 做规则缓存，减少每次支付都访问数据库的开销，5 分钟刷新一次
-        List<RiskRule> rules = riskCacheManager.loadEnabledRules(() -> riskRuleRepository.findEnabled());
-        log.info("evaluating risk for customer={}, account={}, amount={}", 
+        log.info("evaluating risk for customer={}, account={}, amount={}",
                 request.getCustomerId(), request.getPayerAccount(), request.getAmount());
-        RiskDecision decision = new RiskDecision();
-        decision.setDecisionId(UUID.randomUUID().toString());
-        decision.setResult(RiskDecisionResult.APPROVED);
-        decision.setReason("Passed at " + Instant.now());
-        decision.setLevel("LOW");
+        RiskDecision decision = decide(ruleRegistry.current(), request);
+        decisionLogWriter.submit(toAudit(decision, request));
+        riskCacheManager.cacheDecision(request.getRequestId(), decision);
+        return decision;
+    }
+
+    /**
+     * 批量评估：整批共用一份规则计划；决策缓存查询、处理中标记与决策缓存写入各一次 Redis 往返，
+     * 审计日志一条多行 INSERT 写入。同一客户的请求集中按提交顺序评估，后一笔看到前一笔累加后的速度计数。
+     * 批内重复的请求ID复用第一笔的决策，结果按请求顺序返回。
+     * 逐笔做 Bean Validation，非法条目只对该笔返回 REJECTED，不计入速度计数也不缓存决策，同批其他条目照常评估。
+     */
+    public List<RiskDecision> evaluateAll(List<RiskController.RiskRequest> requests) {
+        if (requests.size() > maxBatchSize) {
+            throw new BusinessException(ErrorCode.INVALID_REQUEST, "Batch exceeds " + maxBatchSize + " requests");
+        }
+        RiskDecision[] decisions = new RiskDecision[requests.size()];
+        Set<String> distinctIds = new LinkedHashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            RiskController.RiskRequest request = requests.get(i);
+            String violation = violation(request);
+            if (violation != null) {
+                decisions[i] = invalid(violation);
+            } else if (hasRequestId(request)) {
+                distinctIds.add(request.getRequestId());
+            }
+        }
+        List<String> requestIds = new ArrayList<>(distinctIds);
+        Map<String, RiskDecision> cached = riskCacheManager.getCachedDecisions(requestIds);
+        List<String> uncached = new ArrayList<>(requestIds.size());
+        for (String requestId : requestIds) {
+            if (!cached.containsKey(requestId)) {
+                uncached.add(requestId);
+            }
+        }
+        Set<String> marked = riskCacheManager.tryMarkProcessingAll(uncached);
 
-        if (rules != null) {
-            for (RiskRule rule : rules) {
-                String type = rule.getType() == null ? "" : rule.getType().toUpperCase(Locale.ENGLISH);
-                if (RULE_BLACKLIST.equals(type) && isBlacklisted(rule, request)) {
-                    populateDecision(decision, rule, RiskDecisionResult.REJECTED,
-                            "Customer or account on blacklist");
-                    break;
+        Map<String, List<Integer>> byCustomer = new LinkedHashMap<>();
+        Map<String, Integer> firstIndex = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            RiskController.RiskRequest request = requests.get(i);
+            if (decisions[i] != null) {
+                continue;
+            }
+            if (hasRequestId(request)) {
+                String requestId = request.getRequestId();
+                if (cached.containsKey(requestId)) {
+                    decisions[i] = cached.get(requestId);
+                    continue;
                 }
-                if (RULE_LIMIT_PER_TXN.equals(type)
-                        && request.getAmount() != null
-                        && rule.getThreshold() != null
-                        && request.getAmount().compareTo(rule.getThreshold()) > 0) {
-                    populateDecision(decision, rule, RiskDecisionResult.REVIEW,
-                            "Amount exceeds per-transaction threshold " + rule.getThreshold());
-                    break;
+                if (firstIndex.putIfAbsent(requestId, i) != null) {
+                    continue;
                 }
-                if (RULE_LIMIT_DAILY.equals(type)
-                        && rule.getThreshold() != null
-                        && violatesDailyLimit(request.getCustomerId(), request.getAmount(), rule.getThreshold())) {
-                    populateDecision(decision, rule, RiskDecisionResult.REJECTED,
-                            "Daily cumulative limit exceeded for customer " + request.getCustomerId());
-                    break;
+                if (!marked.contains(requestId)) {
+                    decisions[i] = inProgress();
+                    continue;
                 }
-                if (RULE_HIGH_FREQ.equals(type)
-                        && rule.getThreshold() != null
-                        && violatesFrequency(request.getCustomerId(), rule.getThreshold().intValue())) {
-                    populateDecision(decision, rule, RiskDecisionResult.REJECTED,
-                            "High frequency transactions detected for customer " + request.getCustomerId());
-                    break;
+            }
+            byCustomer.computeIfAbsent(request.getCustomerId(), id -> new ArrayList<>()).add(i);
+        }
+
+        RiskRulePlan plan = ruleRegistry.current();
+        List<RiskDecisionLog> audits = new ArrayList<>();
+        Map<String, RiskDecision> evaluated = new HashMap<>();
+        for (List<Integer> group : byCustomer.values()) {
+            for (int index : group) {
+                RiskController.RiskRequest request = requests.get(index);
+                RiskDecision decision = decide(plan, request);
+                decisions[index] = decision;
+                audits.add(toAudit(decision, request));
+                if (hasRequestId(request)) {
+                    evaluated.put(request.getRequestId(), decision);
                 }
             }
         }
+        for (int i = 0; i < decisions.length; i++) {
+            if (decisions[i] == null) {
+                decisions[i] = decisions[firstIndex.get(requests.get(i).getRequestId())];
+            }
+        }
+        decisionLogWriter.submitAll(audits);
+        riskCacheManager.cacheDecisions(evaluated);
+        log.info("evaluated risk batch of {}: {} evaluated, {} cached", requests.size(), audits.size(), cached.size());
+        return new ArrayList<>(Arrays.asList(decisions));
+    }
 
-        saveAudit(decision, request);
-        riskCacheManager.cacheDecision(request.getRequestId(), decision);
+    /**
+     * 按规则计划顺序检查，首条命中即返回，默认通过。
+     */
+    private RiskDecision decide(RiskRulePlan plan, RiskController.RiskRequest request) {
+        RiskDecision decision = new RiskDecision();
+        decision.setDecisionId(UUID.randomUUID().toString());
+        decision.setResult(RiskDecisionResult.APPROVED);
+        decision.setReason("Passed at " + Instant.now());
+        decision.setLevel("LOW");
+        for (CompiledRiskRule rule : plan.getRules()) {
+            String reason = checks.get(rule.getType()).check(rule, request);
+            if (reason != null) {
+                populateDecision(decision, rule, reason);
+                break;
+            }
+        }
         return decision;
     }
 
     /**
-     * 校验客户或账户是否命中黑名单表达式。
+     * 返回条目的第一条校验错误，合法时返回 null。
      */
-    private boolean isBlacklisted(RiskRule rule, RiskController.RiskRequest request) {
-        if (rule.getExpression() == null) {
-            return false;
+    private String violation(RiskController.RiskRequest request) {
+        if (request == null) {
+            return "request is required";
         }
-        String[] tokens = rule.getExpression().split(",");
-        for (int i = 0; i < tokens.length; i++) {
-            String token = tokens[i].trim();
-            if (token.length() == 0) {
-                continue;
-            }
-            if (token.equalsIgnoreCase(request.getCustomerId()) || token.equalsIgnoreCase(request.getPayerAccount())) {
-                return true;
-            }
+        Set<ConstraintViolation<RiskController.RiskRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
         }
-        return false;
+        ConstraintViolation<RiskController.RiskRequest> first = violations.iterator().next();
+        return first.getPropertyPath() + " " + first.getMessage();
+    }
+
+    private RiskDecision invalid(String violation) {
+        RiskDecision rejected = new RiskDecision();
+        rejected.setDecisionId(UUID.randomUUID().toString());
+        rejected.setResult(RiskDecisionResult.REJECTED);
+        rejected.setReason("Invalid risk request: " + violation);
+        rejected.setLevel("HIGH");
+        rejected.setBlocked(true);
+        return rejected;
+    }
+
+    private RiskDecision inProgress() {
+        RiskDecision pending = new RiskDecision();
+        pending.setDecisionId(UUID.randomUUID().toString());
+        pending.setResult(RiskDecisionResult.REVIEW);
+        pending.setReason("Duplicate risk evaluation in progress");
+        return pending;
+    }
+
+    private static boolean hasRequestId(RiskController.RiskRequest request) {
+        return request.getRequestId() != null && !request.getRequestId().trim().isEmpty();
     }
 
     /**
-     * 计算当日累加金额是否超限。
+     * 计算当日累加金额是否超限，累计取本地速度计数，不再同步访问 Redis。
      */
     private boolean violatesDailyLimit(String customerId, BigDecimal amount, BigDecimal threshold) {
         if (customerId == null || amount == null || threshold == null) {
             return false;
         }
-        // 优先使用 Redis 计数器累加日额度，避免高并发下聚合查询数据库
-        Long cachedTotal = riskCacheManager.incrementDailyAmount(customerId, amount);
-        if (cachedTotal != null) {
-            BigDecimal cachedAmount = new BigDecimal(cachedTotal).movePointLeft(2);
-            return cachedAmount.compareTo(threshold) > 0;
-        }
-        BigDecimal usedToday = decisionLogRepository.sumToday(customerId);
-        return usedToday.add(amount).compareTo(threshold) > 0;
+        long total = velocityCounters.incrementDailyAmount(customerId, amount);
+        return BigDecimal.valueOf(total, 2).compareTo(threshold) > 0;
     }
 
     /**
-     * 高频检测：使用 Redis 分钟计数，若计数异常则默认放行并依赖后续规则兜底。
+     * 高频检测：最近一个滑动窗口内的交易笔数超过阈值直接拒绝。
      */
     private boolean violatesFrequency(String customerId, int threshold) {
-        // 高频规则：Redis 按分钟累加，超过阈值直接拒绝，计数异常时返回 false 由后续规则兜底
-        Long count = riskCacheManager.incrementFrequency(customerId);
-        if (count != null) {
-            return count.intValue() > threshold;
+        if (customerId == null) {
+            return false;
         }
-        return false;
+        return velocityCounters.incrementFrequency(customerId) > threshold;
     }
 
     /**
      * 填充决策对象的结果与原因，用于外部返回与日志。
      */
-    private void populateDecision(RiskDecision decision, RiskRule rule, RiskDecisionResult result, String reason) {
+    private void populateDecision(RiskDecision decision, CompiledRiskRule rule, String reason) {
+        RiskDecisionResult result = rule.getType().getResult();
         decision.setResult(result);
         decision.setReason(reason);
         decision.setRuleId(rule.getId());
-        decision.setRuleType(rule.getType());
+        decision.setRuleType(rule.getType().name());
         decision.setLevel(result == RiskDecisionResult.REJECTED ? "HIGH" : "MEDIUM");
         decision.setBlocked(result == RiskDecisionResult.REJECTED);
     }
 
     /**
-     * 记录风控审计日志，支持日累计查询。
+     * 生成风控审计日志，支持日累计查询；异步写库，创建时间取决策时刻。
      */
-    private void saveAudit(RiskDecision decision, RiskController.RiskRequest request) {
+    private RiskDecisionLog toAudit(RiskDecision decision, RiskController.RiskRequest request) {
         RiskDecisionLog log = new RiskDecisionLog();
         log.setCustomerId(request.getCustomerId());
         log.setPayerAccount(request.getPayerAccount());
@@ -180,6 +284,15 @@ public class RiskEngineService {
         log.setResult(decision.getResult().name());
         log.setRuleId(decision.getRuleId());
         log.setRuleType(decision.getRuleType());
-        decisionLogRepository.save(log);
+        log.setCreatedAt(LocalDateTime.now());
+        return log;
+    }
+
+    /**
+     * 单类规则的检查逻辑，命中返回拒绝/复核原因，未命中返回 null。
+     */
+    @FunctionalInterface
+    private interface RuleCheck {
+        String check(CompiledRiskRule rule, RiskController.RiskRequest request);
     }
 }
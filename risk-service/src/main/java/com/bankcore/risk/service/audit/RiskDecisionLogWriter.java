@@ -0,0 +1,460 @@
+package com.bankcore.risk.service.audit;
+
+import com.bankcore.risk.model.RiskDecisionLog;
+import com.bankcore.risk.repository.RiskDecisionLogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+/**
+ * 风控审计日志异步写入：评估线程只把日志放入有界队列，由单个后台线程每攒满 batch-size 条或每隔 flush-interval-ms
+ * 以多行 INSERT 写库，数据库延迟不再计入风控评估耗时。
+ * 队列已满或写库失败时，日志以 JSON 行追加到本地溢出文件并落盘；写库恢复后与进程重启时逐行重放溢出文件，
+ * 重放进度以行号记在旁边的 .offset 文件中，文件全部重放后删除。重放失败后按 flush-interval-ms 起步指数退避，
+ * 最长 replay-max-backoff-ms，实时写库成功即视为数据库已恢复，立即重放。
+ * 无法解析的行与违反约束的行移入隔离文件后继续重放，单条坏数据不会卡住其后所有溢出文件。
+ * 指标：risk.audit.queue.depth 队列积压，risk.audit.flush 每批写库耗时，risk.audit.spilled 写入溢出文件的条数，
+ * risk.audit.quarantined 移入隔离文件的条数。
+ */
+@Component
+public class RiskDecisionLogWriter {
+    private static final Logger log = LoggerFactory.getLogger(RiskDecisionLogWriter.class);
+    private static final String SPILL_FILE = "risk-decision-log.spill";
+    private static final String REPLAY_SUFFIX = ".replay";
+    private static final String OFFSET_SUFFIX = ".offset";
+    private static final String QUARANTINE_FILE = "risk-decision-log.quarantine";
+
+    private final RiskDecisionLogRepository repository;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<RiskDecisionLog> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long maxReplayBackoffMillis;
+    private final Path spillDir;
+    private final Path spillFile;
+    private final Path quarantineFile;
+    private final Object spillLock = new Object();
+    private final Timer flushTimer;
+    private final Counter spilledCounter;
+    private final Counter quarantinedCounter;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean spillPending;
+    private long replayBackoffMillis;
+    private long nextReplayAt;
+
+    public RiskDecisionLogWriter(RiskDecisionLogRepository repository,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${risk.audit.buffer-capacity:65536}") int bufferCapacity,
+                                 @Value("${risk.audit.batch-size:500}") int batchSize,
+                                 @Value("${risk.audit.flush-interval-ms:200}") long flushIntervalMillis,
+                                 @Value("${risk.audit.replay-max-backoff-ms:30000}") long maxReplayBackoffMillis,
+                                 @Value("${risk.audit.spill-dir:data/risk-audit}") String spillDir) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, bufferCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(1L, flushIntervalMillis);
+        this.maxReplayBackoffMillis = Math.max(this.flushIntervalMillis, maxReplayBackoffMillis);
+        this.spillDir = Paths.get(spillDir);
+        this.spillFile = this.spillDir.resolve(SPILL_FILE);
+        this.quarantineFile = this.spillDir.resolve(QUARANTINE_FILE);
+        Gauge.builder("risk.audit.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        this.flushTimer = Timer.builder("risk.audit.flush").publishPercentiles(0.5, 0.99).register(meterRegistry);
+        this.spilledCounter = Counter.builder("risk.audit.spilled").register(meterRegistry);
+        this.quarantinedCounter = Counter.builder("risk.audit.quarantined").register(meterRegistry);
+        this.writer = new Thread(this::writeLoop, "risk-audit-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * 先重放上次进程遗留的溢出文件，再启动写库线程。
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(spillDir);
+        spillPending = true;
+        scheduleNextReplay(replaySpill());
+        writer.start();
+    }
+
+    /**
+     * 提交一条审计日志，不等待写库；队列已满时直接写入溢出文件。
+     */
+    public void submit(RiskDecisionLog decisionLog) {
+        if (!running || !queue.offer(decisionLog)) {
+            spill(Collections.singletonList(decisionLog));
+        }
+    }
+
+    public void submitAll(List<RiskDecisionLog> decisionLogs) {
+        List<RiskDecisionLog> overflow = null;
+        for (RiskDecisionLog decisionLog : decisionLogs) {
+            if (!running || !queue.offer(decisionLog)) {
+                if (overflow == null) {
+                    overflow = new ArrayList<>();
+                }
+                overflow.add(decisionLog);
+            }
+        }
+        if (overflow != null) {
+            spill(overflow);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        List<RiskDecisionLog> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+        }
+    }
+
+    private void writeLoop() {
+        List<RiskDecisionLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                RiskDecisionLog first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    long deadline = System.currentTimeMillis() + flushIntervalMillis;
+                    while (batch.size() < batchSize) {
+                        queue.drainTo(batch, batchSize - batch.size());
+                        long wait = deadline - System.currentTimeMillis();
+                        if (batch.size() >= batchSize || wait <= 0) {
+                            break;
+                        }
+                        RiskDecisionLog next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    if (flush(batch)) {
+                        replayBackoffMillis = 0L;
+                        nextReplayAt = 0L;
+                    } else {
+                        spill(batch);
+                    }
+                    batch.clear();
+                }
+                if (spillPending && System.currentTimeMillis() >= nextReplayAt) {
+                    scheduleNextReplay(replaySpill());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException ex) {
+                log.error("risk audit writer failed on batch of {}, spilling", batch.size(), ex);
+                if (!batch.isEmpty()) {
+                    spill(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            spill(batch);
+        }
+    }
+
+    /**
+     * 重放成功后清零退避；失败时从 flush-interval-ms 起逐次翻倍，数据库长时间不可用时不会每个刷写间隔都重读溢出文件。
+     */
+    private void scheduleNextReplay(boolean replayed) {
+        if (replayed) {
+            replayBackoffMillis = 0L;
+            nextReplayAt = 0L;
+            return;
+        }
+        replayBackoffMillis = replayBackoffMillis == 0L
+                ? flushIntervalMillis : Math.min(maxReplayBackoffMillis, replayBackoffMillis * 2);
+        nextReplayAt = System.currentTimeMillis() + replayBackoffMillis;
+        log.debug("risk audit replay incomplete, next attempt in {} ms", replayBackoffMillis);
+    }
+
+    private boolean flush(List<RiskDecisionLog> batch) {
+        long start = System.nanoTime();
+        try {
+            repository.saveAll(batch);
+            return true;
+        } catch (DataAccessException ex) {
+            log.warn("risk audit flush of {} rows failed, spilling to {}", batch.size(), spillFile, ex);
+            return false;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 追加到溢出文件并强制落盘；写文件也失败时只能记录错误日志。
+     */
+    private void spill(List<RiskDecisionLog> decisionLogs) {
+        synchronized (spillLock) {
+            try (FileOutputStream out = new FileOutputStream(spillFile.toFile(), true);
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                for (RiskDecisionLog decisionLog : decisionLogs) {
+                    writer.write(objectMapper.writeValueAsString(decisionLog));
+                    writer.newLine();
+                }
+                writer.flush();
+                out.getChannel().force(false);
+                spillPending = true;
+                spilledCounter.increment(decisionLogs.size());
+            } catch (IOException ex) {
+                log.error("failed to spill {} risk audit rows to {}", decisionLogs.size(), spillFile, ex);
+            }
+        }
+    }
+
+    /**
+     * 把当前溢出文件转为待重放文件后逐个重放，返回是否全部重放完毕；写库失败时停在失败处，进度记在偏移文件中留待下次重放。
+     * 单个文件读写失败只跳过该文件，不影响其后的文件。
+     */
+    private boolean replaySpill() {
+        List<Path> files = new ArrayList<>();
+        try {
+            synchronized (spillLock) {
+                spillPending = false;
+                if (Files.exists(spillFile) && Files.size(spillFile) > 0) {
+                    Files.move(spillFile, spillDir.resolve(SPILL_FILE + "." + System.currentTimeMillis() + REPLAY_SUFFIX));
+                }
+            }
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(spillDir, SPILL_FILE + ".*" + REPLAY_SUFFIX)) {
+                stream.forEach(files::add);
+            }
+        } catch (IOException ex) {
+            spillPending = true;
+            log.warn("failed to list risk audit spill files in {}", spillDir, ex);
+            return false;
+        }
+        Collections.sort(files);
+        boolean complete = true;
+        for (Path file : files) {
+            try {
+                if (!replay(file)) {
+                    spillPending = true;
+                    return false;
+                }
+            } catch (IOException ex) {
+                spillPending = true;
+                complete = false;
+                log.warn("failed to replay risk audit spill file {}, skipping until next replay", file, ex);
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * 从偏移文件记录的行号之后逐行读取一个文件，按 batch-size 分块重放：无法解析的行直接隔离；
+     * 每块处理完后更新偏移文件，某块写库失败时偏移停在失败的行之前并返回 false，文件本身不改写。
+     * 按 UTF-8 宽松解码：非法字节被替换后该行解析失败而被隔离，不会让整个文件读取失败。
+     */
+    private boolean replay(Path file) throws IOException {
+        Path offsetFile = file.resolveSibling(file.getFileName() + OFFSET_SUFFIX);
+        long offset = readOffset(offsetFile);
+        long lineNumber = 0L;
+        int replayed = 0;
+        int isolated = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+            ReplayChunk chunk = new ReplayChunk();
+            String line;
+            while (true) {
+                line = reader.readLine();
+                if (line != null) {
+                    if (++lineNumber <= offset) {
+                        continue;
+                    }
+                    chunk.add(line, lineNumber, file);
+                    if (chunk.size() < batchSize) {
+                        continue;
+                    }
+                }
+                if (chunk.lastLine > 0) {
+                    boolean done = replayChunk(chunk, offsetFile);
+                    replayed += chunk.replayed;
+                    isolated += chunk.quarantined;
+                    if (!done) {
+                        log.warn("replayed {} risk audit rows from {}, stopped before line {}", replayed, file,
+                                readOffset(offsetFile) + 1);
+                        return false;
+                    }
+                    chunk = new ReplayChunk();
+                }
+                if (line == null) {
+                    break;
+                }
+            }
+        }
+        Files.delete(file);
+        Files.deleteIfExists(offsetFile);
+        log.info("replayed {} risk audit rows from {}, quarantined {}", replayed, file, isolated);
+        return true;
+    }
+
+    /**
+     * 写入一块并隔离已处理范围内的坏行，再把偏移推进到已处理的最后一行；返回该块是否全部处理完。
+     */
+    private boolean replayChunk(ReplayChunk chunk, Path offsetFile) throws IOException {
+        List<String> quarantined = new ArrayList<>();
+        int done = persist(chunk.rows, chunk.lines, quarantined);
+        boolean complete = done == chunk.rows.size();
+        long processed = complete ? chunk.lastLine : chunk.lineNumbers.get(done) - 1;
+        chunk.replayed = done - quarantined.size();
+        for (int i = 0; i < chunk.unparsable.size(); i++) {
+            if (chunk.unparsableLineNumbers.get(i) <= processed) {
+                quarantined.add(chunk.unparsable.get(i));
+            }
+        }
+        chunk.quarantined = quarantined.size();
+        quarantine(quarantined);
+        writeOffset(offsetFile, processed);
+        return complete;
+    }
+
+    /**
+     * 整块写库；违反约束时逐行重试，把出错的行隔离。返回按顺序处理完的行数（含隔离的行），
+     * 小于块大小表示数据库暂不可用，其后的行留待下次重放。
+     */
+    private int persist(List<RiskDecisionLog> batch, List<String> batchLines, List<String> quarantined) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        try {
+            repository.saveAll(batch);
+            return batch.size();
+        } catch (DataIntegrityViolationException ex) {
+            log.warn("risk audit replay of {} rows violated a constraint, retrying row by row", batch.size(), ex);
+        } catch (DataAccessException ex) {
+            log.warn("risk audit replay of {} rows failed, will retry", batch.size(), ex);
+            return 0;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                repository.save(batch.get(i));
+            } catch (DataIntegrityViolationException ex) {
+                log.warn("risk audit row violated a constraint, quarantining: {}", ex.getMessage());
+                quarantined.add(batchLines.get(i));
+            } catch (DataAccessException ex) {
+                log.warn("risk audit replay failed after {} of {} rows, will retry", i, batch.size(), ex);
+                return i;
+            }
+        }
+        return batch.size();
+    }
+
+    private static long readOffset(Path offsetFile) throws IOException {
+        if (!Files.exists(offsetFile)) {
+            return 0L;
+        }
+        String content = new String(Files.readAllBytes(offsetFile), StandardCharsets.UTF_8).trim();
+        try {
+            return content.isEmpty() ? 0L : Long.parseLong(content);
+        } catch (NumberFormatException ex) {
+            throw new IOException("corrupt replay offset in " + offsetFile, ex);
+        }
+    }
+
+    /**
+     * 先写临时文件并落盘再原子替换，进程在写偏移时崩溃也不会留下半截的偏移。
+     */
+    private static void writeOffset(Path offsetFile, long lineNumber) throws IOException {
+        Path temp = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            out.write(String.valueOf(lineNumber).getBytes(StandardCharsets.UTF_8));
+            out.getChannel().force(false);
+        }
+        Files.move(temp, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 把坏行追加到隔离文件并落盘，供人工排查后修正补录。
+     */
+    private void quarantine(List<String> lines) throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(quarantineFile.toFile(), true);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+            writer.flush();
+            out.getChannel().force(false);
+        }
+        quarantinedCounter.increment(lines.size());
+        log.error("quarantined {} risk audit rows to {}", lines.size(), quarantineFile);
+        lines.clear();
+    }
+
+    /**
+     * 重放中的一块：可解析的行与无法解析的行分别带行号记录，写库失败时据此确定偏移与应隔离的范围。
+     */
+    private final class ReplayChunk {
+        private final List<RiskDecisionLog> rows = new ArrayList<>(batchSize);
+        private final List<String> lines = new ArrayList<>(batchSize);
+        private final List<Long> lineNumbers = new ArrayList<>(batchSize);
+        private final List<String> unparsable = new ArrayList<>();
+        private final List<Long> unparsableLineNumbers = new ArrayList<>();
+        private long lastLine;
+        private int replayed;
+        private int quarantined;
+
+        private void add(String line, long lineNumber, Path file) {
+            lastLine = lineNumber;
+            if (line.trim().isEmpty()) {
+                return;
+            }
+            try {
+                rows.add(objectMapper.readValue(line, RiskDecisionLog.class));
+                lines.add(line);
+                lineNumbers.add(lineNumber);
+            } catch (IOException ex) {
+                log.warn("unparsable risk audit row in {}, quarantining: {}", file, ex.getMessage());
+                unparsable.add(line);
+                unparsableLineNumbers.add(lineNumber);
+            }
+        }
+
+        private int size() {
+            return lines.size() + unparsable.size();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.bankcore.risk.service.rule;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 黑名单索引：规则表达式中逗号分隔的客户号/账户号在编译时统一转大写放入哈希集合，查询为 O(1)。
+ * 保留原始表达式，规则重新加载时表达式未变即复用已有索引，不再重复解析。不可变。
+ */
+public final class BlacklistIndex {
+    static final BlacklistIndex EMPTY = new BlacklistIndex(null, Collections.<String>emptySet(), 0L);
+
+    /** HashMap 节点（对象头、hash、key、value、next）按压缩指针估算的字节数 */
+    private static final int NODE_BYTES = 32;
+    /** 字符串对象头与字段、char[] 数组头的字节数（JDK 8） */
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    private final String expression;
+    private final Set<String> entries;
+    private final long estimatedBytes;
+
+    private BlacklistIndex(String expression, Set<String> entries, long estimatedBytes) {
+        this.expression = expression;
+        this.entries = entries;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    static BlacklistIndex parse(String expression) {
+        if (expression == null || expression.trim().isEmpty()) {
+            return EMPTY;
+        }
+        Set<String> entries = new HashSet<>();
+        long bytes = 0L;
+        for (String token : expression.split(",")) {
+            String entry = token.trim();
+            if (!entry.isEmpty() && entries.add(normalize(entry))) {
+                bytes += NODE_BYTES + align(STRING_OVERHEAD_BYTES + 2L * entry.length());
+            }
+        }
+        bytes += 4L * tableCapacity(entries.size());
+        return new BlacklistIndex(expression, Collections.unmodifiableSet(entries), bytes);
+    }
+
+    /**
+     * 表达式未变时复用当前索引，否则重新解析。
+     */
+    BlacklistIndex refresh(String newExpression) {
+        return Objects.equals(expression, newExpression) ? this : parse(newExpression);
+    }
+
+    public boolean contains(String customerId, String payerAccount) {
+        if (entries.isEmpty()) {
+            return false;
+        }
+        return (customerId != null && entries.contains(normalize(customerId)))
+                || (payerAccount != null && entries.contains(normalize(payerAccount)));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 索引占用堆内存的估算值（字节）。
+     */
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toUpperCase(Locale.ENGLISH);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7L) & ~7L;
+    }
+
+    private static int tableCapacity(int size) {
+        int capacity = 16;
+        while (capacity * 0.75 < size) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,43 @@
+package com.bankcore.risk.service.rule;
+
+import java.math.BigDecimal;
+
+/**
+ * 编译后的规则：类型已解析为枚举，阈值与黑名单索引在编译时一次性准备好，评估时不再做字符串处理。不可变。
+ */
+public final class CompiledRiskRule {
+    private final Long id;
+    private final RiskRuleType type;
+    private final BigDecimal threshold;
+    private final BlacklistIndex blacklist;
+
+    CompiledRiskRule(Long id, RiskRuleType type, BigDecimal threshold, BlacklistIndex blacklist) {
+        this.id = id;
+        this.type = type;
+        this.threshold = threshold;
+        this.blacklist = blacklist == null ? BlacklistIndex.EMPTY : blacklist;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public RiskRuleType getType() {
+        return type;
+    }
+
+    public BigDecimal getThreshold() {
+        return threshold;
+    }
+
+    public BlacklistIndex getBlacklist() {
+        return blacklist;
+    }
+
+    /**
+     * 客户号或付款账户是否命中本规则的黑名单。
+     */
+    public boolean blacklists(String customerId, String payerAccount) {
+        return blacklist.contains(customerId, payerAccount);
+    }
+}
@@ -0,0 +1,61 @@
+package com.bankcore.risk.service.rule;
+
+import com.bankcore.risk.model.RiskRule;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 规则评估计划：启用规则按 ID 顺序编译成不可变列表，评估时依次检查、首条命中即返回。
+ * 未知类型与缺少阈值的规则在编译时剔除，计划整体替换，评估线程读到的总是一份完整的快照。
+ */
+public final class RiskRulePlan {
+    public static final RiskRulePlan EMPTY = new RiskRulePlan(0L, Collections.<CompiledRiskRule>emptyList());
+
+    private final long version;
+    private final List<CompiledRiskRule> rules;
+
+    private RiskRulePlan(long version, List<CompiledRiskRule> rules) {
+        this.version = version;
+        this.rules = rules;
+    }
+
+    /**
+     * 编译规则列表，调用方需保证列表已按优先顺序排列；同一黑名单规则的表达式与上一版相同时沿用上一版的索引。
+     */
+    public static RiskRulePlan compile(List<RiskRule> rules, long version, RiskRulePlan previous) {
+        if (rules == null || rules.isEmpty()) {
+            return new RiskRulePlan(version, Collections.<CompiledRiskRule>emptyList());
+        }
+        Map<Long, BlacklistIndex> previousBlacklists = new HashMap<>();
+        for (CompiledRiskRule rule : previous.rules) {
+            if (rule.getType() == RiskRuleType.BLACKLIST && rule.getId() != null) {
+                previousBlacklists.put(rule.getId(), rule.getBlacklist());
+            }
+        }
+        List<CompiledRiskRule> compiled = new ArrayList<>(rules.size());
+        for (RiskRule rule : rules) {
+            RiskRuleType type = RiskRuleType.of(rule.getType());
+            if (type == null || (type != RiskRuleType.BLACKLIST && rule.getThreshold() == null)) {
+                continue;
+            }
+            BlacklistIndex blacklist = null;
+            if (type == RiskRuleType.BLACKLIST) {
+                BlacklistIndex existing = previousBlacklists.get(rule.getId());
+                blacklist = existing == null ? BlacklistIndex.parse(rule.getExpression()) : existing.refresh(rule.getExpression());
+            }
+            compiled.add(new CompiledRiskRule(rule.getId(), type, rule.getThreshold(), blacklist));
+        }
+        return new RiskRulePlan(version, Collections.unmodifiableList(compiled));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<CompiledRiskRule> getRules() {
+        return rules;
+    }
+}
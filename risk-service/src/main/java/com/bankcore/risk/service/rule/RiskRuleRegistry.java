@@ -0,0 +1,104 @@
+package com.bankcore.risk.service.rule;
+
+import com.bankcore.risk.model.RiskRule;
+import com.bankcore.risk.repository.RiskRuleRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 持有当前规则评估计划：启动时从数据库加载并编译，规则变更通过 Redis 频道通知各节点重新加载，
+ * 另按固定间隔兜底刷新以防通知丢失。加载与编译只发生在启动、通知与定时线程上，评估请求只读取当前计划的引用。
+ * 各黑名单规则的条目数与估算内存以 risk.blacklist.entries / risk.blacklist.bytes（tag rule）上报。
+ */
+@Component
+public class RiskRuleRegistry {
+    private static final Logger log = LoggerFactory.getLogger(RiskRuleRegistry.class);
+
+    private final RiskRuleRepository ruleRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final MultiGauge blacklistEntries;
+    private final MultiGauge blacklistBytes;
+    private volatile RiskRulePlan plan = RiskRulePlan.EMPTY;
+
+    public RiskRuleRegistry(RiskRuleRepository ruleRepository,
+                            StringRedisTemplate redisTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${risk.rules.channel:risk:rules:changed}") String channel) {
+        this.ruleRepository = ruleRepository;
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+        this.blacklistEntries = MultiGauge.builder("risk.blacklist.entries").register(meterRegistry);
+        this.blacklistBytes = MultiGauge.builder("risk.blacklist.bytes").baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * 启动时加载失败直接抛出，避免以空规则放行所有交易。
+     */
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    public RiskRulePlan current() {
+        return plan;
+    }
+
+    public String channel() {
+        return channel;
+    }
+
+    /**
+     * 从数据库重新加载启用规则并整体替换计划。
+     */
+    public synchronized void reload() {
+        List<RiskRule> rules = ruleRepository.findEnabled();
+        RiskRulePlan next = RiskRulePlan.compile(rules, plan.getVersion() + 1, plan);
+        plan = next;
+        List<MultiGauge.Row<?>> entryRows = new ArrayList<>();
+        List<MultiGauge.Row<?>> byteRows = new ArrayList<>();
+        for (CompiledRiskRule rule : next.getRules()) {
+            if (rule.getType() == RiskRuleType.BLACKLIST) {
+                Tags tags = Tags.of("rule", String.valueOf(rule.getId()));
+                entryRows.add(MultiGauge.Row.of(tags, rule.getBlacklist().size()));
+                byteRows.add(MultiGauge.Row.of(tags, rule.getBlacklist().estimatedBytes()));
+                log.info("blacklist rule {} indexed {} entries, ~{} bytes", rule.getId(), rule.getBlacklist().size(),
+                        rule.getBlacklist().estimatedBytes());
+            }
+        }
+        blacklistEntries.register(entryRows, true);
+        blacklistBytes.register(byteRows, true);
+        log.info("risk rule plan v{} compiled, {} of {} enabled rules active", next.getVersion(), next.getRules().size(),
+                rules == null ? 0 : rules.size());
+    }
+
+    /**
+     * 收到变更通知或定时兜底时重新加载，失败时保留当前计划。
+     */
+    @Scheduled(fixedDelayString = "${risk.rules.refresh-interval-ms:300000}",
+            initialDelayString = "${risk.rules.refresh-interval-ms:300000}")
+    public void refresh() {
+        try {
+            reload();
+        } catch (RuntimeException ex) {
+            log.warn("risk rule reload failed, keeping plan v{}", plan.getVersion(), ex);
+        }
+    }
+
+    /**
+     * 通知所有节点（包括本节点）重新加载规则，运营修改规则后调用。
+     */
+    public void publishChange() {
+        redisTemplate.convertAndSend(channel, String.valueOf(System.currentTimeMillis()));
+    }
+}
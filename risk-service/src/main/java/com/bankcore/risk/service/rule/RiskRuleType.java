@@ -0,0 +1,42 @@
+package com.bankcore.risk.service.rule;
+
+import com.bankcore.risk.model.RiskDecisionResult;
+import java.util.Locale;
+
+/**
+ * 引擎支持的规则类型及命中后的决策结果。
+ */
+public enum RiskRuleType {
+    /** 客户或付款账户命中黑名单 */
+    BLACKLIST(RiskDecisionResult.REJECTED),
+    /** 单笔金额超过阈值 */
+    LIMIT_PER_TXN(RiskDecisionResult.REVIEW),
+    /** 客户当日累计金额超过阈值 */
+    LIMIT_DAILY(RiskDecisionResult.REJECTED),
+    /** 客户每分钟交易笔数超过阈值 */
+    HIGH_FREQ(RiskDecisionResult.REJECTED);
+
+    private final RiskDecisionResult result;
+
+    RiskRuleType(RiskDecisionResult result) {
+        this.result = result;
+    }
+
+    public RiskDecisionResult getResult() {
+        return result;
+    }
+
+    /**
+     * 按库中的类型字符串解析，忽略大小写；未知类型返回 null。
+     */
+    public static RiskRuleType of(String type) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return valueOf(type.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.bankcore.risk.service.velocity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 单个客户在一个窗口上的计数：时间桶组成的环形数组，桶过期时以 CAS 换成新桶，累加与读取都不加锁。
+ * 每个桶分别记录本节点的累计、已刷到 Redis 的部分以及最近一次从 Redis 得知的其他节点累计，
+ * 窗口内的总量为本节点累计加其他节点累计。
+ */
+final class VelocityCounter {
+    private static final int RETIRED = -1;
+
+    private final String customerId;
+    private final VelocityWindow window;
+    private final AtomicReferenceArray<Bucket> ring;
+    private final AtomicInteger users = new AtomicInteger();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicBoolean reconciled = new AtomicBoolean();
+    private volatile long lastTouched;
+    private volatile long refreshedAt;
+
+    VelocityCounter(String customerId, VelocityWindow window) {
+        this.customerId = customerId;
+        this.window = window;
+        this.ring = new AtomicReferenceArray<>(window.bucketsInWindow() + 1);
+    }
+
+    String customerId() {
+        return customerId;
+    }
+
+    VelocityWindow window() {
+        return window;
+    }
+
+    /**
+     * 登记一次使用，计数器已被回收时返回 false，调用方需重新取计数器。
+     */
+    boolean enter() {
+        while (true) {
+            int current = users.get();
+            if (current == RETIRED) {
+                return false;
+            }
+            if (users.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void exit() {
+        users.decrementAndGet();
+    }
+
+    /**
+     * 没有使用者、没有待刷数据且空闲超过 idleMillis 时标记回收；回收后的状态可由 Redis 对账恢复。
+     */
+    boolean retireIfIdle(long now, long idleMillis) {
+        return !dirty.get() && now - lastTouched >= idleMillis && users.compareAndSet(0, RETIRED);
+    }
+
+    /**
+     * 首次使用时返回 true 且只返回一次，用于触发从 Redis 对账。
+     */
+    boolean claimReconcile() {
+        return reconciled.compareAndSet(false, true);
+    }
+
+    /**
+     * 记录最近一次从 Redis 得知其他节点累计的时间。
+     */
+    void refreshed(long now) {
+        refreshedAt = now;
+    }
+
+    /**
+     * 距上次从 Redis 刷新其他节点累计已超过 maxAgeMillis，例如客户在本节点空闲期间只在其他节点交易，由后台刷写补读。
+     */
+    boolean remoteStale(long now, long maxAgeMillis) {
+        return now - refreshedAt > maxAgeMillis;
+    }
+
+    /**
+     * 累加到当前桶并返回窗口内总量。
+     */
+    long add(long now, long delta) {
+        bucket(window.bucketOf(now)).local.addAndGet(delta);
+        lastTouched = now;
+        return total(now);
+    }
+
+    /**
+     * 标记为待刷；由干净变为待刷时返回 true，调用方需把计数器登记到刷写队列。
+     */
+    boolean markDirty() {
+        return dirty.compareAndSet(false, true);
+    }
+
+    long total(long now) {
+        long current = window.bucketOf(now);
+        long total = 0L;
+        for (int i = 0; i < ring.length(); i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && inWindow(bucket.id, current)) {
+                total += bucket.local.get() + bucket.remote;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 取出窗口内的桶供刷写，同时清除待刷标记；之后的累加会重新置位。
+     */
+    List<Bucket> drain(long now) {
+        dirty.set(false);
+        long current = window.bucketOf(now);
+        List<Bucket> buckets = new ArrayList<>(ring.length());
+        for (int i = 0; i < ring.length(); i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && inWindow(bucket.id, current)) {
+                buckets.add(bucket);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * 窗口内各桶的编号，供对账时读取 Redis。
+     */
+    long[] windowBucketIds(long now) {
+        long current = window.bucketOf(now);
+        long[] ids = new long[window.bucketsInWindow()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = current - i;
+        }
+        return ids;
+    }
+
+    Bucket bucket(long id) {
+        int index = (int) Math.floorMod(id, (long) ring.length());
+        while (true) {
+            Bucket bucket = ring.get(index);
+            if (bucket != null && bucket.id >= id) {
+                return bucket.id == id ? bucket : new Bucket(id);
+            }
+            Bucket fresh = new Bucket(id);
+            if (ring.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private boolean inWindow(long bucketId, long currentBucket) {
+        return bucketId <= currentBucket && bucketId > currentBucket - window.bucketsInWindow();
+    }
+
+    static final class Bucket {
+        final long id;
+        final AtomicLong local = new AtomicLong();
+        /** 已刷到 Redis 的本节点累计，只由刷写线程修改 */
+        volatile long flushed;
+        /** 其他节点的累计，来自最近一次刷写或对账 */
+        volatile long remote;
+
+        private Bucket(long id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.bankcore.risk.service.velocity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 交易速度计数：高频规则使用按桶滑动的窗口，日累计规则使用自然日窗口，计数先在本节点内存累加，评估时直接读本地总量。
+ * 增量由后台线程按固定间隔以管道成批 INCRBY 到 Redis，并在同一管道内 MGET 窗口内全部桶，刷新其他节点的累计，多节点共享同一计数；
+ * 客户在本节点空闲、计数器没有增量时，后台刷写同样在其他节点累计超过两个刷写间隔未刷新时读回，评估线程不为此访问 Redis。
+ * 只有计数器首次使用时评估前同步对账，其他节点的交易最多晚约两个刷写间隔计入；开启 reconcile-on-read 后每次评估都先对账，用于需要严格限额的场景。
+ * Redis 不可用时按本节点计数继续评估，增量保留到恢复后补刷。
+ */
+@Component
+public class VelocityCounterStore {
+    private static final Logger log = LoggerFactory.getLogger(VelocityCounterStore.class);
+    private static final String KEY_PREFIX = "risk:velocity:";
+    private static final int SCALE = 2;
+
+    private final StringRedisTemplate redisTemplate;
+    private final VelocityWindow frequencyWindow;
+    private final VelocityWindow dailyWindow;
+    private final ConcurrentMap<String, VelocityCounter> frequencyCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, VelocityCounter> dailyCounters = new ConcurrentHashMap<>();
+    private final Queue<VelocityCounter> dirtyCounters = new ConcurrentLinkedQueue<>();
+    private final boolean reconcileOnRead;
+    private final long maxRemoteAgeMillis;
+    private final long idleMillis;
+
+    public VelocityCounterStore(StringRedisTemplate redisTemplate,
+                                @Value("${risk.velocity.frequency-window-ms:60000}") long frequencyWindowMillis,
+                                @Value("${risk.velocity.frequency-buckets:12}") int frequencyBuckets,
+                                @Value("${risk.velocity.reconcile-on-read:false}") boolean reconcileOnRead,
+                                @Value("${risk.velocity.flush-interval-ms:1000}") long flushIntervalMillis,
+                                @Value("${risk.velocity.idle-evict-ms:600000}") long idleMillis) {
+        this.redisTemplate = redisTemplate;
+        this.frequencyWindow = VelocityWindow.sliding("freq", frequencyWindowMillis, frequencyBuckets);
+        this.dailyWindow = VelocityWindow.calendarDay("daily", ZoneId.systemDefault());
+        this.reconcileOnRead = reconcileOnRead;
+        this.maxRemoteAgeMillis = 2 * Math.max(1L, flushIntervalMillis);
+        this.idleMillis = Math.max(frequencyWindowMillis, idleMillis);
+    }
+
+    /**
+     * 记一笔交易，返回滑动窗口内的交易笔数。
+     */
+    public long incrementFrequency(String customerId) {
+        return add(frequencyCounters, frequencyWindow, customerId, 1L);
+    }
+
+    /**
+     * 累加当日交易金额（以分为单位），返回当日累计；不足一分的部分向上进位，限额判断宁严勿松。
+     */
+    public long incrementDailyAmount(String customerId, BigDecimal amount) {
+        long cents = amount.setScale(SCALE, RoundingMode.UP).movePointRight(SCALE).longValueExact();
+        return add(dailyCounters, dailyWindow, customerId, cents);
+    }
+
+    /**
+     * 把各计数器自上次刷写以来的增量成批写入 Redis，同一管道内再以一次 MGET 读回每个计数器窗口内全部桶的全局值，
+     * 刷新其他节点的累计；只在其他节点有交易的桶也会被读到，不依赖本节点是否刷写过该桶。
+     * 没有增量但其他节点累计已过期的计数器只做 MGET。
+     */
+    @Scheduled(fixedDelayString = "${risk.velocity.flush-interval-ms:1000}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        List<PendingFlush> flushes = new ArrayList<>();
+        Set<VelocityCounter> included = Collections.newSetFromMap(new IdentityHashMap<>());
+        VelocityCounter counter;
+        while ((counter = dirtyCounters.poll()) != null) {
+            if (included.add(counter)) {
+                flushes.add(pendingFlush(counter, counter.drain(now), now));
+            }
+        }
+        addStale(frequencyCounters, included, flushes, now);
+        addStale(dailyCounters, included, flushes, now);
+        if (flushes.isEmpty()) {
+            return;
+        }
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (PendingFlush flush : flushes) {
+                    long ttlSeconds = flush.counter.window().keyTtlSeconds();
+                    for (int i = 0; i < flush.buckets.size(); i++) {
+                        byte[] key = flush.incrementKeys.get(i);
+                        connection.stringCommands().incrBy(key, flush.locals.get(i) - flush.buckets.get(i).flushed);
+                        connection.keyCommands().expire(key, ttlSeconds);
+                    }
+                    connection.stringCommands().mGet(flush.windowKeys);
+                }
+                return null;
+            });
+            int index = 0;
+            for (PendingFlush flush : flushes) {
+                for (int i = 0; i < flush.buckets.size(); i++) {
+                    flush.buckets.get(i).flushed = flush.locals.get(i);
+                    index += 2;
+                }
+                @SuppressWarnings("unchecked")
+                List<String> values = (List<String>) results.get(index++);
+                applyRemote(flush.counter, flush.windowIds, values, now);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("velocity flush of {} counters failed, will retry", flushes.size(), ex);
+            for (PendingFlush failed : flushes) {
+                if (!failed.buckets.isEmpty() && failed.counter.markDirty()) {
+                    dirtyCounters.add(failed.counter);
+                }
+            }
+        }
+    }
+
+    /**
+     * 回收长时间未使用且已刷写完毕的计数器，再次使用时从 Redis 对账恢复。
+     */
+    @Scheduled(fixedDelayString = "${risk.velocity.evict-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        int evicted = evictIdle(frequencyCounters, now) + evictIdle(dailyCounters, now);
+        if (evicted > 0) {
+            log.debug("evicted {} idle velocity counters", evicted);
+        }
+    }
+
+    private long add(ConcurrentMap<String, VelocityCounter> counters, VelocityWindow window, String customerId, long delta) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            VelocityCounter counter = counters.computeIfAbsent(customerId, id -> new VelocityCounter(id, window));
+            if (!counter.enter()) {
+                counters.remove(customerId, counter);
+                continue;
+            }
+            try {
+                if (counter.claimReconcile() || reconcileOnRead) {
+                    reconcile(counter, now);
+                }
+                long total = counter.add(now, delta);
+                if (counter.markDirty()) {
+                    dirtyCounters.add(counter);
+                }
+                return total;
+            } finally {
+                counter.exit();
+            }
+        }
+    }
+
+    private void addStale(ConcurrentMap<String, VelocityCounter> counters, Set<VelocityCounter> included,
+                          List<PendingFlush> flushes, long now) {
+        for (VelocityCounter counter : counters.values()) {
+            if (counter.remoteStale(now, maxRemoteAgeMillis) && included.add(counter)) {
+                flushes.add(pendingFlush(counter, Collections.emptyList(), now));
+            }
+        }
+    }
+
+    private static PendingFlush pendingFlush(VelocityCounter counter, List<VelocityCounter.Bucket> buckets, long now) {
+        long[] ids = counter.windowBucketIds(now);
+        List<byte[]> incrementKeys = new ArrayList<>(buckets.size());
+        List<Long> locals = new ArrayList<>(buckets.size());
+        for (VelocityCounter.Bucket bucket : buckets) {
+            incrementKeys.add(key(counter.window(), counter.customerId(), bucket.id).getBytes(StandardCharsets.UTF_8));
+            locals.add(bucket.local.get());
+        }
+        byte[][] windowKeys = new byte[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            windowKeys[i] = key(counter.window(), counter.customerId(), ids[i]).getBytes(StandardCharsets.UTF_8);
+        }
+        return new PendingFlush(counter, buckets, incrementKeys, locals, ids, windowKeys);
+    }
+
+    /**
+     * 读取窗口内各桶在 Redis 中的全局值，减去本节点已刷写的部分即为其他节点的累计。
+     */
+    private void reconcile(VelocityCounter counter, long now) {
+        long[] ids = counter.windowBucketIds(now);
+        List<String> keys = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            keys.add(key(counter.window(), counter.customerId(), id));
+        }
+        try {
+            applyRemote(counter, ids, redisTemplate.opsForValue().multiGet(keys), now);
+        } catch (RuntimeException ex) {
+            log.warn("velocity reconcile failed for customer={}, using local counts", counter.customerId(), ex);
+        }
+    }
+
+    /**
+     * 各桶的全局值减去本节点已刷写的部分即为其他节点的累计。
+     */
+    private static void applyRemote(VelocityCounter counter, long[] ids, List<String> values, long now) {
+        if (values == null) {
+            return;
+        }
+        counter.refreshed(now);
+        for (int i = 0; i < ids.length; i++) {
+            String value = values.get(i);
+            if (value != null) {
+                VelocityCounter.Bucket bucket = counter.bucket(ids[i]);
+                bucket.remote = Math.max(0L, Long.parseLong(value) - bucket.flushed);
+            }
+        }
+    }
+
+    private int evictIdle(ConcurrentMap<String, VelocityCounter> counters, long now) {
+        int evicted = 0;
+        Iterator<Map.Entry<String, VelocityCounter>> it = counters.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, VelocityCounter> entry = it.next();
+            if (entry.getValue().retireIfIdle(now, idleMillis)) {
+                counters.remove(entry.getKey(), entry.getValue());
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private static String key(VelocityWindow window, String customerId, long bucketId) {
+        return KEY_PREFIX + window.name() + ":" + customerId + ":" + bucketId;
+    }
+
+    private static final class PendingFlush {
+        private final VelocityCounter counter;
+        private final List<VelocityCounter.Bucket> buckets;
+        private final List<byte[]> incrementKeys;
+        private final List<Long> locals;
+        private final long[] windowIds;
+        private final byte[][] windowKeys;
+
+        private PendingFlush(VelocityCounter counter, List<VelocityCounter.Bucket> buckets, List<byte[]> incrementKeys,
+                             List<Long> locals, long[] windowIds, byte[][] windowKeys) {
+            this.counter = counter;
+            this.buckets = buckets;
+            this.incrementKeys = incrementKeys;
+            this.locals = locals;
+            this.windowIds = windowIds;
+            this.windowKeys = windowKeys;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.bankcore.risk.service.velocity;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 计数窗口：时间到桶编号的映射、窗口覆盖的桶数以及 Redis 中桶键的过期时间。
+ */
+final class VelocityWindow {
+    private final String name;
+    private final int bucketsInWindow;
+    private final long keyTtlSeconds;
+    private final LongUnaryOperator bucketOf;
+
+    private VelocityWindow(String name, int bucketsInWindow, long keyTtlSeconds, LongUnaryOperator bucketOf) {
+        this.name = name;
+        this.bucketsInWindow = bucketsInWindow;
+        this.keyTtlSeconds = keyTtlSeconds;
+        this.bucketOf = bucketOf;
+    }
+
+    /**
+     * 滑动窗口：窗口均分为若干桶，统计最近 windowMillis 内的累计，窗口随时间逐桶前移。
+     */
+    static VelocityWindow sliding(String name, long windowMillis, int buckets) {
+        int count = Math.max(1, buckets);
+        long bucketMillis = Math.max(1L, windowMillis / count);
+        return new VelocityWindow(name, count, Math.max(1L, 2L * windowMillis / 1000L), millis -> millis / bucketMillis);
+    }
+
+    /**
+     * 自然日窗口：每天一个桶，零点清零。
+     */
+    static VelocityWindow calendarDay(String name, ZoneId zone) {
+        return new VelocityWindow(name, 1, 2L * 86400L,
+                millis -> Instant.ofEpochMilli(millis).atZone(zone).toLocalDate().toEpochDay());
+    }
+
+    String name() {
+        return name;
+    }
+
+    int bucketsInWindow() {
+        return bucketsInWindow;
+    }
+
+    long keyTtlSeconds() {
+        return keyTtlSeconds;
+    }
+
+    long bucketOf(long millis) {
+        return bucketOf.applyAsLong(millis);
+    }
+}
@@ -0,0 +1,166 @@
+package com.bankcore.risk.service.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+
+import com.bankcore.risk.model.RiskDecisionLog;
+import com.bankcore.risk.repository.RiskDecisionLogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+class RiskDecisionLogWriterTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final RiskDecisionLogRepository repository = mock(RiskDecisionLogRepository.class);
+
+    @TempDir
+    Path spillDir;
+
+    private RiskDecisionLogWriter writer;
+
+    @AfterEach
+    void stopWriter() throws InterruptedException {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    void unparsableLinesAreQuarantinedAndTheRestReplayed() throws Exception {
+        writeSpill("risk-decision-log.spill.1.replay",
+                row("C1") + "\nnot json\n" + row("C2") + "\n{\"customerId\":\"C3\",\"amo");
+
+        start();
+
+        verify(repository).saveAll(argThat(rows -> customers(rows).equals(Arrays.asList("C1", "C2"))));
+        assertEquals(Arrays.asList("not json", "{\"customerId\":\"C3\",\"amo"), quarantined());
+        assertTrue(replayFiles().isEmpty());
+    }
+
+    @Test
+    void badOlderFileDoesNotBlockLaterFiles() throws Exception {
+        writeSpill("risk-decision-log.spill.1.replay", "{broken\n");
+        writeSpill("risk-decision-log.spill.2.replay", row("C2") + "\n");
+
+        start();
+
+        verify(repository).saveAll(argThat(rows -> customers(rows).equals(Arrays.asList("C2"))));
+        assertEquals(Arrays.asList("{broken"), quarantined());
+        assertTrue(replayFiles().isEmpty());
+    }
+
+    @Test
+    void constraintViolationQuarantinesOnlyTheOffendingRow() throws Exception {
+        doThrow(new DataIntegrityViolationException("duplicate")).when(repository).saveAll(anyList());
+        doThrow(new DataIntegrityViolationException("too long")).when(repository)
+                .save(argThat(row -> row != null && "C2".equals(row.getCustomerId())));
+        writeSpill("risk-decision-log.spill.1.replay", row("C1") + "\n" + row("C2") + "\n" + row("C3") + "\n");
+
+        start();
+
+        verify(repository).save(argThat(row -> row != null && "C1".equals(row.getCustomerId())));
+        verify(repository).save(argThat(row -> row != null && "C3".equals(row.getCustomerId())));
+        assertEquals(Arrays.asList(row("C2")), quarantined());
+        assertTrue(replayFiles().isEmpty());
+    }
+
+    @Test
+    void databaseOutageKeepsRowsForTheNextReplay() throws Exception {
+        doThrow(new DataAccessResourceFailureException("down")).when(repository).saveAll(anyList());
+        writeSpill("risk-decision-log.spill.1.replay", row("C1") + "\n" + row("C2") + "\n");
+
+        start();
+
+        verify(repository, never()).save(argThat(row -> true));
+        assertFalse(Files.exists(spillDir.resolve("risk-decision-log.quarantine")));
+        List<Path> files = replayFiles();
+        assertEquals(1, files.size());
+        assertEquals(Arrays.asList(row("C1"), row("C2")), Files.readAllLines(files.get(0), StandardCharsets.UTF_8));
+        assertEquals("0", offset("risk-decision-log.spill.1.replay"));
+    }
+
+    @Test
+    void replayResumesAfterTheRecordedOffset() throws Exception {
+        doThrow(new DataIntegrityViolationException("duplicate")).when(repository).saveAll(anyList());
+        doThrow(new DataAccessResourceFailureException("down")).when(repository)
+                .save(argThat(row -> row != null && "C2".equals(row.getCustomerId())));
+        String content = row("C1") + "\n" + row("C2") + "\n" + row("C3") + "\n";
+        writeSpill("risk-decision-log.spill.1.replay", content);
+
+        start();
+
+        assertEquals("1", offset("risk-decision-log.spill.1.replay"));
+        assertEquals(content, new String(Files.readAllBytes(spillDir.resolve("risk-decision-log.spill.1.replay")),
+                StandardCharsets.UTF_8));
+        writer.shutdown();
+        reset(repository);
+        doNothing().when(repository).saveAll(anyList());
+
+        start();
+
+        verify(repository).saveAll(argThat(rows -> customers(rows).equals(Arrays.asList("C2", "C3"))));
+        assertTrue(replayFiles().isEmpty());
+        assertFalse(Files.exists(spillDir.resolve("risk-decision-log.spill.1.replay.offset")));
+    }
+
+    private void start() throws Exception {
+        writer = new RiskDecisionLogWriter(repository, objectMapper, new SimpleMeterRegistry(), 16, 500, 60000L,
+                60000L, spillDir.toString());
+        writer.start();
+    }
+
+    private String row(String customerId) throws Exception {
+        RiskDecisionLog log = new RiskDecisionLog();
+        log.setCustomerId(customerId);
+        log.setPayerAccount("ACCT-" + customerId);
+        log.setAmount(new BigDecimal("10.00"));
+        log.setResult("APPROVED");
+        log.setCreatedAt(LocalDateTime.of(2024, 1, 1, 9, 30));
+        return objectMapper.writeValueAsString(log);
+    }
+
+    private void writeSpill(String name, String content) throws Exception {
+        Files.write(spillDir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String offset(String replayFile) throws Exception {
+        return new String(Files.readAllBytes(spillDir.resolve(replayFile + ".offset")), StandardCharsets.UTF_8);
+    }
+
+    private List<String> quarantined() throws Exception {
+        return Files.readAllLines(spillDir.resolve("risk-decision-log.quarantine"), StandardCharsets.UTF_8);
+    }
+
+    private List<Path> replayFiles() throws Exception {
+        try (Stream<Path> files = Files.list(spillDir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".replay")).collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> customers(List<RiskDecisionLog> rows) {
+        return rows.stream().map(RiskDecisionLog::getCustomerId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,118 @@
+package com.bankcore.risk.service.velocity;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class VelocityCounterTest {
+    private static final long BUCKET_MILLIS = 1000L;
+    private final VelocityWindow window = VelocityWindow.sliding("freq", 4 * BUCKET_MILLIS, 4);
+
+    @Test
+    void totalCoversOnlyBucketsInsideTheWindow() {
+        VelocityCounter counter = new VelocityCounter("C1", window);
+        long start = 100 * BUCKET_MILLIS;
+
+        assertEquals(1L, counter.add(start, 1L));
+        assertEquals(3L, counter.add(start + BUCKET_MILLIS, 2L));
+        assertEquals(7L, counter.add(start + 3 * BUCKET_MILLIS, 4L));
+        assertEquals(6L, counter.total(start + 4 * BUCKET_MILLIS));
+        assertEquals(4L, counter.total(start + 5 * BUCKET_MILLIS));
+        assertEquals(0L, counter.total(start + 7 * BUCKET_MILLIS));
+    }
+
+    @Test
+    void totalIncludesRemoteCountsOfOtherNodes() {
+        VelocityCounter counter = new VelocityCounter("C1", window);
+        long now = 100 * BUCKET_MILLIS;
+        counter.add(now, 2L);
+        counter.bucket(window.bucketOf(now) - 1).remote = 5L;
+
+        assertEquals(7L, counter.total(now));
+        assertEquals(8L, counter.add(now, 1L));
+    }
+
+    @Test
+    void expiredBucketIsReplacedInsteadOfAccumulated() {
+        VelocityCounter counter = new VelocityCounter("C1", window);
+        long now = 100 * BUCKET_MILLIS;
+        counter.add(now, 3L);
+        long reused = now + 5 * BUCKET_MILLIS;
+
+        assertEquals(1L, counter.add(reused, 1L));
+        assertEquals(1L, counter.bucket(window.bucketOf(reused)).local.get());
+    }
+
+    @Test
+    void drainReturnsInWindowBucketsAndClearsDirtyFlag() {
+        VelocityCounter counter = new VelocityCounter("C1", window);
+        long now = 100 * BUCKET_MILLIS;
+        counter.add(now - 2 * BUCKET_MILLIS, 1L);
+        counter.add(now, 1L);
+        assertTrue(counter.markDirty());
+        assertFalse(counter.markDirty());
+
+        List<VelocityCounter.Bucket> buckets = counter.drain(now);
+        assertEquals(2, buckets.size());
+        assertTrue(counter.markDirty());
+        assertArrayEquals(new long[] {100L, 99L, 98L, 97L}, counter.windowBucketIds(now));
+    }
+
+    @Test
+    void retiredCounterRejectsNewUsers() {
+        VelocityCounter counter = new VelocityCounter("C1", window);
+        long now = 100 * BUCKET_MILLIS;
+        counter.add(now, 1L);
+
+        assertTrue(counter.enter());
+        assertFalse(counter.retireIfIdle(now + 10 * BUCKET_MILLIS, BUCKET_MILLIS));
+        counter.exit();
+        counter.markDirty();
+        assertFalse(counter.retireIfIdle(now + 10 * BUCKET_MILLIS, BUCKET_MILLIS));
+        counter.drain(now);
+        assertFalse(counter.retireIfIdle(now, BUCKET_MILLIS));
+        assertTrue(counter.retireIfIdle(now + 10 * BUCKET_MILLIS, BUCKET_MILLIS));
+        assertFalse(counter.enter());
+    }
+
+    @Test
+    void remoteIsStaleUntilRefreshed() {
+        VelocityCounter counter = new VelocityCounter("C1", window);
+        long now = 100 * BUCKET_MILLIS;
+
+        assertTrue(counter.remoteStale(now, 2000L));
+        counter.refreshed(now);
+        assertFalse(counter.remoteStale(now + 2000L, 2000L));
+        assertTrue(counter.remoteStale(now + 2001L, 2000L));
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws InterruptedException {
+        VelocityCounter counter = new VelocityCounter("C1", window);
+        long now = 100 * BUCKET_MILLIS;
+        int threads = 8;
+        int perThread = 10000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    counter.add(now, 1L);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals((long) threads * perThread, counter.total(now));
+    }
+}
@@ -10,7 +10,8 @@ CREATE TABLE IF NOT EXISTS accounts (
     available_balance DECIMAL(18,2) NOT NULL,
     frozen_balance DECIMAL(18,2) DEFAULT 0,
     status VARCHAR(16) DEFAULT 'ACTIVE',
-    opened_at DATETIME NOT NULL
+    opened_at DATETIME NOT NULL,
+    version BIGINT NOT NULL DEFAULT 0
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 CREATE TABLE IF NOT EXISTS customers (
@@ -40,7 +41,8 @@ CREATE TABLE IF NOT EXISTS payments (
     priority INT DEFAULT 5,
     risk_score DECIMAL(5,2) DEFAULT 0,
     status VARCHAR(32) NOT NULL,
-    created_at DATETIME NOT NULL
+    created_at DATETIME NOT NULL,
+    KEY idx_payments_payer_status (payer_account, status)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 CREATE TABLE IF NOT EXISTS payment_requests (
@@ -52,17 +54,44 @@ CREATE TABLE IF NOT EXISTS payment_requests (
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+CREATE TABLE IF NOT EXISTS payment_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    request_id VARCHAR(64) NOT NULL,
+    instruction_id VARCHAR(64) NOT NULL,
+    payer_account VARCHAR(64),
+    lane TINYINT NOT NULL DEFAULT 1,
+    created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    published_at TIMESTAMP(3) NULL,
+    KEY idx_outbox_published (published_at, lane, id),
+    KEY idx_outbox_instruction (instruction_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 CREATE TABLE IF NOT EXISTS account_ledger (
     entry_id VARCHAR(64) PRIMARY KEY,
     request_id VARCHAR(128) NOT NULL,
     account_id VARCHAR(64) NOT NULL,
+    entry_seq BIGINT NULL,
     operation VARCHAR(32) NOT NULL,
     amount DECIMAL(18,2) NOT NULL,
     total_after DECIMAL(18,2) NOT NULL,
     available_after DECIMAL(18,2) NOT NULL,
     frozen_after DECIMAL(18,2) NOT NULL,
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    UNIQUE KEY uk_account_request (request_id)
+    created_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+    UNIQUE KEY uk_account_request (request_id),
+    UNIQUE KEY uk_account_seq (account_id, entry_seq),
+    KEY idx_account_created (account_id, created_at),
+    KEY idx_created_request (created_at, request_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS account_balance_snapshot (
+    account_id VARCHAR(64) NOT NULL,
+    entry_seq BIGINT NOT NULL,
+    total_balance DECIMAL(18,2) NOT NULL,
+    available_balance DECIMAL(18,2) NOT NULL,
+    frozen_balance DECIMAL(18,2) NOT NULL,
+    snapshot_at TIMESTAMP(3) NOT NULL,
+    PRIMARY KEY (account_id, entry_seq),
+    KEY idx_snapshot_at (account_id, snapshot_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 CREATE TABLE IF NOT EXISTS recon_summary (
@@ -117,7 +146,7 @@ CREATE TABLE IF NOT EXISTS risk_rules (
     id BIGINT PRIMARY KEY AUTO_INCREMENT,
     name VARCHAR(128) NOT NULL,
     type VARCHAR(64) NOT NULL,
-    expression VARCHAR(255) DEFAULT NULL,
+    expression MEDIUMTEXT DEFAULT NULL,
     threshold DECIMAL(18,2) DEFAULT NULL,
     enabled TINYINT(1) DEFAULT 1,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP